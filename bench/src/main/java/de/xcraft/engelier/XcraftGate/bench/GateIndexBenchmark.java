@@ -0,0 +1,87 @@
+package de.xcraft.engelier.XcraftGate.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.xcraft.engelier.XcraftGate.DataGate;
+import de.xcraft.engelier.XcraftGate.IndexGateBlock;
+import de.xcraft.engelier.XcraftGate.Util;
+import de.xcraft.engelier.XcraftGate.sim.SimServer;
+
+/*
+ * The block index against the map keyed by Util.getLocationString() it
+ * replaced, on the same gates and the same player positions: one in
+ * LOOKUPS positions is a gate, the rest are near misses around them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx3g" })
+public class GateIndexBenchmark {
+	private static final int LOOKUPS = 4096;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int gates;
+
+	private final Map<String, DataGate> strings = new HashMap<String, DataGate>();
+	private final IndexGateBlock blocks = new IndexGateBlock();
+	private final Location[] locations = new Location[LOOKUPS];
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		World world = new SimServer().addWorld("world").getWorld();
+		Random random = new Random(42);
+		int side = Math.max(256, (int) Math.sqrt(gates) * 32);
+		DataGate[] all = new DataGate[gates];
+
+		for (int i = 0; i < gates; i++) {
+			all[i] = new DataGate(null, "gate" + i);
+			all[i].setLocation("world", random.nextInt(side) - side / 2 + 0.5, 64, random.nextInt(side) - side / 2 + 0.5, 0, 0);
+
+			strings.put(Util.getLocationString(new Location(world, all[i].getX(), all[i].getY(), all[i].getZ())), all[i]);
+			blocks.put(all[i]);
+		}
+
+		for (int i = 0; i < LOOKUPS; i++) {
+			DataGate gate = all[random.nextInt(gates)];
+			double dx = i % 100 == 0 ? 0 : random.nextInt(17) - 8;
+			locations[i] = new Location(world, gate.getX() + dx + random.nextDouble() - 0.5, 64.2, gate.getZ() + random.nextDouble() - 0.5);
+		}
+	}
+
+	private Location nextLocation() {
+		Location ret = locations[next];
+		next = (next + 1) & (LOOKUPS - 1);
+		return ret;
+	}
+
+	@Benchmark
+	public DataGate stringMap() {
+		return strings.get(Util.getLocationString(nextLocation()));
+	}
+
+	@Benchmark
+	public DataGate blockIndex() {
+		return blocks.get(nextLocation());
+	}
+}
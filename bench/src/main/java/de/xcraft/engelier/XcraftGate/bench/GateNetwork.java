@@ -0,0 +1,156 @@
+package de.xcraft.engelier.XcraftGate.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.event.player.PlayerMoveEvent;
+
+import de.xcraft.engelier.XcraftGate.DataGate;
+import de.xcraft.engelier.XcraftGate.XcraftGate;
+import de.xcraft.engelier.XcraftGate.sim.SimPlayer;
+import de.xcraft.engelier.XcraftGate.sim.SimServer;
+
+/*
+ * A simulated server with the plugin enabled, one world full of gates
+ * linked in pairs and players with precomputed paths. Gates are spread
+ * at random, about one per 32x32 blocks; a path is a series of walks
+ * straight through a random gate in steps of 0.3 blocks, so most moves
+ * stay within a block and about one in a hundred enters a gate.
+ */
+public class GateNetwork {
+	public static final String WORLD = "world";
+	public static final int PATH_LENGTH = 1024;
+	private static final double STEP = 0.3;
+	private static final int WALK = 8;
+
+	private final SimServer server = new SimServer();
+	private final File dataFolder;
+	private final XcraftGate plugin;
+	private final World world;
+	private final DataGate[] gates;
+	private final SimPlayer[] players;
+	private final PlayerMoveEvent[] events;
+	private final Location[][] paths;
+	private final int[] steps;
+	private int next = 0;
+
+	public GateNetwork(int gateCount, int playerCount, long seed) throws IOException {
+		Logger.getLogger("Minecraft").setLevel(Level.WARNING);
+
+		dataFolder = File.createTempFile("xcraftgate", "");
+		dataFolder.delete();
+		dataFolder.mkdirs();
+
+		world = server.addWorld(WORLD).getWorld();
+		plugin = server.enable(dataFolder);
+
+		Random random = new Random(seed);
+		int side = Math.max(256, (int) Math.sqrt(gateCount) * 32);
+
+		gates = new DataGate[gateCount];
+		for (int i = 0; i < gateCount; i++) {
+			gates[i] = new DataGate(plugin, "gate" + i);
+			gates[i].setLocation(WORLD, random.nextInt(side) - side / 2 + 0.5, 64, random.nextInt(side) - side / 2 + 0.5, 0, 0);
+			plugin.getGates().add(gates[i]);
+		}
+
+		for (int i = 0; i + 1 < gateCount; i += 2) {
+			gates[i].linkTo(gates[i + 1], false);
+			gates[i + 1].linkTo(gates[i], false);
+		}
+
+		players = new SimPlayer[playerCount];
+		events = new PlayerMoveEvent[playerCount];
+		paths = new Location[playerCount][];
+		steps = new int[playerCount];
+
+		for (int i = 0; i < playerCount; i++) {
+			paths[i] = path(random);
+			players[i] = server.addPlayer("player" + i, paths[i][0]);
+			events[i] = new PlayerMoveEvent(players[i].getPlayer(), paths[i][0], paths[i][0]);
+		}
+	}
+
+	private Location[] path(Random random) {
+		Location[] ret = new Location[PATH_LENGTH];
+		int i = 0;
+
+		while (i < PATH_LENGTH) {
+			DataGate gate = gates[random.nextInt(gates.length)];
+			double z = gate.getZ() + random.nextDouble() - 0.5;
+
+			for (double dx = -WALK; dx <= WALK && i < PATH_LENGTH; dx += STEP) {
+				ret[i++] = new Location(world, gate.getX() + dx, 64, z, 0, 0);
+			}
+		}
+
+		return ret;
+	}
+
+	/*
+	 * Moves the next player one step along its path, players take turns.
+	 */
+	public PlayerMoveEvent move() {
+		int player = next;
+		next = next + 1 == players.length ? 0 : next + 1;
+
+		int step = steps[player];
+		steps[player] = step + 1 == PATH_LENGTH ? 0 : step + 1;
+
+		PlayerMoveEvent event = events[player];
+		event.setFrom(paths[player][step]);
+		event.setTo(paths[player][steps[player]]);
+		event.setCancelled(false);
+
+		return server.move(players[player], event);
+	}
+
+	/*
+	 * A location along the paths, taking turns like move().
+	 */
+	public Location nextLocation() {
+		int player = next;
+		next = next + 1 == players.length ? 0 : next + 1;
+
+		int step = steps[player];
+		steps[player] = step + 1 == PATH_LENGTH ? 0 : step + 1;
+
+		return paths[player][step];
+	}
+
+	public SimServer getServer() {
+		return server;
+	}
+
+	public XcraftGate getPlugin() {
+		return plugin;
+	}
+
+	public DataGate[] getGates() {
+		return gates;
+	}
+
+	public SimPlayer[] getPlayers() {
+		return players;
+	}
+
+	public void close() {
+		plugin.onDisable();
+		delete(dataFolder);
+	}
+
+	private static void delete(File file) {
+		if (file.isDirectory()) {
+			for (File thisFile : file.listFiles()) {
+				delete(thisFile);
+			}
+		}
+
+		file.delete();
+	}
+}
@@ -0,0 +1,70 @@
+package de.xcraft.engelier.XcraftGate.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Location;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.xcraft.engelier.XcraftGate.DataGate;
+import de.xcraft.engelier.XcraftGate.Util;
+
+/*
+ * The player movement pipeline on a GateNetwork: the whole PLAYER_MOVE
+ * listener, the gate lookup it does and Util.getSaneLocation(). One
+ * operation is one move event. Run with -prof gc for the bytes per event
+ * (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx3g" })
+public class MoveBenchmark {
+	@Param({ "10", "100", "1000" })
+	public int players;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int gates;
+
+	private GateNetwork network;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		network = new GateNetwork(gates, players, 42);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		network.close();
+	}
+
+	@Benchmark
+	public PlayerMoveEvent onPlayerMove() {
+		return network.move();
+	}
+
+	@Benchmark
+	public DataGate getByLocation() {
+		return network.getPlugin().getGates().getByLocation(network.nextLocation());
+	}
+
+	@Benchmark
+	public Location getSaneLocation() {
+		return Util.getSaneLocation(network.nextLocation());
+	}
+}
@@ -0,0 +1,196 @@
+package de.xcraft.engelier.XcraftGate.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionDefault;
+import org.bukkit.plugin.PluginManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.xcraft.engelier.XcraftGate.DataGate;
+import de.xcraft.engelier.XcraftGate.SetPermission;
+import de.xcraft.engelier.XcraftGate.XcraftGate;
+import de.xcraft.engelier.XcraftGate.sim.SimPluginManager;
+import de.xcraft.engelier.XcraftGate.sim.SimServer;
+
+/*
+ * Registering the permissions of all gates: perGate is the wildcard
+ * rebuilt for every gate the way SetGate.add() did before SetPermission,
+ * unbatched is SetPermission with a change applied per gate, batched is
+ * one begin()/end() as on load. enable is the whole plugin start with
+ * that many gates stored.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx3g" })
+public class PermissionBenchmark {
+	private static final String PREFIX = "XcraftGate.use.";
+
+	// keeps the level set below, loggers are only weakly referenced
+	private static final Logger log = Logger.getLogger("Minecraft");
+
+	@Param({ "1000", "10000" })
+	public int gates;
+
+	private File stored;
+	private File empty;
+	private String[] names;
+	private XcraftGate plugin;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		log.setLevel(java.util.logging.Level.WARNING);
+
+		names = new String[gates];
+		for (int i = 0; i < gates; i++) {
+			names[i] = "gate" + i;
+		}
+
+		stored = folder();
+		empty = folder();
+
+		SimServer server = new SimServer();
+		server.addWorld("world");
+		XcraftGate seed = server.enable(stored);
+
+		for (int i = 0; i < gates; i++) {
+			DataGate gate = new DataGate(seed, names[i]);
+			gate.setLocation("world", (i % 1000) * 2 + 0.5, 64, (i / 1000) * 2 + 0.5, 0, 0);
+			seed.getGates().add(gate);
+		}
+		seed.getGates().save();
+		seed.onDisable();
+	}
+
+	@Setup(Level.Invocation)
+	public void setUpInvocation() {
+		// a running plugin without gates for the SetPermission runs
+		SimServer server = new SimServer();
+		server.addWorld("world");
+		plugin = server.enable(empty);
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDownInvocation() {
+		plugin.onDisable();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		delete(stored);
+		delete(empty);
+	}
+
+	@Benchmark
+	public int perGate() {
+		PluginManager pm = new SimPluginManager().getPluginManager();
+		Set<String> registered = new LinkedHashSet<String>();
+
+		for (String gateName : names) {
+			registered.add(gateName);
+			resetSuperPermission(pm, registered, gateName);
+		}
+
+		return pm.getPermission(PREFIX + "*").getChildren().size();
+	}
+
+	@Benchmark
+	public int unbatched() {
+		SetPermission permissions = new SetPermission(plugin);
+
+		for (String gateName : names) {
+			permissions.add(gateName);
+		}
+
+		return permissions.size();
+	}
+
+	@Benchmark
+	public int batched() {
+		SetPermission permissions = new SetPermission(plugin);
+
+		permissions.begin();
+		for (String gateName : names) {
+			permissions.add(gateName);
+		}
+		permissions.end();
+
+		return permissions.size();
+	}
+
+	@Benchmark
+	public int enable() {
+		SimServer server = new SimServer();
+		server.addWorld("world");
+		XcraftGate started = server.enable(stored);
+		int ret = started.getGates().size();
+
+		started.onDisable();
+		return ret;
+	}
+
+	/*
+	 * SetGate.resetSuperPermission() before SetPermission replaced it.
+	 */
+	private static void resetSuperPermission(PluginManager pm, Set<String> gateNames, String gatePerm) {
+		gatePerm = PREFIX + gatePerm;
+
+		if (pm.getPermission(gatePerm) == null) {
+			pm.addPermission(new Permission(gatePerm, PermissionDefault.TRUE));
+		}
+
+		Permission superPerm = pm.getPermission(PREFIX + "*");
+		if (superPerm != null) {
+			if (superPerm.getChildren().containsKey(gatePerm)) return;
+			pm.removePermission("xcraftgate.use.*");
+		}
+
+		Map<String, Boolean> children = new HashMap<String, Boolean>();
+
+		for (String name : gateNames) {
+			children.put(PREFIX + name, true);
+		}
+
+		superPerm = new Permission(PREFIX + "*", "Permission to use all gates", (superPerm != null ? superPerm.getDefault() : PermissionDefault.TRUE), children);
+		pm.addPermission(superPerm);
+	}
+
+	private static File folder() throws IOException {
+		File ret = File.createTempFile("xcraftgate", "");
+		ret.delete();
+		ret.mkdirs();
+		return ret;
+	}
+
+	private static void delete(File file) {
+		if (file.isDirectory()) {
+			for (File thisFile : file.listFiles()) {
+				delete(thisFile);
+			}
+		}
+
+		file.delete();
+	}
+}
@@ -0,0 +1,128 @@
+package de.xcraft.engelier.XcraftGate.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.xcraft.engelier.XcraftGate.XcraftGate;
+import de.xcraft.engelier.XcraftGate.sim.SimServer;
+
+/*
+ * Peak and retained heap while the plugin enables with N gates on disk,
+ * all in the loaded world so startup reads every one of them. Not a JMH
+ * benchmark: a peak needs one clean enable, not an average over many.
+ * Run each size in its own JVM with the serial collector, so the pool
+ * peaks add up to what the heap really held:
+ *
+ *   java -Xmx3g -XX:+UseSerialGC -cp target/benchmarks.jar:lib/Register.jar:lib/Permissions.jar \
+ *       de.xcraft.engelier.XcraftGate.bench.StartupHeap 100000
+ */
+public class StartupHeap {
+	// held on to, a logger nobody references is collected with its level
+	private static final Logger log = Logger.getLogger("Minecraft");
+
+	public static void main(String[] args) throws IOException {
+		log.setLevel(Level.WARNING);
+
+		if (args.length == 0) {
+			System.err.println("usage: StartupHeap <gates>...");
+			return;
+		}
+
+		System.out.println("gates      peak MiB  retained MiB  enable ms  file MiB");
+
+		for (String thisArg : args) {
+			measure(Integer.parseInt(thisArg));
+		}
+	}
+
+	private static void measure(int gates) throws IOException {
+		File dataFolder = File.createTempFile("xcraftgate", "");
+		dataFolder.delete();
+		new File(dataFolder, "gates").mkdirs();
+
+		File file = new File(dataFolder, "gates/world.yml");
+		write(file, gates);
+
+		SimServer server = new SimServer();
+		server.addWorld(GateNetwork.WORLD);
+
+		long before = settle();
+		resetPeaks();
+
+		long start = System.nanoTime();
+		XcraftGate plugin = server.enable(dataFolder);
+		long millis = (System.nanoTime() - start) / 1000000;
+
+		long peak = peaks();
+		long retained = settle() - before;
+
+		System.out.println(String.format("%-10d %8d  %12d  %9d  %8d", plugin.getGates().sizeLoaded(), (peak - before) >> 20, retained >> 20, millis,
+				file.length() >> 20));
+
+		server.getSimScheduler().cancelAllTasks();
+		delete(dataFolder);
+	}
+
+	/*
+	 * The same layout the store writes: one flow mapping per gate.
+	 */
+	private static void write(File file, int gates) throws IOException {
+		Random random = new Random(42);
+		int side = Math.max(256, (int) Math.sqrt(gates) * 32);
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+
+		try {
+			for (int i = 0; i < gates; i++) {
+				out.write("gate" + i + ": {locP: 0.0, world: " + GateNetwork.WORLD + ", name: gate" + i
+						+ ", locZ: " + (random.nextInt(side) - side / 2 + 0.5) + ", locX: " + (random.nextInt(side) - side / 2 + 0.5)
+						+ ", locYaw: 0.0, locY: 64.0, denysilent: false, toll: 0.0, target: gate" + (i ^ 1) + "}\n");
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static long settle() {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	private static void resetPeaks() {
+		for (MemoryPoolMXBean thisPool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (thisPool.getType() == MemoryType.HEAP) thisPool.resetPeakUsage();
+		}
+	}
+
+	private static long peaks() {
+		long ret = 0;
+
+		for (MemoryPoolMXBean thisPool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (thisPool.getType() == MemoryType.HEAP) ret += thisPool.getPeakUsage().getUsed();
+		}
+
+		return ret;
+	}
+
+	private static void delete(File file) {
+		if (file.isDirectory()) {
+			for (File thisFile : file.listFiles()) {
+				delete(thisFile);
+			}
+		}
+
+		file.delete();
+	}
+}
@@ -0,0 +1,179 @@
+package de.xcraft.engelier.XcraftGate.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.xcraft.engelier.XcraftGate.DataGate;
+import de.xcraft.engelier.XcraftGate.XcraftGate;
+import de.xcraft.engelier.XcraftGate.sim.SimServer;
+
+/*
+ * The storage formats against each other on the same gates, spread over
+ * WORLDS worlds: load is a start with every world read, saveAll writes
+ * every world again (what /gate reload and the migrations do), editOne
+ * is a single changed gate written out, the common case.
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Xmx3g" })
+public class StoreBenchmark {
+	public static final int WORLDS = 10;
+
+	// keeps the level set below, loggers are only weakly referenced
+	private static final Logger log = Logger.getLogger("Minecraft");
+
+	@State(Scope.Benchmark)
+	public static class Stored {
+		@Param({ "yaml", "binary", "sql" })
+		public String format;
+
+		@Param({ "100000" })
+		public int gates;
+
+		private File dataFolder;
+
+		@Setup(Level.Trial)
+		public void setUp() throws IOException {
+			log.setLevel(java.util.logging.Level.WARNING);
+
+			dataFolder = File.createTempFile("xcraftgate", "");
+			dataFolder.delete();
+			dataFolder.mkdirs();
+
+			Writer out = new OutputStreamWriter(new FileOutputStream(new File(dataFolder, "config.yml")), "UTF-8");
+			try {
+				out.write("storage:\n  format: " + format + "\n");
+			} finally {
+				out.close();
+			}
+
+			XcraftGate plugin = start();
+			Random random = new Random(42);
+			int side = Math.max(256, (int) Math.sqrt(gates / WORLDS) * 32);
+
+			for (int i = 0; i < gates; i++) {
+				DataGate gate = new DataGate(plugin, "gate" + i);
+				gate.setLocation(world(i), random.nextInt(side) - side / 2 + 0.5, 64, random.nextInt(side) - side / 2 + 0.5, 0, 0);
+				if (i % 2 == 1) gate.linkTo("gate" + (i - 1), false);
+				plugin.getGates().add(gate);
+			}
+
+			plugin.getGates().save();
+			plugin.onDisable();
+		}
+
+		public XcraftGate start() {
+			SimServer server = new SimServer();
+			server.addWorld("world");
+			return server.enable(dataFolder);
+		}
+
+		public String world(int i) {
+			return i % WORLDS == 0 ? "world" : "world" + i % WORLDS;
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			delete(dataFolder);
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Loading {
+		private XcraftGate plugin;
+
+		@TearDown(Level.Invocation)
+		public void tearDown() {
+			if (plugin != null) plugin.onDisable();
+			plugin = null;
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Running {
+		private XcraftGate plugin;
+		private DataGate[] gates;
+		private int next = 0;
+
+		@Setup(Level.Trial)
+		public void setUp(Stored stored) {
+			plugin = stored.start();
+			plugin.getGates().loadAll();
+
+			gates = new DataGate[stored.gates];
+			for (int i = 0; i < gates.length; i++) {
+				gates[i] = plugin.getGates().get("gate" + i);
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			plugin.onDisable();
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public int load(Stored stored, Loading loading) {
+		loading.plugin = stored.start();
+		loading.plugin.getGates().loadAll();
+		return loading.plugin.getGates().sizeLoaded();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public long saveAll(Running running) {
+		running.plugin.getGates().save();
+		running.plugin.getGates().flush();
+		return running.plugin.getGates().getStore().getRecords();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 2, time = 2)
+	@Measurement(iterations = 5, time = 2)
+	public long editOne(Running running) {
+		DataGate gate = running.gates[running.next];
+		running.next = running.next + 1 == running.gates.length ? 0 : running.next + 1;
+
+		gate.setToll(gate.getToll() + 1);
+		running.plugin.getGates().update(gate);
+		running.plugin.getGates().flush();
+		return running.plugin.getGates().getStore().getRecords();
+	}
+
+	private static void delete(File file) {
+		if (file.isDirectory()) {
+			for (File thisFile : file.listFiles()) {
+				delete(thisFile);
+			}
+		}
+
+		file.delete();
+	}
+}
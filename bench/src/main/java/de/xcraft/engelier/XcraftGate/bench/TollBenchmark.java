@@ -0,0 +1,132 @@
+package de.xcraft.engelier.XcraftGate.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nijikokun.register.payment.Method;
+
+import de.xcraft.engelier.XcraftGate.LedgerToll;
+import de.xcraft.engelier.XcraftGate.XcraftGate;
+import de.xcraft.engelier.XcraftGate.sim.SimEconomy;
+import de.xcraft.engelier.XcraftGate.sim.SimServer;
+
+/*
+ * One operation is one player paying a toll, players take turns. direct
+ * is what the move listener did before LedgerToll: look the account up,
+ * check it, look it up again and debit it. charge is LedgerToll.charge()
+ * alone, the part left on the move path. chargeAndSettle adds the
+ * booking, one settle run per TOLLS_PER_SETTLE tolls (a toll a tick with
+ * the default toll.settleDelay). latency is what every economy call
+ * costs, 0 or a database round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx3g" })
+public class TollBenchmark {
+	public static final int TOLLS_PER_SETTLE = 20;
+	private static final double TOLL = 1;
+
+	// keeps the level set below, loggers are only weakly referenced
+	private static final Logger log = Logger.getLogger("Minecraft");
+
+	@Param({ "10", "100" })
+	public int players;
+
+	@Param({ "0", "100000" })
+	public long latency;
+
+	private File dataFolder;
+	private XcraftGate plugin;
+	private Method method;
+	private LedgerToll tolls;
+	private String[] names;
+	private int next = 0;
+	private int sinceSettle = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		log.setLevel(java.util.logging.Level.WARNING);
+
+		dataFolder = File.createTempFile("xcraftgate", "");
+		dataFolder.delete();
+		dataFolder.mkdirs();
+
+		SimServer server = new SimServer();
+		server.addWorld("world");
+		plugin = server.enable(dataFolder);
+
+		SimEconomy economy = new SimEconomy(1e12);
+		economy.setLatency(latency);
+		method = economy.getMethod();
+		plugin.getPluginManager().setEcoMethod(method);
+		tolls = plugin.getTolls();
+
+		names = new String[players];
+		for (int i = 0; i < players; i++) {
+			names[i] = "player" + i;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		plugin.onDisable();
+
+		for (File thisFile : dataFolder.listFiles()) {
+			thisFile.delete();
+		}
+		dataFolder.delete();
+	}
+
+	private String nextPlayer() {
+		String ret = names[next];
+		next = next + 1 == names.length ? 0 : next + 1;
+		return ret;
+	}
+
+	@Benchmark
+	public boolean direct() {
+		String playerName = nextPlayer();
+
+		if (method.getAccount(playerName).hasEnough(TOLL)) {
+			return method.getAccount(playerName).subtract(TOLL);
+		}
+
+		return false;
+	}
+
+	@Benchmark
+	public boolean charge() {
+		return tolls.charge(nextPlayer(), TOLL);
+	}
+
+	@Benchmark
+	public boolean chargeAndSettle() {
+		boolean ret = tolls.charge(nextPlayer(), TOLL);
+
+		if (++sinceSettle == TOLLS_PER_SETTLE) {
+			sinceSettle = 0;
+			tolls.run();
+		}
+
+		return ret;
+	}
+}
@@ -0,0 +1,67 @@
+package de.xcraft.engelier.XcraftGate.sim;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+
+/*
+ * A chunk of a SimWorld. Holds no blocks, the world keeps track of which
+ * chunks are loaded and which were ever generated.
+ */
+public class SimChunk {
+	private final SimWorld world;
+	private final Chunk chunk;
+	private final int x;
+	private final int z;
+
+	SimChunk(SimWorld world, int x, int z) {
+		this.world = world;
+		this.chunk = SimProxy.create(Chunk.class, this);
+		this.x = x;
+		this.z = z;
+	}
+
+	public Chunk getChunk() {
+		return chunk;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getZ() {
+		return z;
+	}
+
+	public World getWorld() {
+		return world.getWorld();
+	}
+
+	public boolean isLoaded() {
+		return world.isChunkLoaded(x, z);
+	}
+
+	public boolean load() {
+		return world.loadChunk(x, z, true);
+	}
+
+	public boolean load(boolean generate) {
+		return world.loadChunk(x, z, generate);
+	}
+
+	public boolean unload() {
+		return world.unloadChunk(x, z, true, true);
+	}
+
+	public boolean unload(boolean save) {
+		return world.unloadChunk(x, z, save, true);
+	}
+
+	public boolean unload(boolean save, boolean safe) {
+		return world.unloadChunk(x, z, save, safe);
+	}
+
+	@Override
+	public String toString() {
+		return "SimChunk{" + world.getName() + "," + x + "," + z + "}";
+	}
+}
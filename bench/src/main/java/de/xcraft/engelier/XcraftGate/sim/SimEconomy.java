@@ -0,0 +1,129 @@
+package de.xcraft.engelier.XcraftGate.sim;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.nijikokun.register.payment.Method;
+
+/*
+ * A stand-in for the economy plugin Register hands out, see
+ * PluginManager.setEcoMethod(). Every account starts with the default
+ * balance. Each call that reaches an account counts and waits the set
+ * latency, like an economy backed by a database would; while failing,
+ * debits are refused.
+ */
+public class SimEconomy {
+	private final Method method = SimProxy.create(Method.class, this);
+	private final Map<String, Double> balances = new HashMap<String, Double>();
+	private final double defaultBalance;
+	private long latencyNanos = 0;
+	private boolean failing = false;
+	private int lookups = 0;
+	private int balanceReads = 0;
+	private int debits = 0;
+
+	public SimEconomy(double defaultBalance) {
+		this.defaultBalance = defaultBalance;
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+
+	public String getName() {
+		return "SimEconomy";
+	}
+
+	public String getVersion() {
+		return "1.0";
+	}
+
+	public String format(double amount) {
+		return String.format(Locale.ROOT, "%.2f coins", amount);
+	}
+
+	public boolean hasAccount(String name) {
+		return true;
+	}
+
+	public Method.MethodAccount getAccount(String name) {
+		lookups++;
+		delay(latencyNanos);
+		return SimProxy.create(Method.MethodAccount.class, new Account(name));
+	}
+
+	public double getBalance(String name) {
+		Double ret = balances.get(name);
+		return ret == null ? defaultBalance : ret;
+	}
+
+	public void setBalance(String name, double balance) {
+		balances.put(name, balance);
+	}
+
+	public void setLatency(long nanos) {
+		latencyNanos = nanos;
+	}
+
+	public void setFailing(boolean failing) {
+		this.failing = failing;
+	}
+
+	public int getLookups() {
+		return lookups;
+	}
+
+	public int getBalanceReads() {
+		return balanceReads;
+	}
+
+	public int getDebits() {
+		return debits;
+	}
+
+	private static void delay(long nanos) {
+		if (nanos <= 0) return;
+
+		// spins, a sleeping thread would wake up far too late for short waits
+		long end = System.nanoTime() + nanos;
+		while (System.nanoTime() < end);
+	}
+
+	public class Account {
+		private final String name;
+
+		private Account(String name) {
+			this.name = name;
+		}
+
+		public double balance() {
+			balanceReads++;
+			delay(latencyNanos);
+			return getBalance(name);
+		}
+
+		public boolean hasEnough(double amount) {
+			return balance() >= amount;
+		}
+
+		public boolean subtract(double amount) {
+			delay(latencyNanos);
+			if (failing) return false;
+
+			debits++;
+			setBalance(name, getBalance(name) - amount);
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return "SimEconomy.Account{" + name + "}";
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SimEconomy";
+	}
+}
@@ -0,0 +1,85 @@
+package de.xcraft.engelier.XcraftGate.sim;
+
+import java.util.UUID;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.LivingEntity;
+
+/*
+ * A creature in a SimWorld, see SimWorld.spawnCreature().
+ */
+public class SimEntity {
+	private final SimWorld world;
+	private final LivingEntity entity;
+	private final Class<? extends LivingEntity> kind;
+	private final int entityId;
+	private final UUID uuid;
+	private Location location;
+	private int health = 20;
+	private boolean dead = false;
+
+	SimEntity(SimWorld world, Class<? extends LivingEntity> kind, Location location) {
+		this.world = world;
+		this.entity = SimProxy.create(kind, this);
+		this.kind = kind;
+		this.entityId = world.getServer().nextEntityId();
+		this.uuid = UUID.nameUUIDFromBytes(("entity:" + entityId).getBytes());
+		this.location = location.clone();
+	}
+
+	public LivingEntity getEntity() {
+		return entity;
+	}
+
+	public Class<? extends LivingEntity> getKind() {
+		return kind;
+	}
+
+	public int getEntityId() {
+		return entityId;
+	}
+
+	public UUID getUniqueId() {
+		return uuid;
+	}
+
+	public Location getLocation() {
+		return location.clone();
+	}
+
+	public World getWorld() {
+		return world.getWorld();
+	}
+
+	public boolean teleport(Location location) {
+		if (location.getWorld() != world.getWorld()) return false;
+
+		this.location = location.clone();
+		return true;
+	}
+
+	public int getHealth() {
+		return health;
+	}
+
+	public void setHealth(int health) {
+		this.health = health;
+	}
+
+	public boolean isDead() {
+		return dead;
+	}
+
+	public void remove() {
+		if (dead) return;
+
+		dead = true;
+		world.removeEntity(this);
+	}
+
+	@Override
+	public String toString() {
+		return "SimEntity{" + kind.getSimpleName() + "#" + entityId + "}";
+	}
+}
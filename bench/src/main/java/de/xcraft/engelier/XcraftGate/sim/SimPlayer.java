@@ -0,0 +1,173 @@
+package de.xcraft.engelier.XcraftGate.sim;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerMoveEvent;
+
+/*
+ * A player on the simulated server. Has every permission unless told
+ * otherwise and keeps the messages sent to it. Players can be scripted
+ * with walkTo(): on every tick they take one step of WALK_SPEED blocks
+ * towards the next waypoint, with a move event like a client's.
+ */
+public class SimPlayer {
+	// blocks per tick, about what a walking client sends
+	public static final double WALK_SPEED = 0.2;
+
+	private final SimServer server;
+	private final Player player;
+	private final String name;
+	private final UUID uuid;
+	private final int entityId;
+	private final List<String> messages = new ArrayList<String>();
+	private final LinkedList<Location> waypoints = new LinkedList<Location>();
+	private Location location;
+	private GameMode gameMode = GameMode.SURVIVAL;
+	private boolean allowed = true;
+	private int teleports = 0;
+
+	SimPlayer(SimServer server, String name, Location location) {
+		this.server = server;
+		this.player = SimProxy.create(Player.class, this);
+		this.name = name;
+		this.entityId = server.nextEntityId();
+		this.uuid = UUID.nameUUIDFromBytes(("player:" + name).getBytes());
+		this.location = location;
+	}
+
+	public Player getPlayer() {
+		return player;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getDisplayName() {
+		return name;
+	}
+
+	public UUID getUniqueId() {
+		return uuid;
+	}
+
+	public int getEntityId() {
+		return entityId;
+	}
+
+	public boolean isOnline() {
+		return server.getPlayer(name) == player;
+	}
+
+	public Location getLocation() {
+		return location.clone();
+	}
+
+	public World getWorld() {
+		return location.getWorld();
+	}
+
+	/*
+	 * Moves the player without telling anyone, see SimServer.move().
+	 */
+	public void setLocation(Location location) {
+		if (location.getWorld() != this.location.getWorld()) {
+			server.getSimWorld(this.location.getWorld()).getPlayers().remove(player);
+			server.getSimWorld(location.getWorld()).getPlayers().add(player);
+		}
+
+		this.location = location;
+	}
+
+	public boolean teleport(Location location) {
+		return server.teleport(this, location);
+	}
+
+	void countTeleport() {
+		teleports++;
+		waypoints.clear();
+	}
+
+	public int getTeleports() {
+		return teleports;
+	}
+
+	public int getHealth() {
+		return 20;
+	}
+
+	/*
+	 * Queues a walk in a straight line to location, after the walks
+	 * queued before. A teleport ends all walks.
+	 */
+	public void walkTo(Location location) {
+		waypoints.add(location.clone());
+	}
+
+	public boolean isWalking() {
+		return !waypoints.isEmpty();
+	}
+
+	/*
+	 * One step towards the next waypoint, see SimServer.tick().
+	 */
+	void step() {
+		Location target = waypoints.peek();
+		if (target == null) return;
+
+		Location from = getLocation();
+		Location to;
+
+		if (target.getWorld() != from.getWorld() || from.distance(target) <= WALK_SPEED) {
+			to = target.clone();
+			waypoints.poll();
+		} else {
+			double factor = WALK_SPEED / from.distance(target);
+			to = from.clone().add((target.getX() - from.getX()) * factor, (target.getY() - from.getY()) * factor,
+					(target.getZ() - from.getZ()) * factor);
+		}
+
+		server.move(this, new PlayerMoveEvent(player, from, to));
+		server.getSimWorld(getWorld()).getChunkAt(this.location);
+	}
+
+	public GameMode getGameMode() {
+		return gameMode;
+	}
+
+	public void setGameMode(GameMode gameMode) {
+		this.gameMode = gameMode;
+	}
+
+	public void setAllowed(boolean allowed) {
+		this.allowed = allowed;
+	}
+
+	public boolean hasPermission(String node) {
+		return allowed;
+	}
+
+	public boolean isOp() {
+		return false;
+	}
+
+	public void sendMessage(String message) {
+		messages.add(message);
+	}
+
+	public List<String> getMessages() {
+		return messages;
+	}
+
+	@Override
+	public String toString() {
+		return "SimPlayer{" + name + "}";
+	}
+}
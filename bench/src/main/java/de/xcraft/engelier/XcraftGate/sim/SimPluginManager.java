@@ -0,0 +1,177 @@
+package de.xcraft.engelier.XcraftGate.sim;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.entity.EntityListener;
+import org.bukkit.event.entity.EntityRegainHealthEvent;
+import org.bukkit.event.entity.FoodLevelChangeEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerListener;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.PluginEnableEvent;
+import org.bukkit.event.server.ServerListener;
+import org.bukkit.event.weather.WeatherChangeEvent;
+import org.bukkit.event.weather.WeatherListener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldListener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.permissions.Permission;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+
+/*
+ * Listener registration, event dispatch and permission registry of the
+ * simulated server.
+ */
+public class SimPluginManager {
+	private final PluginManager pluginManager = SimProxy.create(PluginManager.class, this);
+	private final Map<Event.Type, List<Listener>> listeners = new EnumMap<Event.Type, List<Listener>>(Event.Type.class);
+	private final Map<Event.Type, List<Event.Priority>> priorities = new EnumMap<Event.Type, List<Event.Priority>>(Event.Type.class);
+	private final Map<String, Permission> permissions = new HashMap<String, Permission>();
+	private final Map<String, Integer> permissionAdds = new HashMap<String, Integer>();
+
+	public PluginManager getPluginManager() {
+		return pluginManager;
+	}
+
+	public void registerEvent(Event.Type type, Listener listener, Event.Priority priority, Plugin plugin) {
+		List<Listener> registered = listeners.get(type);
+
+		if (registered == null) {
+			registered = new ArrayList<Listener>();
+			listeners.put(type, registered);
+			priorities.put(type, new ArrayList<Event.Priority>());
+		}
+
+		// lowest priority first, like Bukkit
+		int i = 0;
+		while (i < registered.size() && priorities.get(type).get(i).compareTo(priority) <= 0) i++;
+
+		registered.add(i, listener);
+		priorities.get(type).add(i, priority);
+	}
+
+	public int getListenerCount(Event.Type type) {
+		List<Listener> registered = listeners.get(type);
+		return registered == null ? 0 : registered.size();
+	}
+
+	public void callEvent(Event event) {
+		List<Listener> registered = listeners.get(event.getType());
+		if (registered == null) return;
+
+		for (int i = 0; i < registered.size(); i++) {
+			dispatch(registered.get(i), event);
+		}
+	}
+
+	private void dispatch(Listener listener, Event event) {
+		switch (event.getType()) {
+		case PLAYER_MOVE:
+			((PlayerListener) listener).onPlayerMove((PlayerMoveEvent) event);
+			break;
+		case PLAYER_TELEPORT:
+			((PlayerListener) listener).onPlayerTeleport((PlayerTeleportEvent) event);
+			break;
+		case PLAYER_QUIT:
+			((PlayerListener) listener).onPlayerQuit((PlayerQuitEvent) event);
+			break;
+		case PLAYER_CHANGED_WORLD:
+			((PlayerListener) listener).onPlayerChangedWorld((PlayerChangedWorldEvent) event);
+			break;
+		case PLAYER_JOIN:
+			((PlayerListener) listener).onPlayerJoin((PlayerJoinEvent) event);
+			break;
+		case CREATURE_SPAWN:
+			((EntityListener) listener).onCreatureSpawn((CreatureSpawnEvent) event);
+			break;
+		case ENTITY_REGAIN_HEALTH:
+			((EntityListener) listener).onEntityRegainHealth((EntityRegainHealthEvent) event);
+			break;
+		case ENTITY_DEATH:
+			((EntityListener) listener).onEntityDeath((EntityDeathEvent) event);
+			break;
+		case FOOD_LEVEL_CHANGE:
+			((EntityListener) listener).onFoodLevelChange((FoodLevelChangeEvent) event);
+			break;
+		case PLUGIN_ENABLE:
+			((ServerListener) listener).onPluginEnable((PluginEnableEvent) event);
+			break;
+		case PLUGIN_DISABLE:
+			((ServerListener) listener).onPluginDisable((PluginDisableEvent) event);
+			break;
+		case WEATHER_CHANGE:
+			((WeatherListener) listener).onWeatherChange((WeatherChangeEvent) event);
+			break;
+		case WORLD_LOAD:
+			((WorldListener) listener).onWorldLoad((WorldLoadEvent) event);
+			break;
+		case WORLD_UNLOAD:
+			((WorldListener) listener).onWorldUnload((WorldUnloadEvent) event);
+			break;
+		case CHUNK_LOAD:
+			((WorldListener) listener).onChunkLoad((ChunkLoadEvent) event);
+			break;
+		case CHUNK_UNLOAD:
+			((WorldListener) listener).onChunkUnload((ChunkUnloadEvent) event);
+			break;
+		default:
+			throw new UnsupportedOperationException("SimPluginManager can't dispatch " + event.getType());
+		}
+	}
+
+	public Plugin getPlugin(String name) {
+		return null;
+	}
+
+	public Permission getPermission(String name) {
+		return permissions.get(name.toLowerCase());
+	}
+
+	public void addPermission(Permission permission) {
+		String name = permission.getName().toLowerCase();
+
+		if (permissions.containsKey(name)) {
+			throw new IllegalArgumentException("The permission " + name + " is already defined!");
+		}
+
+		permissions.put(name, permission);
+
+		Integer adds = permissionAdds.get(name);
+		permissionAdds.put(name, adds == null ? 1 : adds + 1);
+	}
+
+	public void removePermission(String name) {
+		permissions.remove(name.toLowerCase());
+	}
+
+	public void removePermission(Permission permission) {
+		removePermission(permission.getName());
+	}
+
+	public int getPermissionCount() {
+		return permissions.size();
+	}
+
+	/*
+	 * How often a permission was registered, removals don't count.
+	 */
+	public int getPermissionAdds(String name) {
+		Integer adds = permissionAdds.get(name.toLowerCase());
+		return adds == null ? 0 : adds;
+	}
+}
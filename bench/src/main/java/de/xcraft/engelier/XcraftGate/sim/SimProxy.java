@@ -0,0 +1,98 @@
+package de.xcraft.engelier.XcraftGate.sim;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Implements a Bukkit interface by forwarding every call to the public
+ * method of the same signature on a plain object. Whatever that object
+ * doesn't have answers null, false or 0, so the simulated classes only
+ * carry what the plugin uses, however large the interface is.
+ */
+public class SimProxy implements InvocationHandler {
+	private static final Map<Class<?>, Map<Method, Method>> forwards = new ConcurrentHashMap<Class<?>, Map<Method, Method>>();
+	private static final Method MISSING;
+
+	static {
+		try {
+			MISSING = Object.class.getMethod("toString");
+		} catch (NoSuchMethodException ex) {
+			throw new Error(ex);
+		}
+	}
+
+	private final Object target;
+	private final Map<Method, Method> targetForwards;
+
+	private SimProxy(Object target) {
+		this.target = target;
+
+		Map<Method, Method> known = forwards.get(target.getClass());
+		if (known == null) {
+			known = new ConcurrentHashMap<Method, Method>();
+			forwards.put(target.getClass(), known);
+		}
+
+		this.targetForwards = known;
+	}
+
+	public static <T> T create(Class<T> type, Object target) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new SimProxy(target)));
+	}
+
+	/*
+	 * The object behind a proxy made by create(), or null.
+	 */
+	public static Object getTarget(Object proxy) {
+		if (proxy == null || !Proxy.isProxyClass(proxy.getClass())) return null;
+
+		InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+		return handler instanceof SimProxy ? ((SimProxy) handler).target : null;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			// identity, like the server's own objects
+			if (method.getName().equals("equals")) return proxy == args[0];
+			if (method.getName().equals("hashCode")) return System.identityHashCode(proxy);
+			return target.toString();
+		}
+
+		Method forward = targetForwards.get(method);
+
+		if (forward == null) {
+			try {
+				forward = target.getClass().getMethod(method.getName(), method.getParameterTypes());
+			} catch (NoSuchMethodException ex) {
+				forward = MISSING;
+			}
+
+			targetForwards.put(method, forward);
+		}
+
+		if (forward == MISSING) return defaultValue(method.getReturnType());
+
+		try {
+			return forward.invoke(target, args);
+		} catch (InvocationTargetException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (!type.isPrimitive() || type == void.class) return null;
+		if (type == boolean.class) return false;
+		if (type == char.class) return (char) 0;
+		if (type == byte.class) return (byte) 0;
+		if (type == short.class) return (short) 0;
+		if (type == int.class) return 0;
+		if (type == long.class) return 0L;
+		if (type == float.class) return 0f;
+		return 0d;
+	}
+}
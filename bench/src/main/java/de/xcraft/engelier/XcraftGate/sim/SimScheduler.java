@@ -0,0 +1,143 @@
+package de.xcraft.engelier.XcraftGate.sim;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+
+/*
+ * Scheduler of the simulated server, driven by tick(). A task scheduled
+ * with a delay of n runs on the n-th tick from now, at the earliest on
+ * the next one. Async tasks run on the tick as well, in the order they
+ * were scheduled, which keeps every run of a test the same.
+ */
+public class SimScheduler {
+	private final BukkitScheduler scheduler = SimProxy.create(BukkitScheduler.class, this);
+	private final List<Task> tasks = new ArrayList<Task>();
+	private long currentTick = 0;
+	private int nextId = 1;
+
+	public BukkitScheduler getScheduler() {
+		return scheduler;
+	}
+
+	public int scheduleSyncDelayedTask(Plugin plugin, Runnable task, long delay) {
+		return add(plugin, task, delay, -1);
+	}
+
+	public int scheduleSyncDelayedTask(Plugin plugin, Runnable task) {
+		return add(plugin, task, 0, -1);
+	}
+
+	public int scheduleSyncRepeatingTask(Plugin plugin, Runnable task, long delay, long period) {
+		return add(plugin, task, delay, Math.max(1, period));
+	}
+
+	public int scheduleAsyncDelayedTask(Plugin plugin, Runnable task, long delay) {
+		return add(plugin, task, delay, -1);
+	}
+
+	public int scheduleAsyncDelayedTask(Plugin plugin, Runnable task) {
+		return add(plugin, task, 0, -1);
+	}
+
+	public int scheduleAsyncRepeatingTask(Plugin plugin, Runnable task, long delay, long period) {
+		return add(plugin, task, delay, Math.max(1, period));
+	}
+
+	public boolean isQueued(int id) {
+		for (Task thisTask : tasks) {
+			if (thisTask.id == id) return true;
+		}
+
+		return false;
+	}
+
+	public void cancelTask(int id) {
+		Iterator<Task> it = tasks.iterator();
+		while (it.hasNext()) {
+			Task thisTask = it.next();
+			if (thisTask.id == id) {
+				thisTask.cancelled = true;
+				it.remove();
+			}
+		}
+	}
+
+	public void cancelTasks(Plugin plugin) {
+		Iterator<Task> it = tasks.iterator();
+		while (it.hasNext()) {
+			Task thisTask = it.next();
+			if (thisTask.plugin == plugin) {
+				thisTask.cancelled = true;
+				it.remove();
+			}
+		}
+	}
+
+	public void cancelAllTasks() {
+		for (Task thisTask : tasks) {
+			thisTask.cancelled = true;
+		}
+
+		tasks.clear();
+	}
+
+	public long getCurrentTick() {
+		return currentTick;
+	}
+
+	public int size() {
+		return tasks.size();
+	}
+
+	/*
+	 * Runs everything due this tick. Tasks scheduled meanwhile wait for
+	 * the next one, tasks cancelled meanwhile don't run.
+	 */
+	public void tick() {
+		currentTick++;
+
+		List<Task> due = new ArrayList<Task>();
+		for (Task thisTask : tasks) {
+			if (thisTask.next <= currentTick) due.add(thisTask);
+		}
+
+		for (Task thisTask : due) {
+			if (thisTask.cancelled) continue;
+
+			if (thisTask.period > 0) {
+				thisTask.next += thisTask.period;
+			} else {
+				tasks.remove(thisTask);
+			}
+
+			thisTask.task.run();
+		}
+	}
+
+	private int add(Plugin plugin, Runnable task, long delay, long period) {
+		Task ret = new Task(nextId++, plugin, task, currentTick + Math.max(1, delay), period);
+		tasks.add(ret);
+		return ret.id;
+	}
+
+	private static class Task {
+		private final int id;
+		private final Plugin plugin;
+		private final Runnable task;
+		private final long period;
+		private long next;
+		private boolean cancelled = false;
+
+		public Task(int id, Plugin plugin, Runnable task, long next, long period) {
+			this.id = id;
+			this.plugin = plugin;
+			this.task = task;
+			this.next = next;
+			this.period = period;
+		}
+	}
+}
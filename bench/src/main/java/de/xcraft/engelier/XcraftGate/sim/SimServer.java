@@ -0,0 +1,314 @@
+package de.xcraft.engelier.XcraftGate.sim;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.World.Environment;
+import org.bukkit.WorldCreator;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import de.xcraft.engelier.XcraftGate.DataGate;
+import de.xcraft.engelier.XcraftGate.ServerWorlds;
+import de.xcraft.engelier.XcraftGate.XcraftGate;
+
+/*
+ * A Bukkit server in memory, enough to enable XcraftGate and feed it
+ * events. Worlds and players are made here, events go to the listeners
+ * the plugin registered. Nothing happens on its own: tick() is one
+ * server tick, scheduled tasks, scripted players and chunk unloads
+ * included. The plugin reaches worlds, players and the scheduler
+ * through this class as its ServerWorlds.
+ */
+public class SimServer implements ServerWorlds {
+	// a build that passes the version check in onEnable()
+	public static final String VERSION = "git-Bukkit-1.0.1-R1-b1597jnks (MC: 1.0.1)";
+
+	private final Server server = SimProxy.create(Server.class, this);
+	private final SimPluginManager pluginManager = new SimPluginManager();
+	private final SimScheduler scheduler = new SimScheduler();
+	private final Map<String, SimWorld> worlds = new LinkedHashMap<String, SimWorld>();
+	private final Map<String, SimPlayer> players = new LinkedHashMap<String, SimPlayer>();
+	private XcraftGate plugin = null;
+	private int nextEntityId = 1;
+
+	public Server getServer() {
+		return server;
+	}
+
+	public String getName() {
+		return "SimServer";
+	}
+
+	public String getVersion() {
+		return VERSION;
+	}
+
+	public PluginManager getPluginManager() {
+		return pluginManager.getPluginManager();
+	}
+
+	public SimPluginManager getSimPluginManager() {
+		return pluginManager;
+	}
+
+	@Override
+	public BukkitScheduler getScheduler() {
+		return scheduler.getScheduler();
+	}
+
+	public SimScheduler getSimScheduler() {
+		return scheduler;
+	}
+
+	/*
+	 * Creates and enables the plugin, with its files in dataFolder.
+	 */
+	public XcraftGate enable(File dataFolder) {
+		XcraftGate plugin = new XcraftGate();
+		PluginDescriptionFile description = new PluginDescriptionFile("XcraftGate", "sim", XcraftGate.class.getName());
+
+		plugin.initialize(null, server, description, dataFolder, null, XcraftGate.class.getClassLoader());
+		plugin.setServerWorlds(this);
+		plugin.onEnable();
+		this.plugin = plugin;
+		return plugin;
+	}
+
+	public XcraftGate getPlugin() {
+		return plugin;
+	}
+
+	/*
+	 * Adds a gate of the enabled plugin on the ground at x/z and saves it.
+	 */
+	public DataGate gate(String name, String worldName, double x, double z) {
+		DataGate ret = new DataGate(plugin, name);
+		ret.setLocation(worldName, x, SimWorld.GROUND, z, 0, 0);
+		plugin.getGates().add(ret, true);
+		return ret;
+	}
+
+	/*
+	 * Runs one server tick: the scheduler, then the worlds, then the
+	 * scripted players.
+	 */
+	public void tick() {
+		scheduler.tick();
+
+		for (SimWorld thisWorld : new ArrayList<SimWorld>(worlds.values())) {
+			thisWorld.tick();
+		}
+
+		for (SimPlayer thisPlayer : new ArrayList<SimPlayer>(players.values())) {
+			thisPlayer.step();
+		}
+	}
+
+	public void tick(int ticks) {
+		for (int i = 0; i < ticks; i++) {
+			tick();
+		}
+	}
+
+	/*
+	 * Ticks until no scripted player is walking any more, at most
+	 * maxTicks. Returns the ticks it took.
+	 */
+	public int tickUntilArrived(int maxTicks) {
+		int ret = 0;
+
+		while (ret < maxTicks && isWalking()) {
+			tick();
+			ret++;
+		}
+
+		return ret;
+	}
+
+	private boolean isWalking() {
+		for (SimPlayer thisPlayer : players.values()) {
+			if (thisPlayer.isWalking()) return true;
+		}
+
+		return false;
+	}
+
+	int nextEntityId() {
+		return nextEntityId++;
+	}
+
+	/*
+	 * Adds a world that is loaded from the start, like the ones in
+	 * server.properties and bukkit.yml. No load event.
+	 */
+	public SimWorld addWorld(String name) {
+		return addWorld(name, Environment.NORMAL, name.hashCode());
+	}
+
+	public SimWorld addWorld(String name, Environment environment, long seed) {
+		SimWorld ret = new SimWorld(this, name, environment, seed);
+		worlds.put(name, ret);
+		return ret;
+	}
+
+	/*
+	 * Loads or creates a world the way the plugin asks the server to,
+	 * with a load event.
+	 */
+	@Override
+	public World createWorld(WorldCreator creator) {
+		World ret = getWorld(creator.name());
+		if (ret != null) return ret;
+
+		ret = addWorld(creator.name(), creator.environment(), creator.seed()).getWorld();
+		callEvent(new WorldLoadEvent(ret));
+		return ret;
+	}
+
+	/*
+	 * Refuses to unload the first world and worlds with players in them,
+	 * like the server.
+	 */
+	@Override
+	public boolean unloadWorld(World world, boolean save) {
+		SimWorld simWorld = getSimWorld(world);
+
+		if (simWorld == null || worlds.get(simWorld.getName()) != simWorld) return false;
+		if (worlds.values().iterator().next() == simWorld || !simWorld.getPlayers().isEmpty()) return false;
+
+		WorldUnloadEvent event = new WorldUnloadEvent(world);
+		callEvent(event);
+		if (event.isCancelled()) return false;
+
+		if (save) simWorld.save();
+		worlds.remove(simWorld.getName());
+		return true;
+	}
+
+	@Override
+	public World getWorld(String name) {
+		SimWorld ret = worlds.get(name);
+		return ret != null ? ret.getWorld() : null;
+	}
+
+	@Override
+	public List<World> getWorlds() {
+		List<World> ret = new ArrayList<World>();
+
+		for (SimWorld thisWorld : worlds.values()) {
+			ret.add(thisWorld.getWorld());
+		}
+
+		return ret;
+	}
+
+	public SimWorld getSimWorld(World world) {
+		return (SimWorld) SimProxy.getTarget(world);
+	}
+
+	/*
+	 * Puts a player on the server, without a join event.
+	 */
+	public SimPlayer addPlayer(String name, Location location) {
+		SimPlayer ret = new SimPlayer(this, name, location);
+		players.put(name, ret);
+		getSimWorld(location.getWorld()).getPlayers().add(ret.getPlayer());
+		return ret;
+	}
+
+	public SimPlayer join(String name, Location location) {
+		SimPlayer ret = addPlayer(name, location);
+		getSimWorld(location.getWorld()).getChunkAt(location);
+		callEvent(new PlayerJoinEvent(ret.getPlayer(), name + " joined the game."));
+		return ret;
+	}
+
+	public void quit(SimPlayer player) {
+		callEvent(new PlayerQuitEvent(player.getPlayer(), player.getName() + " left the game."));
+		getSimWorld(player.getWorld()).getPlayers().remove(player.getPlayer());
+		players.remove(player.getName());
+	}
+
+	public Player getPlayer(String name) {
+		SimPlayer ret = players.get(name);
+		return ret != null ? ret.getPlayer() : null;
+	}
+
+	@Override
+	public Player[] getOnlinePlayers() {
+		Player[] ret = new Player[players.size()];
+		int i = 0;
+
+		for (SimPlayer thisPlayer : players.values()) {
+			ret[i++] = thisPlayer.getPlayer();
+		}
+
+		return ret;
+	}
+
+	public SimPlayer getSimPlayer(Player player) {
+		return (SimPlayer) SimProxy.getTarget(player);
+	}
+
+	public void callEvent(Event event) {
+		pluginManager.callEvent(event);
+	}
+
+	/*
+	 * Moves a player the way the server does: the move event first, then
+	 * the player goes where the event says unless it was cancelled or a
+	 * listener teleported the player elsewhere.
+	 */
+	public PlayerMoveEvent move(SimPlayer player, PlayerMoveEvent event) {
+		int teleports = player.getTeleports();
+
+		callEvent(event);
+
+		if (!event.isCancelled() && player.getTeleports() == teleports) {
+			player.setLocation(event.getTo());
+		}
+
+		return event;
+	}
+
+	/*
+	 * Teleports a player the way the server does: the teleport event,
+	 * the destination chunk is loaded and, if the world changed, the
+	 * changed world event.
+	 */
+	public boolean teleport(SimPlayer player, Location location) {
+		Location from = player.getLocation();
+		PlayerTeleportEvent event = new PlayerTeleportEvent(player.getPlayer(), from, location);
+
+		callEvent(event);
+		if (event.isCancelled()) return false;
+
+		Location to = event.getTo();
+		getSimWorld(to.getWorld()).getChunkAt(to);
+		player.setLocation(to);
+		player.countTeleport();
+
+		if (to.getWorld() != from.getWorld()) {
+			callEvent(new PlayerChangedWorldEvent(player.getPlayer(), from.getWorld()));
+		}
+
+		return true;
+	}
+}
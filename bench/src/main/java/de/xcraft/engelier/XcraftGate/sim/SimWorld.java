@@ -0,0 +1,409 @@
+package de.xcraft.engelier.XcraftGate.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.bukkit.Chunk;
+import org.bukkit.Difficulty;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.World.Environment;
+import org.bukkit.entity.Creeper;
+import org.bukkit.entity.CreatureType;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Ghast;
+import org.bukkit.entity.Giant;
+import org.bukkit.entity.Enderman;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.PigZombie;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.Skeleton;
+import org.bukkit.entity.Slime;
+import org.bukkit.entity.Spider;
+import org.bukkit.entity.Zombie;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
+import org.bukkit.event.weather.WeatherChangeEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+/*
+ * A world of the simulated server, see SimServer.createWorld(). Flat and
+ * without blocks; what it does keep is which chunks are loaded, which
+ * were ever generated, the creatures in it and the settings the plugin
+ * changes. Chunk unload requests are served on tick(), up to
+ * UNLOADS_PER_TICK at a time like the server does. While keepSpawnInMemory
+ * is set, chunks within SPAWN_RADIUS blocks of the spawn refuse to unload.
+ */
+public class SimWorld {
+	public static final int UNLOADS_PER_TICK = 100;
+	public static final int GROUND = 64;
+	public static final int SPAWN_RADIUS = 128;
+
+	@SuppressWarnings("unchecked")
+	private static final Set<Class<?>> MONSTERS = new HashSet<Class<?>>(Arrays.asList(Zombie.class, Skeleton.class, PigZombie.class,
+			Creeper.class, Ghast.class, Spider.class, Giant.class, Slime.class, Enderman.class));
+
+	private final SimServer server;
+	private final World world;
+	private final String name;
+	private final UUID uid;
+	private final Environment environment;
+	private final long seed;
+	private final List<Player> players = new ArrayList<Player>();
+	private final List<SimEntity> entities = new ArrayList<SimEntity>();
+	private final Map<Long, SimChunk> loaded = new LinkedHashMap<Long, SimChunk>();
+	private final Set<Long> generated = new HashSet<Long>();
+	private final Set<Long> unloadRequests = new LinkedHashSet<Long>();
+	private Location spawn;
+	private long time = 0;
+	private boolean storm = false;
+	private boolean pvp = true;
+	private boolean allowMonsters = true;
+	private boolean allowAnimals = true;
+	private boolean keepSpawnInMemory = true;
+	private Difficulty difficulty = Difficulty.NORMAL;
+	private int chunkLoads = 0;
+	private int chunkUnloads = 0;
+	private int refreshes = 0;
+	private int saves = 0;
+
+	SimWorld(SimServer server, String name, Environment environment, long seed) {
+		this.server = server;
+		this.world = SimProxy.create(World.class, this);
+		this.name = name;
+		this.uid = UUID.nameUUIDFromBytes(name.getBytes());
+		this.environment = environment;
+		this.seed = seed;
+		this.spawn = new Location(world, 0.5, GROUND, 0.5);
+	}
+
+	public World getWorld() {
+		return world;
+	}
+
+	public SimServer getServer() {
+		return server;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public UUID getUID() {
+		return uid;
+	}
+
+	public Environment getEnvironment() {
+		return environment;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public void setTime(long time) {
+		this.time = time;
+	}
+
+	public long getFullTime() {
+		return time;
+	}
+
+	public List<Player> getPlayers() {
+		return players;
+	}
+
+	public Location getSpawnLocation() {
+		return spawn.clone();
+	}
+
+	public boolean setSpawnLocation(int x, int y, int z) {
+		spawn = new Location(world, x, y, z);
+		return true;
+	}
+
+	public int getHighestBlockYAt(int x, int z) {
+		return GROUND;
+	}
+
+	public int getMaxHeight() {
+		return 128;
+	}
+
+	/*
+	 * Advances the clock and serves the queued chunk unload requests.
+	 */
+	public void tick() {
+		time++;
+
+		Iterator<Long> it = unloadRequests.iterator();
+		int done = 0;
+
+		while (it.hasNext() && done++ < UNLOADS_PER_TICK) {
+			long key = it.next();
+			it.remove();
+			unloadChunk((int) (key >> 32), (int) key, true, true);
+		}
+	}
+
+	public static long chunkKey(int x, int z) {
+		return ((long) x << 32) | (z & 0xFFFFFFFFL);
+	}
+
+	public boolean isChunkLoaded(int x, int z) {
+		return loaded.containsKey(chunkKey(x, z));
+	}
+
+	public boolean isChunkGenerated(int x, int z) {
+		return generated.contains(chunkKey(x, z));
+	}
+
+	public void loadChunk(int x, int z) {
+		loadChunk(x, z, true);
+	}
+
+	public boolean loadChunk(int x, int z, boolean generate) {
+		long key = chunkKey(x, z);
+
+		unloadRequests.remove(key);
+		if (loaded.containsKey(key)) return true;
+
+		boolean newChunk = !generated.contains(key);
+		if (newChunk && !generate) return false;
+
+		SimChunk chunk = new SimChunk(this, x, z);
+		generated.add(key);
+		loaded.put(key, chunk);
+		chunkLoads++;
+
+		server.callEvent(new ChunkLoadEvent(chunk.getChunk(), newChunk));
+		return true;
+	}
+
+	public Chunk getChunkAt(int x, int z) {
+		loadChunk(x, z, true);
+		return loaded.get(chunkKey(x, z)).getChunk();
+	}
+
+	public Chunk getChunkAt(Location location) {
+		return getChunkAt(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+	}
+
+	public Chunk[] getLoadedChunks() {
+		Chunk[] ret = new Chunk[loaded.size()];
+		int i = 0;
+
+		for (SimChunk thisChunk : loaded.values()) {
+			ret[i++] = thisChunk.getChunk();
+		}
+
+		return ret;
+	}
+
+	public boolean unloadChunk(int x, int z) {
+		return unloadChunk(x, z, true, false);
+	}
+
+	public boolean unloadChunk(int x, int z, boolean save) {
+		return unloadChunk(x, z, save, false);
+	}
+
+	public boolean isSpawnChunk(int x, int z) {
+		if (!keepSpawnInMemory) return false;
+
+		int dx = (x << 4) + 8 - spawn.getBlockX();
+		int dz = (z << 4) + 8 - spawn.getBlockZ();
+		return dx >= -SPAWN_RADIUS && dx <= SPAWN_RADIUS && dz >= -SPAWN_RADIUS && dz <= SPAWN_RADIUS;
+	}
+
+	/*
+	 * Unloads a chunk unless a listener cancels it or, if safe, a player
+	 * is in it or it is kept as part of the spawn.
+	 */
+	public boolean unloadChunk(int x, int z, boolean save, boolean safe) {
+		long key = chunkKey(x, z);
+		SimChunk chunk = loaded.get(key);
+		if (chunk == null) return true;
+
+		if (safe) {
+			if (isSpawnChunk(x, z)) return false;
+
+			for (Player thisPlayer : players) {
+				Location location = thisPlayer.getLocation();
+				if (location.getBlockX() >> 4 == x && location.getBlockZ() >> 4 == z) return false;
+			}
+		}
+
+		ChunkUnloadEvent event = new ChunkUnloadEvent(chunk.getChunk());
+		server.callEvent(event);
+		if (event.isCancelled()) return false;
+
+		loaded.remove(key);
+		chunkUnloads++;
+		return true;
+	}
+
+	public boolean unloadChunkRequest(int x, int z) {
+		return unloadChunkRequest(x, z, true);
+	}
+
+	public boolean unloadChunkRequest(int x, int z, boolean safe) {
+		if (safe) {
+			for (Player thisPlayer : players) {
+				Location location = thisPlayer.getLocation();
+				if (location.getBlockX() >> 4 == x && location.getBlockZ() >> 4 == z) return false;
+			}
+		}
+
+		if (isChunkLoaded(x, z)) unloadRequests.add(chunkKey(x, z));
+		return true;
+	}
+
+	public int getUnloadRequests() {
+		return unloadRequests.size();
+	}
+
+	public boolean refreshChunk(int x, int z) {
+		if (!isChunkLoaded(x, z)) return false;
+
+		refreshes++;
+		return true;
+	}
+
+	public int getChunkLoads() {
+		return chunkLoads;
+	}
+
+	public int getChunkUnloads() {
+		return chunkUnloads;
+	}
+
+	public int getRefreshes() {
+		return refreshes;
+	}
+
+	public void save() {
+		saves++;
+	}
+
+	public int getSaves() {
+		return saves;
+	}
+
+	/*
+	 * Spawns a creature the way the server does: natural spawns respect
+	 * the spawn flags, every spawn can be cancelled by a listener. Returns
+	 * null if nothing spawned.
+	 */
+	public LivingEntity spawnCreature(Location location, Class<? extends LivingEntity> kind, SpawnReason reason) {
+		if (reason == SpawnReason.NATURAL && !(isMonster(kind) ? allowMonsters : allowAnimals)) return null;
+
+		SimEntity entity = new SimEntity(this, kind, location);
+		CreatureSpawnEvent event = new CreatureSpawnEvent(entity.getEntity(), CreatureType.fromName(kind.getSimpleName()), location, reason);
+
+		server.callEvent(event);
+		if (event.isCancelled()) return null;
+
+		entities.add(entity);
+		return entity.getEntity();
+	}
+
+	public static boolean isMonster(Class<? extends LivingEntity> kind) {
+		return MONSTERS.contains(kind);
+	}
+
+	void removeEntity(SimEntity entity) {
+		entities.remove(entity);
+	}
+
+	public int getCreatureCount() {
+		return entities.size();
+	}
+
+	/*
+	 * Creatures and players, like the server's list.
+	 */
+	public List<LivingEntity> getLivingEntities() {
+		List<LivingEntity> ret = new ArrayList<LivingEntity>(entities.size() + players.size());
+
+		for (SimEntity thisEntity : entities) {
+			ret.add(thisEntity.getEntity());
+		}
+
+		ret.addAll(players);
+		return ret;
+	}
+
+	public List<Entity> getEntities() {
+		return new ArrayList<Entity>(getLivingEntities());
+	}
+
+	public void setSpawnFlags(boolean allowMonsters, boolean allowAnimals) {
+		this.allowMonsters = allowMonsters;
+		this.allowAnimals = allowAnimals;
+	}
+
+	public boolean getAllowMonsters() {
+		return allowMonsters;
+	}
+
+	public boolean getAllowAnimals() {
+		return allowAnimals;
+	}
+
+	public boolean hasStorm() {
+		return storm;
+	}
+
+	/*
+	 * Starts or stops a storm unless a listener cancels the change.
+	 */
+	public void setStorm(boolean storm) {
+		WeatherChangeEvent event = new WeatherChangeEvent(world, storm);
+
+		server.callEvent(event);
+		if (!event.isCancelled()) this.storm = storm;
+	}
+
+	public boolean getPVP() {
+		return pvp;
+	}
+
+	public void setPVP(boolean pvp) {
+		this.pvp = pvp;
+	}
+
+	public boolean getKeepSpawnInMemory() {
+		return keepSpawnInMemory;
+	}
+
+	public void setKeepSpawnInMemory(boolean keepSpawnInMemory) {
+		this.keepSpawnInMemory = keepSpawnInMemory;
+	}
+
+	public Difficulty getDifficulty() {
+		return difficulty;
+	}
+
+	public void setDifficulty(Difficulty difficulty) {
+		this.difficulty = difficulty;
+	}
+
+	@Override
+	public String toString() {
+		return "SimWorld{" + name + "}";
+	}
+}
@@ -0,0 +1,107 @@
+package de.xcraft.engelier.XcraftGate;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+
+import org.bukkit.World.Environment;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import de.xcraft.engelier.XcraftGate.sim.SimPlayer;
+import de.xcraft.engelier.XcraftGate.sim.SimServer;
+import de.xcraft.engelier.XcraftGate.sim.SimServerRule;
+
+/*
+ * A template is not loaded while it is being copied, and a copy of a
+ * template that got loaded anyway is thrown away. World folders live in
+ * the working directory, like on a server.
+ */
+public class CloneWorldTest {
+	// the discarded copy logs a warning on purpose
+	@Rule
+	public SimServerRule sim = new SimServerRule().level(Level.SEVERE);
+
+	private SimServer server;
+	private XcraftGate plugin;
+	private DataWorld template;
+	private String cloneName;
+	private SimPlayer admin;
+
+	@Before
+	public void setUp() throws Exception {
+		server = sim.getServer();
+		plugin = sim.getPlugin();
+
+		String suffix = Long.toString(System.nanoTime());
+		template = new DataWorld(plugin, "template" + suffix, Environment.NORMAL);
+		plugin.getWorlds().add(template);
+		cloneName = "clone" + suffix;
+
+		File templateFolder = new File(template.getName());
+		templateFolder.mkdirs();
+		FileOutputStream out = new FileOutputStream(new File(templateFolder, "level.dat"));
+		try {
+			out.write(new byte[4096]);
+		} finally {
+			out.close();
+		}
+
+		admin = server.join("admin", sim.at(0.5, 0.5));
+	}
+
+	@After
+	public void tearDown() {
+		delete(new File(template.getName()));
+		delete(new File(cloneName));
+	}
+
+	private static void delete(File file) {
+		if (file.isDirectory()) {
+			for (File thisFile : file.listFiles()) {
+				delete(thisFile);
+			}
+		}
+
+		file.delete();
+	}
+
+	@Test
+	public void templateIsNotLoadedWhileItIsCopied() throws IOException {
+		plugin.getClones().start(template, cloneName, admin.getPlayer());
+		assertTrue(plugin.getClones().isTemplate(template.getName()));
+
+		template.load();
+		assertFalse(template.isLoaded());
+		plugin.getLoads().add(template.getName(), LoadWorld.PRIORITY_GATE);
+
+		server.tick(3);
+		assertFalse(plugin.getClones().isTemplate(template.getName()));
+		assertFalse(template.isLoaded());
+		assertNotNull(plugin.getWorlds().get(cloneName));
+		assertTrue(new File(cloneName, "level.dat").exists());
+	}
+
+	@Test
+	public void copyOfATemplateLoadedMeanwhileIsDiscarded() {
+		plugin.getClones().start(template, cloneName, admin.getPlayer());
+
+		// loaded behind our back, e.g. by another plugin
+		server.addWorld(template.getName());
+
+		server.tick(5);
+		assertFalse(plugin.getClones().isTemplate(template.getName()));
+		assertFalse(plugin.getClones().isCloning(cloneName));
+		assertNull(plugin.getWorlds().get(cloneName));
+		assertFalse(new File(cloneName).exists());
+		assertTrue(admin.getMessages().get(admin.getMessages().size() - 1).contains("was not created"));
+	}
+}
@@ -0,0 +1,149 @@
+package de.xcraft.engelier.XcraftGate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.bukkit.World.Environment;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import de.xcraft.engelier.XcraftGate.sim.SimPlayer;
+import de.xcraft.engelier.XcraftGate.sim.SimServer;
+import de.xcraft.engelier.XcraftGate.sim.SimServerRule;
+
+/*
+ * Players arriving through a gate must not bounce straight back, and
+ * whatever the debounce keeps about them has to go once they leave, time
+ * out or change worlds.
+ */
+public class DebounceTeleportTest {
+	private static final int LOGINS = 100000;
+	private static final int BATCH = 100;
+
+	@Rule
+	public SimServerRule sim = new SimServerRule();
+
+	private SimServer server;
+	private XcraftGate plugin;
+
+	@Before
+	public void setUp() {
+		server = sim.getServer();
+		plugin = sim.getPlugin();
+
+		DataGate from = sim.gate("from", "world", 10.5, 10.5);
+		DataGate to = sim.gate("to", "world", 100.5, 100.5);
+		from.linkTo(to, false);
+		to.linkTo(from, false);
+	}
+
+	private SimPlayer arrive(String name, Random random) {
+		SimPlayer ret = server.join(name, sim.at(7.5 + random.nextDouble(), 10.5));
+		ret.walkTo(sim.at(10.5, 10.5));
+		return ret;
+	}
+
+	private static long usedHeap() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	@Test
+	public void arrivingPlayersDontBounceBack() {
+		SimPlayer player = arrive("player", new Random(1));
+		server.tickUntilArrived(100);
+
+		assertEquals(1, player.getTeleports());
+		assertEquals(1, plugin.getTeleports().size());
+
+		// turning around on the arrival gate stays put
+		player.walkTo(sim.at(100.9, 100.5));
+		player.walkTo(sim.at(100.1, 100.5));
+		server.tickUntilArrived(100);
+		assertEquals(1, player.getTeleports());
+
+		// stepping off clears it, stepping on again goes back
+		player.walkTo(sim.at(102.5, 100.5));
+		server.tickUntilArrived(100);
+		assertEquals(0, plugin.getTeleports().size());
+
+		player.walkTo(sim.at(100.5, 100.5));
+		server.tickUntilArrived(100);
+		assertEquals(2, player.getTeleports());
+		assertEquals(10, player.getLocation().getBlockX());
+	}
+
+	@Test
+	public void entriesTimeOut() {
+		SimPlayer player = arrive("player", new Random(1));
+		server.tickUntilArrived(100);
+		assertEquals(1, plugin.getTeleports().size());
+
+		// the wheel turns every 20 ticks
+		server.tick((plugin.config.getInt("gates.debounceTimeout", 30) + 1) * 20);
+		assertEquals(0, plugin.getTeleports().size());
+		assertEquals(1, player.getTeleports());
+	}
+
+	@Test
+	public void worldChangeClearsEntries() {
+		DataWorld nether = new DataWorld(plugin, "nether", Environment.NETHER);
+		plugin.getWorlds().add(nether);
+		nether.load();
+
+		SimPlayer player = arrive("player", new Random(1));
+		server.tickUntilArrived(100);
+		assertEquals(1, plugin.getTeleports().size());
+
+		player.teleport(sim.at(nether.getWorld(), 0.5, 0.5));
+		assertEquals(0, plugin.getTeleports().size());
+	}
+
+	@Test
+	public void memoryStaysFlatOverManyLogins() {
+		Random random = new Random(42);
+		long teleports = 0;
+		long heapAfterWarmup = 0;
+
+		for (int round = 0; round < LOGINS / BATCH; round++) {
+			List<SimPlayer> batch = new ArrayList<SimPlayer>();
+
+			for (int i = 0; i < BATCH; i++) {
+				batch.add(arrive("player" + (round * BATCH + i), random));
+			}
+
+			server.tickUntilArrived(100);
+
+			// some leave right away, standing on the arrival gate, the
+			// others after the timeout had a chance to run
+			server.tick(random.nextInt(40));
+
+			for (SimPlayer thisPlayer : batch) {
+				teleports += thisPlayer.getTeleports();
+				server.quit(thisPlayer);
+			}
+
+			assertEquals(0, plugin.getPlayers().size());
+			assertEquals(0, plugin.getTeleports().size());
+
+			if (round == LOGINS / BATCH / 10) heapAfterWarmup = usedHeap();
+		}
+
+		long growth = usedHeap() - heapAfterWarmup;
+
+		assertEquals(LOGINS, teleports);
+		assertTrue("heap grew by " + growth + " bytes", growth < 4 * 1024 * 1024);
+	}
+}
@@ -0,0 +1,150 @@
+package de.xcraft.engelier.XcraftGate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.Test;
+
+import de.xcraft.engelier.XcraftGate.sim.SimServer;
+
+/*
+ * The block index against a plain HashMap, and the claim that a lookup
+ * allocates nothing.
+ */
+public class IndexGateBlockTest {
+	private final SimServer server = new SimServer();
+	private final World world = server.addWorld("world").getWorld();
+	private final World nether = server.addWorld("nether").getWorld();
+
+	private static DataGate gate(String name, String worldName, double x, double y, double z) {
+		DataGate ret = new DataGate(null, name);
+		ret.setLocation(worldName, x, y, z, 0, 0);
+		return ret;
+	}
+
+	@Test
+	public void packKeepsNeighboursApart() {
+		assertNotEquals(IndexGateBlock.pack(0, 64, 0), IndexGateBlock.pack(-1, 64, 0));
+		assertNotEquals(IndexGateBlock.pack(0, 64, 0), IndexGateBlock.pack(0, 64, -1));
+		assertNotEquals(IndexGateBlock.pack(0, 64, 0), IndexGateBlock.pack(0, 65, 0));
+		assertNotEquals(IndexGateBlock.pack(1, 0, 0), IndexGateBlock.pack(0, 0, 1));
+		assertNotEquals(IndexGateBlock.pack(30000000, 127, -30000000), IndexGateBlock.pack(-30000000, 127, 30000000));
+	}
+
+	@Test
+	public void findsGatesByBlock() {
+		IndexGateBlock index = new IndexGateBlock();
+		DataGate gate = gate("gate", "world", -10.5, 64, 20.5);
+		index.put(gate);
+
+		assertSame(gate, index.get(new Location(world, -10.9, 64.7, 20.01)));
+		assertSame(gate, index.get(new Location(world, -10.01, 64, 20.99)));
+		assertNull(index.get(new Location(world, -9.9, 64, 20.5)));
+		assertNull(index.get(new Location(world, -10.5, 65, 20.5)));
+		assertNull(index.get(new Location(nether, -10.5, 64, 20.5)));
+		assertNull(index.get(new Location(null, -10.5, 64, 20.5)));
+	}
+
+	@Test
+	public void removeOnlyDropsTheGivenGate() {
+		IndexGateBlock index = new IndexGateBlock();
+		DataGate first = gate("first", "world", 0.5, 64, 0.5);
+		DataGate second = gate("second", "world", 0.5, 64, 0.5);
+		Location location = new Location(world, 0.5, 64, 0.5);
+
+		index.put(first);
+		index.put(second);
+		assertSame(second, index.get(location));
+
+		index.remove(first);
+		assertSame(second, index.get(location));
+
+		index.remove(second);
+		assertNull(index.get(location));
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	public void matchesAHashMapUnderChurn() {
+		IndexGateBlock index = new IndexGateBlock();
+		Map<String, DataGate> reference = new HashMap<String, DataGate>();
+		Random random = new Random(1);
+
+		for (int i = 0; i < 200000; i++) {
+			String worldName = random.nextBoolean() ? "world" : "nether";
+			int x = random.nextInt(512) - 256;
+			int y = random.nextInt(128);
+			int z = random.nextInt(512) - 256;
+			String key = worldName + "," + x + "," + y + "," + z;
+
+			if (random.nextInt(3) == 0 && reference.containsKey(key)) {
+				index.remove(reference.remove(key));
+			} else {
+				DataGate gate = gate("gate" + i, worldName, x + 0.5, y, z + 0.5);
+				index.put(gate);
+				reference.put(key, gate);
+			}
+		}
+
+		assertEquals(reference.size(), index.size());
+
+		for (DataGate thisGate : reference.values()) {
+			World gateWorld = thisGate.getWorldName().equals("world") ? world : nether;
+			assertSame(thisGate, index.get(new Location(gateWorld, thisGate.getX(), thisGate.getY(), thisGate.getZ())));
+		}
+
+		for (int i = 0; i < 100000; i++) {
+			int x = random.nextInt(512) - 256;
+			int y = random.nextInt(128);
+			int z = random.nextInt(512) - 256;
+
+			assertSame(reference.get("world," + x + "," + y + "," + z), index.get(new Location(world, x + 0.5, y, z + 0.5)));
+		}
+	}
+
+	@Test
+	public void lookupsDoNotAllocate() {
+		IndexTable<DataGate> table = new IndexTable<DataGate>();
+		Random random = new Random(2);
+		long[] keys = new long[10000];
+
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = IndexGateBlock.pack(random.nextInt(10000), random.nextInt(128), random.nextInt(10000));
+			if (i % 2 == 0) table.put("world", keys[i], gate("gate" + i, "world", 0, 0, 0));
+		}
+
+		int worldId = table.getWorldId("world");
+		int found = 0;
+
+		// warm up, then count what the lookups cost
+		for (int i = 0; i < 200000; i++) {
+			if (table.get(worldId, keys[i % keys.length]) != null) found++;
+		}
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+
+		for (int i = 0; i < 1000000; i++) {
+			if (table.get(worldId, keys[i % keys.length]) != null) found++;
+			if (table.get("world", keys[i % keys.length]) != null) found++;
+		}
+
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+		assertEquals(1100000, found);
+		// what the measuring itself costs, not a byte per lookup
+		assertTrue("allocated " + allocated + " bytes", allocated < 4096);
+		assertNull(table.get(worldId + 1, keys[0]));
+	}
+}
@@ -0,0 +1,219 @@
+package de.xcraft.engelier.XcraftGate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import de.xcraft.engelier.XcraftGate.sim.SimEconomy;
+import de.xcraft.engelier.XcraftGate.sim.SimPlayer;
+import de.xcraft.engelier.XcraftGate.sim.SimServerRule;
+
+/*
+ * Tolls against a stand-in economy: one balance read for many gates,
+ * debits booked a batch of accounts per run, failed debits retried up
+ * to toll.maxRetries and then written to tolls-failed.log.
+ */
+public class LedgerTollTest {
+	// the dead letter test logs severe on purpose
+	@Rule
+	public SimServerRule sim = new SimServerRule().level(Level.OFF);
+
+	private XcraftGate plugin;
+	private SimEconomy economy;
+	private LedgerToll tolls;
+
+	@Before
+	public void setUp() {
+		plugin = sim.getPlugin();
+		economy = new SimEconomy(100);
+		plugin.getPluginManager().setEcoMethod(economy.getMethod());
+		tolls = plugin.getTolls();
+	}
+
+	@Test
+	public void chargesFromTheCachedBalance() {
+		for (int i = 0; i < 5; i++) {
+			assertTrue(tolls.charge("alice", 10));
+		}
+
+		assertEquals(1, economy.getBalanceReads());
+		assertEquals(0, economy.getDebits());
+		assertEquals(50, tolls.getPending(), 0);
+
+		// all five are booked as one debit
+		tolls.run();
+		assertEquals(1, economy.getDebits());
+		assertEquals(50, economy.getBalance("alice"), 0);
+		assertEquals(0, tolls.getPending(), 0);
+		assertEquals(5, tolls.getCharged());
+		assertEquals(1, tolls.getSettled());
+	}
+
+	@Test
+	public void pendingDebitsCountAgainstTheBalance() {
+		economy.setBalance("bob", 15);
+
+		assertTrue(tolls.charge("bob", 10));
+		assertFalse(tolls.charge("bob", 10));
+
+		// the second look asked the economy again before refusing
+		assertEquals(2, economy.getBalanceReads());
+		assertEquals(10, tolls.getPending(), 0);
+
+		economy.setBalance("bob", 1000);
+		assertTrue(tolls.charge("bob", 10));
+	}
+
+	@Test
+	public void settlesABatchOfAccountsPerRun() {
+		for (int i = 0; i < 40; i++) {
+			assertTrue(tolls.charge("player" + i, 1));
+		}
+
+		tolls.run();
+		assertEquals(16, economy.getDebits());
+		tolls.run();
+		assertEquals(32, economy.getDebits());
+		tolls.run();
+		assertEquals(40, economy.getDebits());
+		tolls.run();
+		assertEquals(40, economy.getDebits());
+	}
+
+	@Test
+	public void closeBooksEverything() {
+		for (int i = 0; i < 40; i++) {
+			tolls.charge("player" + i, 1);
+		}
+
+		tolls.close();
+		assertEquals(40, economy.getDebits());
+		assertEquals(0, tolls.getPending(), 0);
+	}
+
+	@Test
+	public void closeWritesDownWhatItCantBook() throws IOException {
+		tolls.charge("hank", 10);
+		economy.setFailing(true);
+
+		tolls.close();
+		assertEquals(1, tolls.getDropped());
+		assertEquals(0, tolls.getPending(), 0);
+		assertTrue(read(new File(sim.getDataFolder(), "tolls-failed.log")).contains("\thank\t10.00 coins\n"));
+	}
+
+	@Test
+	public void failedDebitsAreRetriedWhileTheEconomyIsDown() {
+		tolls.charge("carol", 10);
+		economy.setFailing(true);
+
+		tolls.run();
+		tolls.run();
+		assertEquals(2, tolls.getFailed());
+		assertEquals(10, tolls.getPending(), 0);
+
+		economy.setFailing(false);
+		tolls.run();
+		assertEquals(1, tolls.getSettled());
+		assertEquals(0, tolls.getDropped());
+		assertEquals(90, economy.getBalance("carol"), 0);
+	}
+
+	@Test
+	public void givesUpAfterMaxRetries() throws IOException {
+		tolls.charge("dave", 10);
+		economy.setFailing(true);
+
+		for (int i = 0; i < 5; i++) {
+			tolls.run();
+		}
+
+		assertEquals(0, tolls.getDropped());
+		assertEquals(10, tolls.getPending(), 0);
+
+		tolls.run();
+		assertEquals(1, tolls.getDropped());
+		assertEquals(6, tolls.getFailed());
+		assertEquals(0, tolls.getPending(), 0);
+
+		File deadLetters = new File(sim.getDataFolder(), "tolls-failed.log");
+		assertTrue(deadLetters.exists());
+		String content = read(deadLetters);
+		assertTrue(content, content.contains("\tdave\t10.00 coins\n"));
+
+		// nothing left to try
+		tolls.run();
+		assertEquals(6, tolls.getFailed());
+	}
+
+	@Test
+	public void forgetKeepsPendingDebits() {
+		tolls.charge("erin", 10);
+		tolls.forget("erin");
+		assertEquals(10, tolls.getPending(), 0);
+
+		tolls.run();
+		assertEquals(90, economy.getBalance("erin"), 0);
+
+		// gone once booked, the next toll reads the balance again
+		int reads = economy.getBalanceReads();
+		assertTrue(tolls.charge("erin", 10));
+		assertEquals(reads + 1, economy.getBalanceReads());
+	}
+
+	@Test
+	public void anotherEconomyMeansFreshBalances() {
+		tolls.charge("gina", 10);
+		tolls.run();
+
+		SimEconomy other = new SimEconomy(5);
+		plugin.getPluginManager().setEcoMethod(other.getMethod());
+
+		assertFalse(tolls.charge("gina", 10));
+		assertEquals(1, other.getBalanceReads());
+	}
+
+	@Test
+	public void tollGateTakesTheTollOnTheMoveWithoutDebiting() {
+		DataGate from = sim.gate("from", "world", 10.5, 10.5);
+		from.setToll(25);
+		DataGate to = sim.gate("to", "world", 100.5, 100.5);
+		from.linkTo(to, true);
+
+		SimPlayer player = sim.getServer().join("walker", sim.at(5.5, 10.5));
+		player.walkTo(sim.at(15.5, 10.5));
+		sim.getServer().tickUntilArrived(200);
+
+		assertEquals(1, player.getTeleports());
+		assertEquals(25, tolls.getPending(), 0);
+		assertEquals(100, economy.getBalance("walker"), 0);
+
+		// booked on the next settle run of the scheduler
+		sim.getServer().tick(20);
+		assertEquals(75, economy.getBalance("walker"), 0);
+	}
+
+	private static String read(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+
+		try {
+			byte[] data = new byte[(int) file.length()];
+			int read = 0;
+			while (read < data.length) {
+				read += in.read(data, read, data.length - read);
+			}
+			return new String(data, "UTF-8");
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package de.xcraft.engelier.XcraftGate;
+
+import static org.junit.Assert.assertEquals;
+
+
+import org.bukkit.Location;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import de.xcraft.engelier.XcraftGate.sim.SimPlayer;
+import de.xcraft.engelier.XcraftGate.sim.SimServer;
+import de.xcraft.engelier.XcraftGate.sim.SimServerRule;
+import de.xcraft.engelier.XcraftGate.sim.SimWorld;
+
+/*
+ * Chunk refreshes after teleports: one per chunk and tick however many
+ * players arrive, none while the chunk was just sent, at most
+ * gates.refreshPerTick per tick.
+ */
+public class RefreshChunkTest {
+	@Rule
+	public SimServerRule sim = new SimServerRule();
+
+	private SimServer server;
+	private SimWorld world;
+	private RefreshChunk refreshes;
+
+	@Before
+	public void setUp() {
+		server = sim.getServer();
+		world = sim.getWorld();
+		refreshes = sim.getPlugin().getRefreshes();
+	}
+
+	@Test
+	public void manyArrivalsInOneTickRefreshOnce() {
+		world.loadChunk(3, 3);
+
+		for (int i = 0; i < 30; i++) {
+			refreshes.request(world.getWorld(), 3, 3);
+		}
+
+		server.tick();
+		assertEquals(1, world.getRefreshes());
+		assertEquals(1, refreshes.getRefreshed());
+		assertEquals(29, refreshes.getCoalesced());
+	}
+
+	@Test
+	public void justSentChunksWaitForTheCooldown() {
+		world.loadChunk(0, 0);
+		refreshes.request(world.getWorld(), 0, 0);
+		server.tick();
+
+		for (int i = 1; i < 10; i++) {
+			refreshes.request(world.getWorld(), 0, 0);
+			server.tick();
+		}
+
+		assertEquals(1, world.getRefreshes());
+		assertEquals(9, refreshes.getCoalesced());
+
+		// ten ticks after it was sent
+		server.tick();
+		refreshes.request(world.getWorld(), 0, 0);
+		server.tick();
+		assertEquals(2, world.getRefreshes());
+	}
+
+	@Test
+	public void refreshesPerTickAreCapped() {
+		for (int i = 0; i < 20; i++) {
+			world.loadChunk(i, 0);
+			refreshes.request(world.getWorld(), i, 0);
+		}
+
+		server.tick();
+		assertEquals(8, world.getRefreshes());
+		assertEquals(12, refreshes.size());
+
+		server.tick();
+		assertEquals(16, world.getRefreshes());
+
+		server.tick();
+		assertEquals(20, world.getRefreshes());
+		assertEquals(0, refreshes.size());
+	}
+
+	@Test
+	public void unloadedChunksDontUseTheBudget() {
+		for (int i = 0; i < 8; i++) {
+			refreshes.request(world.getWorld(), 100 + i, 0);
+		}
+
+		for (int i = 0; i < 8; i++) {
+			world.loadChunk(i, 0);
+			refreshes.request(world.getWorld(), i, 0);
+		}
+
+		int loads = world.getChunkLoads();
+		server.tick();
+		assertEquals(8, world.getRefreshes());
+		assertEquals(0, refreshes.size());
+
+		// and aren't loaded just to be sent
+		assertEquals(loads, world.getChunkLoads());
+	}
+
+	@Test
+	public void teleportsIntoTheSameChunkAreCoalesced() {
+		Location target = sim.at(200.5, 200.5);
+
+		for (int i = 0; i < 30; i++) {
+			SimPlayer player = server.join("player" + i, sim.at(i * 20 + 0.5, 0.5));
+			player.teleport(target);
+		}
+
+		server.tick();
+		assertEquals(1, world.getRefreshes());
+		assertEquals(29, refreshes.getCoalesced());
+	}
+}
@@ -0,0 +1,148 @@
+package de.xcraft.engelier.XcraftGate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.bukkit.permissions.Permission;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import de.xcraft.engelier.XcraftGate.sim.SimPluginManager;
+import de.xcraft.engelier.XcraftGate.sim.SimServer;
+import de.xcraft.engelier.XcraftGate.sim.SimServerRule;
+
+/*
+ * The XcraftGate.use.* wildcard: registered once per load with all its
+ * children, edited in place for single gates, and nothing registered
+ * inside a batch before its end.
+ */
+public class SetPermissionTest {
+	private static final String WILDCARD = "XcraftGate.use.*";
+
+	@Rule
+	public SimServerRule sim = new SimServerRule();
+
+	private SimServer server;
+	private XcraftGate plugin;
+
+	@Before
+	public void setUp() {
+		fetch();
+	}
+
+	private void fetch() {
+		server = sim.getServer();
+		plugin = sim.getPlugin();
+	}
+
+	private SimPluginManager pm() {
+		return server.getSimPluginManager();
+	}
+
+	private DataGate gate(String name, double x) {
+		return sim.gate(name, "world", x, 0.5);
+	}
+
+	@Test
+	public void loadRegistersTheWildcardOnce() {
+		for (int i = 0; i < 500; i++) {
+			gate("gate" + i, i * 2 + 0.5);
+		}
+
+		server.tick(40);
+		sim.restart();
+		fetch();
+
+		assertEquals(1, pm().getPermissionAdds(WILDCARD));
+		assertEquals(500, pm().getPermission(WILDCARD).getChildren().size());
+
+		for (int i = 0; i < 500; i++) {
+			assertEquals(1, pm().getPermissionAdds("XcraftGate.use.gate" + i));
+			assertTrue(pm().getPermission(WILDCARD).getChildren().containsKey("XcraftGate.use.gate" + i));
+		}
+	}
+
+	@Test
+	public void singleGatesEditTheWildcardInPlace() {
+		gate("a", 0.5);
+		gate("b", 2.5);
+		Permission wildcard = pm().getPermission(WILDCARD);
+		assertNotNull(wildcard);
+
+		gate("c", 4.5);
+		assertSame(wildcard, pm().getPermission(WILDCARD));
+		assertEquals(1, pm().getPermissionAdds(WILDCARD));
+		assertTrue(wildcard.getChildren().containsKey("XcraftGate.use.c"));
+		assertNotNull(pm().getPermission("XcraftGate.use.c"));
+
+		plugin.getGates().remove("b");
+		assertSame(wildcard, pm().getPermission(WILDCARD));
+		assertFalse(wildcard.getChildren().containsKey("XcraftGate.use.b"));
+		assertNull(pm().getPermission("XcraftGate.use.b"));
+		assertEquals(2, wildcard.getChildren().size());
+	}
+
+	@Test
+	public void movingAGateLeavesItsPermissionAlone() {
+		DataGate gate = gate("mover", 0.5);
+		int count = pm().getPermissionCount();
+
+		plugin.getGates().move(gate, gate.getLocation().add(10, 0, 0));
+		assertEquals(count, pm().getPermissionCount());
+		assertEquals(1, pm().getPermissionAdds("XcraftGate.use.mover"));
+	}
+
+	@Test
+	public void nestedBatchesApplyAtTheOutermostEnd() {
+		SetPermission permissions = new SetPermission(plugin);
+
+		permissions.begin();
+		permissions.begin();
+		permissions.add("x");
+		permissions.end();
+		assertNull(pm().getPermission("XcraftGate.use.x"));
+		assertNull(pm().getPermission(WILDCARD));
+
+		permissions.end();
+		assertNotNull(pm().getPermission("XcraftGate.use.x"));
+		assertTrue(pm().getPermission(WILDCARD).getChildren().containsKey("XcraftGate.use.x"));
+	}
+
+	@Test
+	public void addedAndRemovedInOneBatchRegistersNothing() {
+		SetPermission permissions = new SetPermission(plugin);
+
+		permissions.begin();
+		permissions.add("y");
+		permissions.remove("y");
+		permissions.end();
+
+		assertEquals(0, pm().getPermissionAdds("XcraftGate.use.y"));
+		assertEquals(0, pm().getPermissionAdds(WILDCARD));
+		assertEquals(0, permissions.size());
+	}
+
+	@Test
+	public void syncMatchesTheGivenNames() {
+		SetPermission permissions = new SetPermission(plugin);
+		permissions.add("a");
+		permissions.add("b");
+		permissions.add("c");
+
+		permissions.sync(Arrays.asList("b", "d"));
+
+		assertEquals(2, permissions.size());
+		assertNull(pm().getPermission("XcraftGate.use.a"));
+		assertNull(pm().getPermission("XcraftGate.use.c"));
+		assertNotNull(pm().getPermission("XcraftGate.use.d"));
+		assertEquals(2, pm().getPermission(WILDCARD).getChildren().size());
+		assertEquals(1, pm().getPermissionAdds(WILDCARD));
+	}
+}
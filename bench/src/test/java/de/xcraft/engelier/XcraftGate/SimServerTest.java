@@ -0,0 +1,210 @@
+package de.xcraft.engelier.XcraftGate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.World.Environment;
+import org.bukkit.entity.Cow;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Zombie;
+import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import de.xcraft.engelier.XcraftGate.sim.SimPlayer;
+import de.xcraft.engelier.XcraftGate.sim.SimServer;
+import de.xcraft.engelier.XcraftGate.sim.SimServerRule;
+import de.xcraft.engelier.XcraftGate.sim.SimWorld;
+
+/*
+ * The plugin on a simulated server: players walking through gates,
+ * worlds loading and unloading, creature limits and what survives a
+ * restart.
+ */
+public class SimServerTest {
+	@Rule
+	public SimServerRule sim = new SimServerRule();
+
+	private SimServer server;
+	private SimWorld world;
+	private XcraftGate plugin;
+
+	@Before
+	public void setUp() {
+		fetch();
+	}
+
+	private void fetch() {
+		server = sim.getServer();
+		world = sim.getWorld();
+		plugin = sim.getPlugin();
+	}
+
+	private void restart() {
+		sim.restart();
+		fetch();
+	}
+
+	@Test
+	public void walkingIntoGateTeleportsToTarget() {
+		DataGate from = sim.gate("from", "world", 10.5, 10.5);
+		DataGate to = sim.gate("to", "world", 100.5, 100.5);
+		from.linkTo(to, true);
+		to.linkTo(from, true);
+
+		SimPlayer player = server.join("walker", sim.at(world.getWorld(), 5.5, 10.5));
+		player.walkTo(sim.at(world.getWorld(), 15.5, 10.5));
+		server.tickUntilArrived(200);
+		server.tick(20);
+
+		assertEquals(1, player.getTeleports());
+		assertEquals(100, player.getLocation().getBlockX());
+		assertEquals(100, player.getLocation().getBlockZ());
+		assertTrue(world.isChunkLoaded(100 >> 4, 100 >> 4));
+		assertTrue(world.getRefreshes() > 0);
+	}
+
+	@Test
+	public void gateIntoUnloadedWorldLoadsItFirst() {
+		plugin.getWorlds().add(new DataWorld(plugin, "nether", Environment.NETHER));
+		DataGate from = sim.gate("from", "world", 10.5, 10.5);
+		DataGate to = sim.gate("to", "nether", 0.5, 0.5);
+		from.linkTo(to, true);
+
+		SimPlayer player = server.join("walker", sim.at(world.getWorld(), 8.5, 10.5));
+		player.walkTo(sim.at(world.getWorld(), 10.5, 10.5));
+		server.tickUntilArrived(100);
+
+		assertEquals(0, player.getTeleports());
+		assertTrue(player.getMessages().get(player.getMessages().size() - 1).contains("warming up"));
+
+		server.tick(40);
+		World nether = server.getWorld("nether");
+		assertNotNull(nether);
+		assertSame(nether, plugin.getWorlds().get("nether").getWorld());
+		assertSame(to, plugin.getGates().getByLocation(to.getLocation()));
+
+		// step off and on again
+		player.walkTo(sim.at(world.getWorld(), 8.5, 10.5));
+		player.walkTo(sim.at(world.getWorld(), 10.5, 10.5));
+		server.tickUntilArrived(100);
+
+		assertEquals(1, player.getTeleports());
+		assertSame(nether, player.getWorld());
+		assertTrue(nether.getPlayers().contains(player.getPlayer()));
+	}
+
+	@Test
+	public void unloadingWorldDropsItsGatesFromTheIndex() {
+		DataWorld dataWorld = new DataWorld(plugin, "nether", Environment.NETHER);
+		plugin.getWorlds().add(dataWorld);
+		dataWorld.load();
+		DataGate gate = sim.gate("gate", "nether", 0.5, 0.5);
+		Location location = gate.getLocation();
+
+		SimPlayer player = server.join("visitor", sim.at(dataWorld.getWorld(), 20.5, 20.5));
+		dataWorld.unload();
+		assertTrue("players keep a world loaded", dataWorld.isLoaded());
+
+		server.quit(player);
+		dataWorld.unload();
+
+		assertFalse(dataWorld.isLoaded());
+		assertNull(server.getWorld("nether"));
+		assertNull(plugin.getGates().getByLocation(location));
+		assertTrue(plugin.getGates().has("gate"));
+
+		// the gates are read back from disk once the write went out
+		server.tick(2);
+		dataWorld.load();
+		assertEquals("gate", plugin.getGates().getByLocation(location).getName());
+	}
+
+	@Test
+	public void creatureLimitStopsNaturalSpawns() {
+		DataWorld dataWorld = plugin.getWorlds().get("world");
+		dataWorld.setCreatureLimit(5);
+		Location location = sim.at(world.getWorld(), 0.5, 0.5);
+
+		for (int i = 0; i < 20; i++) {
+			world.spawnCreature(location, i % 2 == 0 ? Zombie.class : Cow.class, SpawnReason.NATURAL);
+		}
+
+		// the limit is checked as a creature spawns, so the one that
+		// reaches it is still let through
+		assertEquals(6, world.getCreatureCount());
+		assertFalse(world.getAllowMonsters());
+		assertFalse(world.getAllowAnimals());
+
+		for (LivingEntity thisEntity : world.getLivingEntities().subList(0, 2)) {
+			thisEntity.remove();
+		}
+
+		server.tick(600);
+		assertTrue(world.getAllowMonsters());
+		assertNotNull(world.spawnCreature(location, Zombie.class, SpawnReason.NATURAL));
+	}
+
+	@Test
+	public void gatesAndWorldsSurviveARestart() {
+		plugin.getWorlds().add(new DataWorld(plugin, "nether", Environment.NETHER));
+		DataGate from = sim.gate("from", "world", 10.5, 10.5);
+		DataGate to = sim.gate("to", "nether", 0.5, 0.5);
+		from.linkTo(to, true);
+		DataWorld dataWorld = plugin.getWorlds().get("world");
+		dataWorld.setBorder(1000);
+		plugin.getWorlds().update(dataWorld);
+		server.tick(40);
+
+		restart();
+
+		assertEquals(2, plugin.getGates().size());
+		assertEquals("to", plugin.getGates().get("from").getTargetName());
+		assertSame(plugin.getGates().get("from"), plugin.getGates().getByLocation(sim.at(world.getWorld(), 10.5, 10.5)));
+		assertEquals(1000, plugin.getWorlds().get("world").getBorder());
+		assertNotNull(plugin.getWorlds().get("nether"));
+
+		// nether is queued on startup and loaded a tick later
+		server.tick(2);
+		assertNotNull(server.getWorld("nether"));
+		assertSame(plugin.getGates().get("to"), plugin.getGates().getByLocation(plugin.getGates().get("to").getLocation()));
+	}
+
+	@Test
+	public void startupAndPreloadDontReadTheTargetsWorldFile() throws IOException {
+		plugin.getWorlds().add(new DataWorld(plugin, "nether", Environment.NETHER));
+		DataGate from = sim.gate("from", "world", 10.5, 10.5);
+		DataGate to = sim.gate("to", "nether", 0.5, 0.5);
+		from.linkTo(to, true);
+		plugin.config.set("dynworld.enabled", true);
+		plugin.config.save(new File(sim.getDataFolder(), "config.yml"));
+		server.tick(40);
+
+		restart();
+
+		// only the main world's gates, the nether's stay on disk
+		assertEquals(1, plugin.getGates().sizeLoaded());
+		DataGate linked = plugin.getGates().getByWorld("world").get(0);
+		assertTrue(linked.hasTarget());
+		assertEquals("to", linked.getTargetName());
+		assertEquals("nether", linked.getTargetWorldName());
+		assertEquals(1, plugin.getGates().sizeLoaded());
+
+		// a player by the gate has the nether preloaded, its gates come with it
+		server.join("walker", sim.at(world.getWorld(), 12.5, 12.5));
+		server.tick(20);
+		assertEquals(1, plugin.getLoads().getPreloaded());
+		assertNotNull(server.getWorld("nether"));
+		assertEquals(2, plugin.getGates().sizeLoaded());
+	}
+}
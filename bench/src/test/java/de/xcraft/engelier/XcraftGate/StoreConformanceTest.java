@@ -0,0 +1,263 @@
+package de.xcraft.engelier.XcraftGate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bukkit.World.Environment;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import de.xcraft.engelier.XcraftGate.sim.SimServer;
+import de.xcraft.engelier.XcraftGate.sim.SimServerRule;
+import de.xcraft.engelier.XcraftGate.sim.SimWorld;
+
+/*
+ * What every storage.format has to do, run against each of them: gates
+ * and worlds come back after a restart exactly as they were, edits and
+ * removals are written on the next save or at the latest on disable,
+ * and switching from the yaml files keeps every gate.
+ */
+@RunWith(Parameterized.class)
+public class StoreConformanceTest {
+	private static final String[] WORLDS = { "world", "nether", "skylands" };
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> formats() {
+		return Arrays.asList(new Object[][] { { "yaml" }, { "binary" }, { "sql" } });
+	}
+
+	@Rule
+	public SimServerRule sim = new SimServerRule().stopped();
+
+	private final String format;
+	private SimServer server;
+	private XcraftGate plugin;
+
+	public StoreConformanceTest(String format) {
+		this.format = format;
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		configure(format);
+		start();
+	}
+
+	private void configure(String storageFormat) throws IOException {
+		sim.configure("storage:\n  format: " + storageFormat + "\n");
+	}
+
+	private void start() {
+		sim.start();
+		server = sim.getServer();
+		plugin = sim.getPlugin();
+	}
+
+	private void restart() {
+		sim.stop();
+		start();
+	}
+
+	private void worlds() {
+		plugin.getWorlds().add(new DataWorld(plugin, "nether", Environment.NETHER));
+		plugin.getWorlds().add(new DataWorld(plugin, "skylands", Environment.SKYLANDS));
+	}
+
+	@Test
+	public void firstStartIsEmpty() {
+		// no silent fallback to yaml, e.g. for a missing sqlite driver
+		assertTrue(plugin.getGates().getStore().getName(), plugin.getGates().getStore().getName().startsWith(format.equals("sql") ? "sqlite" : format));
+		assertEquals(0, plugin.getGates().size());
+
+		restart();
+		assertEquals(0, plugin.getGates().size());
+	}
+
+	@Test
+	public void everyFieldSurvivesARestart() {
+		worlds();
+		DataGate from = sim.gate("from", "world", 10.5, -20.5);
+		DataGate to = sim.gate("to", "nether", 0.5, 0.5);
+		from.linkTo(to, true);
+		from.setToll(12.5);
+		from.setDenySilent(true);
+		plugin.getGates().update(from);
+		plugin.getGates().setVolume(to, 3, 4, 1, 0);
+
+		DataWorld dataWorld = plugin.getWorlds().get("world");
+		dataWorld.setBorder(1000);
+		plugin.getWorlds().update(dataWorld);
+		server.tick(40);
+
+		Map<String, Object> fromData = from.toMap();
+		Map<String, Object> toData = to.toMap();
+		Map<String, Object> worldData = dataWorld.toMap();
+		Map<String, Object> netherData = plugin.getWorlds().get("nether").toMap();
+		restart();
+
+		assertEquals(2, plugin.getGates().size());
+		assertEquals(fromData, plugin.getGates().get("from").toMap());
+		assertEquals(toData, plugin.getGates().get("to").toMap());
+		assertEquals(worldData, plugin.getWorlds().get("world").toMap());
+		assertEquals(netherData, plugin.getWorlds().get("nether").toMap());
+		assertEquals("to", plugin.getGates().get("from").getTarget().getName());
+	}
+
+	@Test
+	public void removedGatesStayRemoved() {
+		sim.gate("keep", "world", 1.5, 1.5);
+		sim.gate("drop", "world", 5.5, 5.5);
+		server.tick(40);
+
+		plugin.getGates().remove("drop");
+		server.tick(40);
+		restart();
+
+		assertEquals(1, plugin.getGates().size());
+		assertNotNull(plugin.getGates().get("keep"));
+		assertNull(plugin.getGates().get("drop"));
+		assertFalse(plugin.getGates().has("drop"));
+	}
+
+	@Test
+	public void movedGatesAreOnlyInTheirNewWorld() {
+		worlds();
+		DataGate gate = sim.gate("mover", "world", 1.5, 1.5);
+		sim.gate("stay", "world", 9.5, 9.5);
+		server.tick(40);
+
+		plugin.getGates().move(gate, sim.at(server.getWorld("world"), 30.5, 30.5));
+		plugin.getGates().get("mover").setToll(1);
+		plugin.getGates().update(gate);
+		server.tick(40);
+		restart();
+
+		assertEquals(30.5, plugin.getGates().get("mover").getX(), 0);
+		assertEquals(1, plugin.getGates().get("mover").getToll(), 0);
+
+		// across worlds the old record has to go, not just a new one appear
+		server.tick(2);
+		assertNotNull(server.getWorld("nether"));
+		plugin.getGates().move(plugin.getGates().get("mover"), sim.at(server.getWorld("nether"), 7.5, 7.5));
+		server.tick(40);
+		restart();
+
+		assertEquals("nether", plugin.getGates().get("mover").getWorldName());
+		assertEquals(1, plugin.getGates().getByWorld("world").size());
+		assertEquals(2, plugin.getGates().size());
+	}
+
+	@Test
+	public void pendingWritesAreFlushedOnDisable() {
+		for (int i = 0; i < 50; i++) {
+			sim.gate("gate" + i, "world", i * 3 + 0.5, 0.5);
+		}
+
+		// no tick, nothing has been handed to the writer yet
+		assertEquals(0, plugin.getGates().getStore().getWrites());
+		restart();
+
+		assertEquals(50, plugin.getGates().size());
+		assertNotNull(plugin.getGates().get("gate49"));
+	}
+
+	@Test
+	public void editsAreWrittenOnTheNextSave() {
+		sim.gate("a", "world", 0.5, 0.5);
+		assertEquals(0, plugin.getGates().getStore().getWrites());
+
+		server.tick(40);
+		long writes = plugin.getGates().getStore().getWrites();
+		assertTrue(writes > 0);
+
+		// nothing changed, nothing written
+		server.tick(40);
+		assertEquals(writes, plugin.getGates().getStore().getWrites());
+
+		DataGate gate = plugin.getGates().get("a");
+		gate.setToll(5);
+		plugin.getGates().update(gate);
+		server.tick(40);
+		assertTrue(plugin.getGates().getStore().getWrites() > writes);
+	}
+
+	@Test
+	public void thousandGatesInThreeWorldsRoundTrip() {
+		worlds();
+		Map<String, Map<String, Object>> expected = new HashMap<String, Map<String, Object>>();
+
+		for (int i = 0; i < 1000; i++) {
+			DataGate gate = new DataGate(plugin, "gate" + i);
+			gate.setLocation(WORLDS[i % WORLDS.length], (i % 100) * 4 + 0.5, SimWorld.GROUND, (i / 100) * 4 + 0.5, 0, 0);
+			if (i % 2 == 1) gate.setToll(i);
+			plugin.getGates().add(gate, true);
+		}
+
+		for (int i = 0; i + 1 < 1000; i += 2) {
+			plugin.getGates().get("gate" + i).linkTo("gate" + (i + 1), true);
+		}
+
+		for (int i = 0; i < 1000; i++) {
+			expected.put("gate" + i, plugin.getGates().get("gate" + i).toMap());
+		}
+
+		server.tick(40);
+		restart();
+
+		assertEquals(1000, plugin.getGates().size());
+		for (Map.Entry<String, Map<String, Object>> thisGate : expected.entrySet()) {
+			assertEquals(thisGate.getKey(), thisGate.getValue(), plugin.getGates().get(thisGate.getKey()).toMap());
+		}
+	}
+
+	@Test
+	public void switchingFromYamlKeepsEveryGate() throws IOException {
+		sim.stop();
+		delete(sim.getDataFolder());
+		sim.getDataFolder().mkdirs();
+		configure("yaml");
+		start();
+
+		worlds();
+		DataGate b = sim.gate("b", "nether", 0.5, 0.5);
+		sim.gate("a", "world", 0.5, 0.5).linkTo(b, true);
+		server.tick(40);
+
+		sim.stop();
+		configure(format);
+		start();
+
+		assertEquals(2, plugin.getGates().size());
+		assertEquals("b", plugin.getGates().get("a").getTargetName());
+		assertNotNull(plugin.getGates().get("b"));
+		assertNotNull(plugin.getWorlds().get("nether"));
+
+		// and the new store holds them on its own from now on
+		restart();
+		assertEquals(2, plugin.getGates().size());
+	}
+
+	private static void delete(File file) {
+		if (file.isDirectory()) {
+			for (File thisFile : file.listFiles()) {
+				delete(thisFile);
+			}
+		}
+
+		file.delete();
+	}
+}
@@ -0,0 +1,112 @@
+package de.xcraft.engelier.XcraftGate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import de.xcraft.engelier.XcraftGate.sim.SimServerRule;
+
+/*
+ * A batch the database refuses is tried again as it was, and never by
+ * rewriting a whole world from memory, which may not hold its gates
+ * any more.
+ */
+public class StoreSqlTest {
+	// the failed batch logs severe on purpose
+	@Rule
+	public SimServerRule sim = new SimServerRule().level(Level.OFF);
+
+	private File database;
+	private StoreSql store;
+
+	@Before
+	public void setUp() throws Exception {
+		database = new File(sim.getRoot(), "test.db");
+		store = new StoreSql(sim.getPlugin(), database, "gates", new Store.Source() {
+			// the world is unloaded, nothing of it in memory
+			@Override
+			public Map<String, Object> snapshot(String shard) {
+				return new HashMap<String, Object>();
+			}
+
+			@Override
+			public Map<String, String> directory() {
+				return null;
+			}
+		});
+		store.open();
+	}
+
+	@After
+	public void tearDown() {
+		store.close();
+	}
+
+	private static Map<String, Object> gate(double x) {
+		Map<String, Object> ret = new HashMap<String, Object>();
+		ret.put("world", "nether");
+		ret.put("locX", x);
+		return ret;
+	}
+
+	private Map<String, Object> load(String shard) {
+		final Map<String, Object> ret = new HashMap<String, Object>();
+
+		store.load(shard, new Store.Loader() {
+			@Override
+			public void record(String name, Map<String, Object> data) {
+				ret.put(name, data);
+			}
+
+			@Override
+			public void error(String name, String where, String reason) {
+				throw new AssertionError(where + ": " + reason);
+			}
+		});
+
+		return ret;
+	}
+
+	@Test
+	public void failedBatchIsRetriedInOrder() throws Exception {
+		store.put("nether", "a", gate(1));
+		store.put("nether", "b", gate(2));
+		store.flush();
+		assertEquals(2, load("nether").size());
+
+		Connection other = DriverManager.getConnection("jdbc:sqlite:" + database.getPath());
+		Statement st = other.createStatement();
+		st.execute("BEGIN EXCLUSIVE");
+
+		store.remove("nether", "b");
+		store.put("nether", "c", gate(3));
+		store.remove("nether", "c");
+		store.flush();
+		assertEquals(2, store.getRecords());
+
+		st.execute("COMMIT");
+		st.close();
+		other.close();
+
+		// still there, nothing lost while the database was locked
+		assertEquals(2, load("nether").size());
+
+		store.flush();
+		Map<String, Object> stored = load("nether");
+		assertEquals(1, stored.size());
+		assertTrue(stored.containsKey("a"));
+		assertEquals(5, store.getRecords());
+	}
+}
@@ -0,0 +1,163 @@
+package de.xcraft.engelier.XcraftGate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import de.xcraft.engelier.XcraftGate.sim.SimServerRule;
+
+/*
+ * The journal never outlives the snapshot that contains it: a write cut
+ * short after the journal was set aside is finished on the next start,
+ * and the set aside records are not replayed over a newer snapshot.
+ */
+public class StoreWriterTest {
+	@Rule
+	public SimServerRule sim = new SimServerRule();
+
+	private File file;
+	private final Map<String, Object> data = new HashMap<String, Object>();
+
+	@Before
+	public void setUp() {
+		file = new File(sim.getRoot(), "gates.yml");
+	}
+
+	private static Map<String, Object> gate(double x) {
+		Map<String, Object> ret = new HashMap<String, Object>();
+		ret.put("locX", x);
+		return ret;
+	}
+
+	private File sibling(String suffix) {
+		return new File(file.getPath() + suffix);
+	}
+
+	/*
+	 * Leaves a journal with a single old record for gate a.
+	 */
+	private void journalOldRecord() {
+		MapWriter writer = new MapWriter();
+		writer.put("a", gate(1));
+		writer.flush();
+		assertTrue(sibling(".journal").exists());
+	}
+
+	private static void dump(Object snapshot, OutputStream out) throws IOException {
+		out.write(new Yaml().dump(snapshot).getBytes("UTF-8"));
+	}
+
+	private void writeSnapshot(File target, double x) throws IOException {
+		Map<String, Object> snapshot = new HashMap<String, Object>();
+		snapshot.put("a", gate(x));
+		OutputStream out = new FileOutputStream(target);
+
+		try {
+			dump(snapshot, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Object stored() throws IOException {
+		FileInputStream in = new FileInputStream(file);
+
+		try {
+			return ((Map<String, Map<String, Object>>) new Yaml().load(in)).get("a").get("locX");
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void compactionLeavesNoJournalBehind() throws IOException {
+		MapWriter writer = new MapWriter();
+		writer.put("a", gate(1));
+		writer.put("a", gate(2));
+		writer.flush();
+		assertEquals(2, writer.getRecords());
+		assertTrue(writer.getJournalSize() > 0);
+
+		data.put("a", gate(3));
+		writer.markDirty();
+		writer.flush();
+
+		assertEquals(3.0, stored());
+		assertEquals(0, writer.getJournalSize());
+		assertFalse(sibling(".journal").exists());
+		assertFalse(sibling(".journal.old").exists());
+		assertFalse(sibling(".tmp").exists());
+		assertEquals(0, new MapWriter().replay(new HashMap<String, Object>()));
+	}
+
+	@Test
+	public void setAsideJournalIsNotReplayedOverTheSnapshot() throws IOException {
+		// crashed after the snapshot was renamed into place
+		journalOldRecord();
+		sibling(".journal").renameTo(sibling(".journal.old"));
+		writeSnapshot(file, 2);
+
+		Map<String, Object> replayed = new HashMap<String, Object>();
+		assertEquals(0, new MapWriter().replay(replayed));
+		assertTrue(replayed.isEmpty());
+		assertEquals(2.0, stored());
+		assertFalse(sibling(".journal.old").exists());
+	}
+
+	@Test
+	public void interruptedInstallIsFinished() throws IOException {
+		// crashed with the synced snapshot still in the temp file
+		writeSnapshot(file, 0);
+		journalOldRecord();
+		sibling(".journal").renameTo(sibling(".journal.old"));
+		writeSnapshot(sibling(".tmp"), 2);
+
+		assertEquals(0, new MapWriter().replay(new HashMap<String, Object>()));
+		assertEquals(2.0, stored());
+		assertFalse(sibling(".tmp").exists());
+		assertFalse(sibling(".journal.old").exists());
+	}
+
+	@Test
+	public void journalBeforeTheCrashIsStillReplayed() throws IOException {
+		// crashed before the journal was set aside, the old snapshot is current
+		writeSnapshot(file, 0);
+		journalOldRecord();
+		writeSnapshot(sibling(".tmp"), 2);
+
+		Map<String, Object> replayed = new HashMap<String, Object>();
+		assertEquals(1, new MapWriter().replay(replayed));
+		assertEquals(gate(1), replayed.get("a"));
+		assertEquals(0.0, stored());
+	}
+
+	private class MapWriter extends StoreWriter {
+		public MapWriter() {
+			super(sim.getPlugin(), file, true);
+		}
+
+		@Override
+		protected Object snapshot() {
+			return new HashMap<String, Object>(data);
+		}
+
+		@Override
+		protected void write(Object snapshot, OutputStream out) throws IOException {
+			dump(snapshot, out);
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package de.xcraft.engelier.XcraftGate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.xcraft.engelier.XcraftGate.sim.SimServer;
+
+/*
+ * The streaming gate reader: values are converted as they arrive, a
+ * broken gate is reported with its line and skipped, and the rest of the
+ * file is still read.
+ */
+public class StoreYamlReaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Map<String, Map<String, Object>> gates = new LinkedHashMap<String, Map<String, Object>>();
+	private final List<String> errors = new ArrayList<String>();
+
+	private void read(String yaml) {
+		StoreYamlReader.read(new StringReader(yaml), new StoreYamlReader.Handler() {
+			@Override
+			public void gate(String name, Map<String, Object> data) {
+				gates.put(name, data);
+			}
+
+			@Override
+			public void error(String name, int line, String reason) {
+				errors.add(name + "@" + line + ": " + reason);
+			}
+		});
+	}
+
+	@Test
+	public void convertsValues() {
+		read("a: {world: world, locX: 1.5, locY: 64, locZ: -2.5, target: b, toll: 10, denysilent: true}\n"
+				+ "b:\n  world: nether\n  locX: 0\n  locY: 70.0\n  locZ: 0\n  locYaw: 90\n  locP: 0\n  target: ~\n");
+
+		assertEquals(0, errors.size());
+		assertEquals(2, gates.size());
+
+		Map<String, Object> a = gates.get("a");
+		assertEquals("world", a.get("world"));
+		assertEquals(1.5, a.get("locX"));
+		assertEquals(64.0, a.get("locY"));
+		assertEquals("b", a.get("target"));
+		assertEquals(10.0, a.get("toll"));
+		assertEquals(Boolean.TRUE, a.get("denysilent"));
+		assertEquals(0.0, a.get("locYaw"));
+
+		Map<String, Object> b = gates.get("b");
+		assertEquals(90.0, b.get("locYaw"));
+		assertTrue(b.containsKey("target"));
+		assertNull(b.get("target"));
+	}
+
+	@Test
+	public void skipsBrokenGatesAndReadsOn() {
+		read("good1: {world: world, locX: 1, locY: 64, locZ: 1}\n"
+				+ "nolocation: {world: world, locY: 64, locZ: 1}\n"
+				+ "notanumber: {world: world, locX: east, locY: 64, locZ: 1}\n"
+				+ "nested: {world: world, locX: [1, 2], locY: 64, locZ: 1}\n"
+				+ "plain: just a string\n"
+				+ "? [complex, key]\n: {world: world, locX: 1, locY: 64, locZ: 1}\n"
+				+ "good2: {world: world, locX: 2, locY: 64, locZ: 2}\n");
+
+		assertEquals(2, gates.size());
+		assertTrue(gates.containsKey("good1"));
+		assertTrue(gates.containsKey("good2"));
+
+		assertEquals(5, errors.size());
+		assertEquals("nolocation@2: missing locX", errors.get(0));
+		assertEquals("notanumber@3: locX is not a number", errors.get(1));
+		assertEquals("nested@4: nested value", errors.get(2));
+		assertEquals("plain@5: gate has no settings", errors.get(3));
+		assertEquals("null@6: gate name is not a plain value", errors.get(4));
+	}
+
+	@Test
+	public void keepsWhatWasReadBeforeASyntaxError() {
+		read("good: {world: world, locX: 1, locY: 64, locZ: 1}\n"
+				+ "bad: {world: world, locX: 1\n"
+				+ "never: {world: world, locX: 1, locY: 64, locZ: 1}\n");
+
+		assertEquals(1, gates.size());
+		assertTrue(gates.containsKey("good"));
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0), errors.get(0).contains("unreadable from here on"));
+	}
+
+	@Test
+	public void rejectsOtherDocuments() {
+		read("");
+		read("# nothing but a comment\n");
+		assertEquals(0, errors.size());
+
+		read("- a\n- b\n");
+		read("just text\n");
+		assertEquals(2, errors.size());
+		assertEquals(0, gates.size());
+	}
+
+	@Test
+	public void linksToGatesFurtherDownTheFile() throws IOException {
+		Logger.getLogger("Minecraft").setLevel(Level.WARNING);
+		File dataFolder = folder.newFolder("XcraftGate");
+		File legacy = new File(dataFolder, "gates.yml");
+
+		// gates.yml from before gates were kept per world
+		Writer out = new OutputStreamWriter(new FileOutputStream(legacy), "UTF-8");
+		try {
+			out.write("first: {world: world, locX: 0.5, locY: 64, locZ: 0.5, target: last}\n"
+					+ "broken: {world: world, locY: 64, locZ: 0.5, target: first}\n"
+					+ "dangling: {world: world, locX: 5.5, locY: 64, locZ: 5.5, target: missing}\n"
+					+ "last: {world: nether, locX: 0.5, locY: 64, locZ: 0.5, target: first}\n");
+		} finally {
+			out.close();
+		}
+
+		SimServer server = new SimServer();
+		server.addWorld("world");
+		XcraftGate plugin = server.enable(dataFolder);
+
+		try {
+			assertEquals(3, plugin.getGates().size());
+			assertFalse(plugin.getGates().has("broken"));
+			assertEquals("last", plugin.getGates().get("first").getTargetName());
+			assertNotNull(plugin.getGates().get("first").getTarget());
+			assertEquals("first", plugin.getGates().get("last").getTargetName());
+			assertNull(plugin.getGates().get("dangling").getTargetName());
+
+			assertFalse(legacy.exists());
+			assertTrue(new File(dataFolder, "gates.yml.bak").exists());
+		} finally {
+			plugin.onDisable();
+		}
+	}
+}
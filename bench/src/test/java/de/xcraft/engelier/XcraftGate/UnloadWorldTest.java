@@ -0,0 +1,87 @@
+package de.xcraft.engelier.XcraftGate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+import org.bukkit.World.Environment;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import de.xcraft.engelier.XcraftGate.sim.SimServerRule;
+import de.xcraft.engelier.XcraftGate.sim.SimWorld;
+
+/*
+ * Draining a world before it is unloaded: it ends once only a few chunks
+ * are left, or once the rest refuse to go, and not only after
+ * dynworld.unloadMaxTicks.
+ */
+public class UnloadWorldTest {
+	private static final int RADIUS = 20;
+
+	@Rule
+	public SimServerRule sim = new SimServerRule();
+
+	private XcraftGate plugin;
+	private DataWorld dataWorld;
+	private SimWorld nether;
+
+	@Before
+	public void setUp() {
+		plugin = sim.getPlugin();
+		dataWorld = new DataWorld(plugin, "nether", Environment.NETHER);
+		plugin.getWorlds().add(dataWorld);
+		dataWorld.load();
+		nether = sim.getServer().getSimWorld(dataWorld.getWorld());
+
+		for (int x = -RADIUS; x <= RADIUS; x++) {
+			for (int z = -RADIUS; z <= RADIUS; z++) {
+				nether.loadChunk(x, z);
+			}
+		}
+	}
+
+	/*
+	 * Runs the drain by hand, it is only scheduled with dynworld on.
+	 */
+	private int unload() {
+		plugin.getUnloads().add(dataWorld, true);
+
+		int ticks = 0;
+		while (dataWorld.isLoaded() && ticks < 1000) {
+			plugin.getUnloads().run();
+			ticks++;
+		}
+
+		return ticks;
+	}
+
+	@Test
+	public void drainsAllButTheLastFewChunks() {
+		int ticks = unload();
+
+		assertFalse(dataWorld.isLoaded());
+		assertTrue("took " + ticks + " ticks", ticks < plugin.config.getInt("dynworld.unloadInterval", 20) + UnloadWorld.STALLED_PASSES + 5);
+		assertTrue(nether.getChunkUnloads() >= (2 * RADIUS + 1) * (2 * RADIUS + 1) - plugin.config.getInt("dynworld.unloadFinalChunks", 16));
+	}
+
+	@Test
+	public void keptSpawnChunksDontHoldUpTheUnload() {
+		dataWorld.setKeepSpawnInMemory(true);
+		int kept = 0;
+
+		for (int x = -RADIUS; x <= RADIUS; x++) {
+			for (int z = -RADIUS; z <= RADIUS; z++) {
+				if (nether.isSpawnChunk(x, z)) kept++;
+			}
+		}
+
+		int ticks = unload();
+
+		assertFalse(dataWorld.isLoaded());
+		assertTrue("took " + ticks + " ticks", ticks < plugin.config.getInt("dynworld.unloadInterval", 20) + UnloadWorld.STALLED_PASSES + 5);
+		assertEquals((2 * RADIUS + 1) * (2 * RADIUS + 1) - kept, nether.getChunkUnloads());
+	}
+}
@@ -0,0 +1,129 @@
+package de.xcraft.engelier.XcraftGate.sim;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.rules.ExternalResource;
+import org.junit.rules.TemporaryFolder;
+
+import de.xcraft.engelier.XcraftGate.DataGate;
+import de.xcraft.engelier.XcraftGate.XcraftGate;
+
+/*
+ * The fixture most tests share: a SimServer with a world named "world"
+ * and the plugin enabled on it, its files in a temporary folder, all of
+ * it gone after the test. Started before the test unless stopped() was
+ * asked for, e.g. to write a config.yml with configure() first. The
+ * "Minecraft" logger is set to the given level for the test and back to
+ * WARNING afterwards.
+ */
+public class SimServerRule extends ExternalResource {
+	private final TemporaryFolder folder = new TemporaryFolder();
+	// keeps the level set below, loggers are only weakly referenced
+	private final Logger log = Logger.getLogger("Minecraft");
+	private Level level = Level.WARNING;
+	private boolean startFirst = true;
+	private File dataFolder;
+	private SimServer server;
+	private SimWorld world;
+	private XcraftGate plugin;
+
+	/*
+	 * For tests that log on purpose.
+	 */
+	public SimServerRule level(Level level) {
+		this.level = level;
+		return this;
+	}
+
+	public SimServerRule stopped() {
+		startFirst = false;
+		return this;
+	}
+
+	@Override
+	protected void before() throws Throwable {
+		log.setLevel(level);
+		folder.create();
+		dataFolder = folder.newFolder("XcraftGate");
+		if (startFirst) start();
+	}
+
+	@Override
+	protected void after() {
+		try {
+			stop();
+		} finally {
+			log.setLevel(Level.WARNING);
+			folder.delete();
+		}
+	}
+
+	/*
+	 * A fresh server with the plugin's files from the last one.
+	 */
+	public void start() {
+		server = new SimServer();
+		world = server.addWorld("world");
+		plugin = server.enable(dataFolder);
+	}
+
+	public void stop() {
+		if (plugin != null) plugin.onDisable();
+		plugin = null;
+	}
+
+	public void restart() {
+		stop();
+		start();
+	}
+
+	public void configure(String yaml) throws IOException {
+		Writer out = new OutputStreamWriter(new FileOutputStream(new File(dataFolder, "config.yml")), "UTF-8");
+
+		try {
+			out.write(yaml);
+		} finally {
+			out.close();
+		}
+	}
+
+	public File getRoot() {
+		return folder.getRoot();
+	}
+
+	public File getDataFolder() {
+		return dataFolder;
+	}
+
+	public SimServer getServer() {
+		return server;
+	}
+
+	public SimWorld getWorld() {
+		return world;
+	}
+
+	public XcraftGate getPlugin() {
+		return plugin;
+	}
+
+	public DataGate gate(String name, String worldName, double x, double z) {
+		return server.gate(name, worldName, x, z);
+	}
+
+	public Location at(World world, double x, double z) {
+		return new Location(world, x, SimWorld.GROUND, z);
+	}
+
+	public Location at(double x, double z) {
+		return at(world.getWorld(), x, z);
+	}
+}
@@ -0,0 +1,174 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.bukkit.command.CommandSender;
+
+/*
+ * Creates worlds as copies of a template world. The files are copied on
+ * a background thread with FileChannel.transferTo, so the kernel moves
+ * the data without it passing through the heap; the world is only added,
+ * and queued for loading, back on the main thread once the copy is
+ * complete. A loaded template is refused, the server would write to its
+ * files while they are copied, and DataWorld.load() refuses a template
+ * while it is being copied. Should it be loaded anyway, e.g. by another
+ * plugin, the copy is thrown away. Files that identify a world instance
+ * (lock and uid) are left out.
+ */
+public class CloneWorld {
+	private static XcraftGate plugin;
+	private final Set<String> pending = Collections.synchronizedSet(new HashSet<String>());
+	private final Set<String> templates = Collections.synchronizedSet(new HashSet<String>());
+
+	public CloneWorld(XcraftGate instance) {
+		plugin = instance;
+	}
+
+	public boolean isCloning(String worldName) {
+		return pending.contains(worldName);
+	}
+
+	public boolean isTemplate(String worldName) {
+		return templates.contains(worldName);
+	}
+
+	private boolean isInUse(DataWorld template) {
+		return template.isLoaded() || plugin.getServerWorlds().getWorld(template.getName()) != null;
+	}
+
+	public void start(final DataWorld template, final String worldName, final CommandSender sender) {
+		final File source = new File(template.getName());
+		final File target = new File(worldName);
+
+		if (!source.isDirectory()) {
+			sender.sendMessage("Template folder not found: " + source);
+			return;
+		}
+
+		if (target.exists()) {
+			sender.sendMessage("Folder already exists: " + target);
+			return;
+		}
+
+		if (isInUse(template)) {
+			sender.sendMessage("Template world " + template.getName() + " is loaded, unload it first.");
+			return;
+		}
+
+		if (!templates.add(template.getName())) {
+			sender.sendMessage("Template world " + template.getName() + " is already being copied.");
+			return;
+		}
+
+		if (!pending.add(worldName)) {
+			templates.remove(template.getName());
+			sender.sendMessage("World " + worldName + " is already being created.");
+			return;
+		}
+
+		sender.sendMessage("Copying template " + template.getName() + " to " + worldName + "...");
+
+		plugin.getServerWorlds().getScheduler().scheduleAsyncDelayedTask(plugin, new Runnable() {
+			public void run() {
+				long start = System.currentTimeMillis();
+				long bytes;
+
+				try {
+					bytes = copy(source, target);
+				} catch (IOException ex) {
+					plugin.log.severe(plugin.getNameBrackets() + "error copying " + source + " to " + target);
+					ex.printStackTrace();
+					delete(target);
+					finish(worldName, template, false, target, sender, "Copying template " + template.getName() + " failed: " + ex.getMessage());
+					return;
+				}
+
+				plugin.log.info(plugin.getNameBrackets() + "copied template " + template.getName() + " to " + worldName + ", "
+						+ (bytes / 1048576) + " MiB in " + (System.currentTimeMillis() - start) + " ms");
+				finish(worldName, template, true, target, sender, "World " + worldName + " created from template " + template.getName() + ".");
+			}
+		});
+	}
+
+	private void finish(final String worldName, final DataWorld template, final boolean copied, final File target, final CommandSender sender, final String message) {
+		plugin.getServerWorlds().getScheduler().scheduleSyncDelayedTask(plugin, new Runnable() {
+			public void run() {
+				templates.remove(template.getName());
+
+				if (copied && isInUse(template)) {
+					plugin.log.warning(plugin.getNameBrackets() + "template " + template.getName() + " was loaded while it was copied, discarding " + target);
+					sender.sendMessage("Template world " + template.getName() + " was loaded while it was copied, " + worldName + " was not created.");
+
+					// the world isn't known yet, so nothing can load it before it's gone
+					plugin.getServerWorlds().getScheduler().scheduleAsyncDelayedTask(plugin, new Runnable() {
+						public void run() {
+							delete(target);
+							pending.remove(worldName);
+						}
+					});
+					return;
+				}
+
+				pending.remove(worldName);
+
+				if (copied) {
+					plugin.getWorlds().copy(worldName, template);
+					plugin.getLoads().add(worldName, LoadWorld.PRIORITY_OTHER);
+				}
+
+				sender.sendMessage(message);
+			}
+		});
+	}
+
+	private static long copy(File source, File target) throws IOException {
+		if (source.isDirectory()) {
+			if (!target.mkdirs()) throw new IOException("unable to create " + target);
+
+			long bytes = 0;
+			for (String thisName : source.list()) {
+				if (thisName.equals("session.lock") || thisName.equals("uid.dat")) continue;
+				bytes += copy(new File(source, thisName), new File(target, thisName));
+			}
+
+			return bytes;
+		}
+
+		FileChannel in = new FileInputStream(source).getChannel();
+		try {
+			FileChannel out = new FileOutputStream(target).getChannel();
+			try {
+				long size = in.size();
+				long position = 0;
+
+				// may move less than asked for in one go
+				while (position < size) {
+					position += in.transferTo(position, size - position, out);
+				}
+
+				return size;
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void delete(File file) {
+		if (file.isDirectory()) {
+			for (File thisFile : file.listFiles()) {
+				delete(thisFile);
+			}
+		}
+
+		file.delete();
+	}
+}
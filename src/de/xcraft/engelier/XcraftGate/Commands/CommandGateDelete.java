@@ -24,10 +24,12 @@ public class CommandGateDelete extends CommandHelperGate {
 			reply("Gate not found: " + gateName);
 		} else {
 			DataGate thisGate = getGate(gateName);
+			plugin.getGates().loadAll();
 			
 			for (DataGate checkGate : plugin.getGates()) {
 				if (checkGate.hasTarget() && checkGate.getTarget().equals(thisGate)) {
 					checkGate.unlink();
+					plugin.getGates().update(checkGate);
 				}
 			}
 
@@ -0,0 +1,33 @@
+package de.xcraft.engelier.XcraftGate.Commands;
+
+import java.io.File;
+import java.util.List;
+
+import org.bukkit.command.CommandSender;
+
+import de.xcraft.engelier.XcraftGate.XcraftGate;
+
+public class CommandGateExport extends CommandHelperGate {
+
+	public CommandGateExport(XcraftGate plugin) {
+		super(plugin);
+	}
+
+	@Override
+	public void execute(CommandSender sender, String fileName, List<String> args) {
+		this.sender = sender;
+		
+		if (fileName == null) {
+			fileName = "gates-export.yml";
+		} else if (fileName.contains("/") || fileName.contains("\\") || fileName.contains("..")) {
+			error("Please give a file name inside the plugin folder.");
+			return;
+		}
+		
+		File file = new File(plugin.getDataFolder(), fileName);
+		
+		plugin.getGates().exportYaml(file);
+		reply("Exporting " + plugin.getGates().size() + " gates to " + file.getName() + ".");
+	}
+
+}
@@ -0,0 +1,45 @@
+package de.xcraft.engelier.XcraftGate.Commands;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.bukkit.command.CommandSender;
+
+import de.xcraft.engelier.XcraftGate.XcraftGate;
+
+public class CommandGateImport extends CommandHelperGate {
+
+	public CommandGateImport(XcraftGate plugin) {
+		super(plugin);
+	}
+
+	@Override
+	public void execute(CommandSender sender, String fileName, List<String> args) {
+		this.sender = sender;
+		
+		if (fileName == null) {
+			fileName = "gates-export.yml";
+		} else if (fileName.contains("/") || fileName.contains("\\") || fileName.contains("..")) {
+			error("Please give a file name inside the plugin folder.");
+			return;
+		}
+		
+		File file = new File(plugin.getDataFolder(), fileName);
+		
+		if (!file.exists()) {
+			error("No such file: " + file.getName());
+			return;
+		}
+		
+		try {
+			plugin.getGates().importYaml(file);
+		} catch (IOException ex) {
+			error("Unable to read " + file.getName() + ": " + ex.getMessage());
+			return;
+		}
+		
+		reply("Imported " + plugin.getGates().size() + " gates from " + file.getName() + ".");
+	}
+
+}
@@ -31,25 +31,20 @@ public class CommandGateListnear extends CommandHelperGate {
 		}
 		
 		Location now = ((Player) sender).getLocation();
-		double xx = now.getX();
-		double yy = now.getY();
-		double zz = now.getZ();
 		boolean fail = true;
 		
-		for (int x = -radius; x <= radius; x++) {
-			for (int y = (yy - radius > 0 ? -radius : (int)-yy); y <= (y + radius > 127 ? 128 - y : radius); y++) {
-				for (int z = -radius; z <= radius; z++) {
-					DataGate thisGate = plugin.getGates().getByLocation(new Location(now.getWorld(), x + xx, y + yy, z + zz));
-					if (thisGate != null) {
-						reply("Found " + thisGate.getName() + " at " + Util.getLocationString(thisGate.getLocation()));
-						fail = false;
-					}
-				}
-			}
+		for (DataGate thisGate : plugin.getGates().getInRadius(now, radius)) {
+			reply("Found " + thisGate.getName() + " at " + Util.getLocationString(thisGate.getLocation()));
+			fail = false;
 		}
 		
 		if (fail) {
 			reply("No gates found.");
+			
+			List<DataGate> nearest = plugin.getGates().getNearest(now, 1);
+			if (!nearest.isEmpty()) {
+				reply("Nearest gate is " + nearest.get(0).getName() + " at " + Util.getLocationString(nearest.get(0).getLocation()));
+			}
 		}
 	}
 }
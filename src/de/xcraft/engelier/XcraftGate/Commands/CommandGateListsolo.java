@@ -16,6 +16,7 @@ public class CommandGateListsolo extends CommandHelperGate {
 	@Override
 	public void execute(CommandSender sender, String gateName, List<String> args) {
 		this.sender = sender;
+		plugin.getGates().loadAll();
 		
 		for (DataGate thisGate : plugin.getGates()) {
 			if (!thisGate.hasTarget()) {
@@ -26,12 +26,10 @@ public class CommandGateMove extends CommandHelperGate {
 			reply("Gate not found: " + gateName);
 		} else {
 			DataGate thisGate = getGate(gateName);
-			plugin.getGates().remove(thisGate);
-			thisGate.setLocation(((Player) sender).getLocation());
-			plugin.getGates().add(thisGate, true);
+			plugin.getGates().move(thisGate, ((Player) sender).getLocation());
 
-			plugin.justTeleported.put(((Player) sender).getName(), thisGate.getLocation());
-			plugin.justTeleportedFrom.put(((Player) sender).getName(), thisGate.getLocation());
+			plugin.getTeleports().setPortedTo((Player) sender, thisGate);
+			plugin.getTeleports().setPortedFrom((Player) sender, thisGate);
 			reply("Gate " + gateName + " moved to " + Util.getLocationString(thisGate.getLocation()));
 		}
 	}
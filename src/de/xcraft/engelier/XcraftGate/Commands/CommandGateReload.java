@@ -16,9 +16,9 @@ public class CommandGateReload extends CommandHelperGate {
 	public void execute(CommandSender sender, String gateName, List<String> args) {
 		this.sender = sender;
 		
-		plugin.getGates().reload();
+		int changed = plugin.getGates().reload();
 		
-		reply("Loaded " + plugin.getGates().size() + " gates.");		
+		reply("Loaded " + plugin.getGates().size() + " gates, " + changed + " changed.");
 	}
 
 }
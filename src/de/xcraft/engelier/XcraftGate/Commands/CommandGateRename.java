@@ -1,5 +1,6 @@
 package de.xcraft.engelier.XcraftGate.Commands;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.bukkit.command.CommandSender;
@@ -24,9 +25,23 @@ public class CommandGateRename extends CommandHelperGate {
 			reply("Gate not found: " + gateName);
 		} else {
 			DataGate thisGate = getGate(gateName);
+			List<DataGate> sources = new ArrayList<DataGate>();
+			plugin.getGates().loadAll();
+			
+			// links still known by name only must be resolved before the name changes
+			for (DataGate checkGate : plugin.getGates()) {
+				if (checkGate.hasTarget() && checkGate.getTarget().equals(thisGate)) {
+					sources.add(checkGate);
+				}
+			}
+			
 			plugin.getGates().remove(thisGate);
 			thisGate.setName(args.get(0));
 			plugin.getGates().add(thisGate, true);
+			
+			for (DataGate checkGate : sources) {
+				plugin.getGates().update(checkGate);
+			}
 
 			reply("Gate " + gateName + " renamed to " + thisGate.getName());
 		}
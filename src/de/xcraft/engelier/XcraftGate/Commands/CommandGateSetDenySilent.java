@@ -27,6 +27,7 @@ public class CommandGateSetDenySilent extends CommandHelperGate {
 			denysilent = (args.size() == 0 || args.get(0).equalsIgnoreCase("true")) ? true : false;
 
 			getGate(gateName).setDenySilent(denysilent);
+			plugin.getGates().update(getGate(gateName));
 			reply("Gate " + gateName + " denys usage " + (denysilent ? "silently." : "loudly."));
 		}
 	}
@@ -40,6 +40,7 @@ public class CommandGateSetToll extends CommandHelperGate {
 			}
 			
 			getGate(gateName).setToll(toll);
+			plugin.getGates().update(getGate(gateName));
 			reply("Gate " + gateName + (toll > 0 ? " now collecting " + plugin.getPluginManager().getEcoMethod().format(toll) + " toll." : " doesn't collect tolls"));
 		}
 	}
@@ -0,0 +1,64 @@
+package de.xcraft.engelier.XcraftGate.Commands;
+
+import java.util.List;
+
+import org.bukkit.command.CommandSender;
+
+import de.xcraft.engelier.XcraftGate.DataGate;
+import de.xcraft.engelier.XcraftGate.XcraftGate;
+
+public class CommandGateSetVolume extends CommandHelperGate {
+
+	public CommandGateSetVolume(XcraftGate plugin) {
+		super(plugin);
+	}
+
+	@Override
+	public void execute(CommandSender sender, String gateName, List<String> args) {
+		this.sender = sender;
+
+		if (gateName == null || args.size() == 0) {
+			error("No gate given.");
+			printUsage();
+		} else if (!gateExists(gateName)) {
+			reply("Gate not found: " + gateName);
+		} else {
+			int max = plugin.config.getInt("gates.maxVolumeSize", 16);
+			int sizeX = 0, sizeY = 0, sizeZ = 0;
+			double radius = 0;
+
+			try {
+				if (args.get(0).equalsIgnoreCase("box") && args.size() == 4) {
+					sizeX = Integer.parseInt(args.get(1));
+					sizeY = Integer.parseInt(args.get(2));
+					sizeZ = Integer.parseInt(args.get(3));
+				} else if (args.get(0).equalsIgnoreCase("radius") && args.size() == 2) {
+					radius = Double.parseDouble(args.get(1));
+				} else if (!args.get(0).equalsIgnoreCase("block")) {
+					printUsage();
+					return;
+				}
+			} catch (NumberFormatException ex) {
+				error("Invalid size.");
+				return;
+			}
+
+			if (sizeX < 0 || sizeY < 0 || sizeZ < 0 || radius < 0 || sizeX > max || sizeY > max || sizeZ > max || radius > max) {
+				error("Sizes must be between 0 and " + max + ".");
+				return;
+			}
+
+			DataGate thisGate = getGate(gateName);
+			plugin.getGates().setVolume(thisGate, sizeX, sizeY, sizeZ, radius);
+
+			reply("Gate " + gateName + " now triggers on: " + thisGate.getVolumeString());
+		}
+	}
+
+	private void printUsage() {
+		reply("Usage: /gate setvolume <gatename> block");
+		reply("       /gate setvolume <gatename> box <x> <y> <z>");
+		reply("       /gate setvolume <gatename> radius <r>");
+	}
+
+}
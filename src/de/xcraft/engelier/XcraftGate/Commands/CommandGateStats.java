@@ -0,0 +1,73 @@
+package de.xcraft.engelier.XcraftGate.Commands;
+
+import java.util.List;
+
+import org.bukkit.command.CommandSender;
+
+import de.xcraft.engelier.XcraftGate.EvictWorld;
+import de.xcraft.engelier.XcraftGate.LedgerToll;
+import de.xcraft.engelier.XcraftGate.LoadWorld;
+import de.xcraft.engelier.XcraftGate.SetPlayer;
+import de.xcraft.engelier.XcraftGate.Store;
+import de.xcraft.engelier.XcraftGate.XcraftGate;
+
+public class CommandGateStats extends CommandHelperGate {
+
+	public CommandGateStats(XcraftGate plugin) {
+		super(plugin);
+	}
+
+	@Override
+	public void execute(CommandSender sender, String gateName, List<String> args) {
+		this.sender = sender;
+		
+		SetPlayer players = plugin.getPlayers();
+		
+		if (gateName != null && gateName.equalsIgnoreCase("reset")) {
+			players.resetStats();
+			reply("Move and permission statistics reset.");
+			return;
+		}
+		
+		long total = players.getMoveEvents();
+		long skipped = players.getMoveEventsSkipped();
+		
+		reply("Gates: " + plugin.getGates().size() + " (" + plugin.getGates().sizeLoaded() + " loaded), tracked players: " + players.size()
+				+ ", teleport cooldowns: " + plugin.getTeleports().size());
+		reply("Move events: " + total + ", skipped (same block): " + skipped
+				+ (total > 0 ? " (" + (skipped * 100 / total) + "%)" : ""));
+		
+		long hits = players.getPermissionHits();
+		long checks = hits + players.getPermissionMisses();
+		reply("Permission checks: " + checks + ", cached: " + hits
+				+ (checks > 0 ? " (" + (hits * 100 / checks) + "%)" : ""));
+		
+		LedgerToll tolls = plugin.getTolls();
+		if (tolls.getCharged() > 0 || tolls.getPending() > 0) {
+			reply("Tolls charged: " + tolls.getCharged() + ", booked: " + tolls.getSettled() + ", failed bookings: " + tolls.getFailed() + ", given up: " + tolls.getDropped()
+					+ (plugin.getPluginManager().getEcoMethod() != null ? ", pending: " + plugin.getPluginManager().getEcoMethod().format(tolls.getPending()) : ""));
+		}
+		
+		LoadWorld loads = plugin.getLoads();
+		reply("World loads: " + loads.getLoaded() + " (" + loads.getPreloaded() + " for gates), " + loads.getLoadTime() + " ms each, queued: " + loads.size()
+				+ ", unloading: " + plugin.getUnloads().size());
+		
+		EvictWorld evictions = plugin.getEvictions();
+		if (plugin.config.getBoolean("dynworld.enabled", false)) {
+			reply("Heap: " + evictions.getOccupancy() + "%, worlds evicted: " + evictions.getEvictions() + ", reclaimed: " + (evictions.getReclaimed() / 1048576) + " MiB"
+					+ (evictions.getLastDecision() != null ? ", last: " + evictions.getLastDecision() : ""));
+		}
+		
+		reply("Pinned chunks: " + plugin.getPins().size() + ", unloads prevented: " + plugin.getPins().getUnloadsCancelled());
+		
+		reply("Chunk refreshes: " + plugin.getRefreshes().getRefreshed() + ", coalesced: " + plugin.getRefreshes().getCoalesced()
+				+ ", queued: " + plugin.getRefreshes().size());
+		
+		Store store = plugin.getGates().getStore();
+		if (store != null) {
+			reply("Gate store: " + store.getName() + ", " + store.getWrites() + " writes"
+					+ (store.getRecords() > 0 ? ", " + store.getRecords() + " journal records, journal size " + (store.getJournalSize() / 1024) + " KiB" : ""));
+		}
+	}
+
+}
@@ -23,6 +23,7 @@ public class CommandGateUnlink extends CommandHelperGate {
 			reply("Gate not found: " + gateName);
 		} else {
 			getGate(gateName).unlink();
+			plugin.getGates().update(getGate(gateName));
 			reply("removed link from gate " + gateName);
 		}
 	}
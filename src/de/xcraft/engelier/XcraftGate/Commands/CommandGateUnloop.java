@@ -34,6 +34,8 @@ public class CommandGateUnloop extends CommandHelperGate {
 			} else {
 				loop1.unlink();
 				loop2.unlink();
+				plugin.getGates().update(loop1);
+				plugin.getGates().update(loop2);
 				reply("removed gate loop " + gateName + " <=> " + gateTarget);
 			}
 		}
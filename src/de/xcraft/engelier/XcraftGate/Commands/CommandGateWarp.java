@@ -23,7 +23,7 @@ public class CommandGateWarp extends CommandHelperGate {
 		} else if (!gateExists(gateName)) {
 			reply("Gate not found: " + gateName);
 		} else {
-			plugin.justTeleportedFrom.put(((Player) sender).getName(), getGate(gateName).getLocation());
+			plugin.getTeleports().setPortedFrom((Player) sender, getGate(gateName));
 			getGate(gateName).portHere((Player) sender);
 		}
 	}
@@ -24,6 +24,7 @@ public class CommandHandlerGate extends CommandHelper implements CommandExecutor
 		permNodes.put("create", "create");
 		permNodes.put("move", "create");
 		permNodes.put("rename", "create");
+		permNodes.put("setvolume", "create");
 		permNodes.put("link", "link");
 		permNodes.put("loop", "link");
 		permNodes.put("unlink", "unlink");
@@ -33,14 +34,18 @@ public class CommandHandlerGate extends CommandHelper implements CommandExecutor
 		permNodes.put("list", "info");
 		permNodes.put("listnear", "info");
 		permNodes.put("listsolo", "info");
+		permNodes.put("stats", "info");
 		permNodes.put("warp", "warp");
 		permNodes.put("reload", "reload");
+		permNodes.put("export", "reload");
+		permNodes.put("import", "reload");
 		permNodes.put("setdenysilent", "denysilent");
 		permNodes.put("settoll", "toll");
 		
 		subcommands.put("create", new CommandGateCreate(plugin));
 		subcommands.put("move", new CommandGateMove(plugin));
 		subcommands.put("rename", new CommandGateRename(plugin));
+		subcommands.put("setvolume", new CommandGateSetVolume(plugin));
 		subcommands.put("link", new CommandGateLink(plugin));
 		subcommands.put("loop", new CommandGateLoop(plugin));
 		subcommands.put("unlink", new CommandGateUnlink(plugin));
@@ -50,8 +55,11 @@ public class CommandHandlerGate extends CommandHelper implements CommandExecutor
 		subcommands.put("list", new CommandGateList(plugin));
 		subcommands.put("listnear", new CommandGateListnear(plugin));
 		subcommands.put("listsolo", new CommandGateListsolo(plugin));
+		subcommands.put("stats", new CommandGateStats(plugin));
 		subcommands.put("warp", new CommandGateWarp(plugin));
 		subcommands.put("reload", new CommandGateReload(plugin));
+		subcommands.put("export", new CommandGateExport(plugin));
+		subcommands.put("import", new CommandGateImport(plugin));
 		subcommands.put("setdenysilent", new CommandGateSetDenySilent(plugin));
 		subcommands.put("settoll", new CommandGateSetToll(plugin));
 	}
@@ -62,6 +70,7 @@ public class CommandHandlerGate extends CommandHelper implements CommandExecutor
 		sender.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gate create <name>");
 		sender.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gate move <name>");
 		sender.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gate rename <name> <new_name>");
+		sender.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gate setvolume <name> <block|box x y z|radius r>");
 		sender.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gate link <name1> <name2>");
 		sender.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gate loop <name1> <name2>");
 		sender.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gate unlink <name>");
@@ -73,6 +82,9 @@ public class CommandHandlerGate extends CommandHelper implements CommandExecutor
 		sender.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gate listnear [radius]");
 		sender.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gate listsolo");
 		sender.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gate warp <name>");
+		sender.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gate stats [reset]");
+		sender.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gate export [file]");
+		sender.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gate import [file]");
 	}
 	
 	public boolean onCommand(CommandSender sender, Command cmd,	String commandLabel, String[] args) {
@@ -47,6 +47,7 @@ public class CommandHandlerWorld extends CommandHelper implements CommandExecuto
 		permNodes.put("setannouncedeath", "difficulty");
 		permNodes.put("setgamemode", "gamemode");
 		permNodes.put("setspawn", "spawn");
+		permNodes.put("pregen", "pregen");
 		
 		subcommands.put("create", new CommandWorldCreate(plugin));
 		subcommands.put("info", new CommandWorldInfo(plugin));
@@ -74,6 +75,7 @@ public class CommandHandlerWorld extends CommandHelper implements CommandExecuto
 		subcommands.put("setgamemode", new CommandWorldSetGameMode(plugin));
 		subcommands.put("setannouncedeath", new CommandWorldSetAnnounceDeath(plugin));
 		subcommands.put("setspawn", new CommandWorldSetSpawn(plugin));
+		subcommands.put("pregen", new CommandWorldPregen(plugin));
 	}
 
 	public void printUsage() {
@@ -83,6 +85,7 @@ public class CommandHandlerWorld extends CommandHelper implements CommandExecuto
 		player.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gworld listenv");
 		player.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gworld listplayers <world>");
 		player.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gworld create <name> [normal|nether|skylands [seed]]");
+		player.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gworld create <name> template <world>");
 		player.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gworld delete <name>");
 		player.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gworld warpto <name>");
 		player.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gworld setborder <world> <#>");
@@ -102,6 +105,7 @@ public class CommandHandlerWorld extends CommandHelper implements CommandExecuto
 		player.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gworld suppresshunger <world> <true|false>");
 		player.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gworld setsticky <world> <true|false>");
 		player.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gworld keepspawninmemory <world> <true|false>");
+		player.sendMessage(ChatColor.LIGHT_PURPLE + "-> " + ChatColor.GREEN	+ "/gworld pregen <world> [<radius>|stop]");
 	}
 
 	@Override
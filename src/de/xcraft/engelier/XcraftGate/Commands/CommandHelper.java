@@ -28,19 +28,10 @@ public abstract class CommandHelper {
 			return true;
 		}
 		
-		if (plugin.getPluginManager().getPermissions() != null) {
-			if (subcommand != null) {
-				return plugin.getPluginManager().getPermissions().has(player, "XcraftGate." + command
-						+ "." + subcommand);
-			} else {
-				return plugin.getPluginManager().getPermissions().has(player, "XcraftGate." + command);
-			}
+		if (subcommand != null) {
+			return plugin.getPlayers().hasPermission(player, "XcraftGate." + command + "." + subcommand);
 		} else {
-			if (subcommand != null) {
-				return player.hasPermission("XcraftGate." + command + "." + subcommand);
-			} else {
-				return player.hasPermission("XcraftGate." + command);
-			}
+			return plugin.getPlayers().hasPermission(player, "XcraftGate." + command);
 		}
 	}
 }
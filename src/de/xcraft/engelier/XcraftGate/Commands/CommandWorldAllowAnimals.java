@@ -27,6 +27,7 @@ public class CommandWorldAllowAnimals extends CommandHelperWorld {
 			allowed = (args.size() == 0 || !args.get(0).equalsIgnoreCase("false")) ? true : false;
 
 			getWorld(worldName).setAllowAnimals(allowed);
+			plugin.getWorlds().update(getWorld(worldName));
 			reply("Animal spawn on " + worldName + (allowed ? " enabled." : " disabled."));
 		}
 	}
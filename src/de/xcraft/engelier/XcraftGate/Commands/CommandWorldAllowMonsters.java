@@ -27,6 +27,7 @@ public class CommandWorldAllowMonsters extends CommandHelperWorld {
 			allowed = (args.size() == 0 || !args.get(0).equalsIgnoreCase("false")) ? true : false;
 
 			getWorld(worldName).setAllowMonsters(allowed);
+			plugin.getWorlds().update(getWorld(worldName));
 			reply("Monster spawn on " + worldName + (allowed ? " enabled." : " disabled."));
 		}
 	}
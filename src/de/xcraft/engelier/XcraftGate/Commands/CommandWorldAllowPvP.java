@@ -27,6 +27,7 @@ public class CommandWorldAllowPvP extends CommandHelperWorld {
 			allowed = (args.size() == 0 || !args.get(0).equalsIgnoreCase("false")) ? true : false;
 
 			getWorld(worldName).setAllowPvP(allowed);
+			plugin.getWorlds().update(getWorld(worldName));
 			reply("PvP on " + worldName + (allowed ? " enabled." : " disabled."));
 		}
 	}
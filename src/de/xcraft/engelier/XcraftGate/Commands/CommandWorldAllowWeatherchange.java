@@ -27,6 +27,7 @@ public class CommandWorldAllowWeatherchange extends CommandHelperWorld {
 			allowed = (args.size() == 0 || !args.get(0).equalsIgnoreCase("false")) ? true : false;
 
 			getWorld(worldName).setAllowWeatherChange(allowed);
+			plugin.getWorlds().update(getWorld(worldName));
 			reply("Weather changes on " + worldName + (allowed ? " enabled." : " disabled."));
 		}
 	}
@@ -23,8 +23,17 @@ public class CommandWorldCreate extends CommandHelperWorld {
 		if (worldName == null) {
 			error("No world given.");
 			reply("Usage: /gworld create <worldname> [<environment [seed]]");
-		} else if (hasWorld(worldName)) {
+			reply("       /gworld create <worldname> template <templateworld>");
+		} else if (hasWorld(worldName) || plugin.getClones().isCloning(worldName)) {
 			reply("World already exists: " + worldName);
+		} else if (args.size() > 0 && args.get(0).equalsIgnoreCase("template")) {
+			if (args.size() < 2) {
+				reply("Usage: /gworld create <worldname> template <templateworld>");
+			} else if (!hasWorld(args.get(1))) {
+				reply("World not found: " + args.get(1));
+			} else {
+				plugin.getClones().start(getWorld(args.get(1)), worldName, sender);
+			}
 		} else {
 			String env = args.size() < 1 ? "normal" : args.get(0);
 			
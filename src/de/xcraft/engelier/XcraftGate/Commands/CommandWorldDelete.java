@@ -23,7 +23,7 @@ public class CommandWorldDelete extends CommandHelperWorld {
 			reply("World not found: " + worldName);
 		} else {
 			if (getWorld(worldName).isLoaded()) {
-				if (plugin.getServer().getWorld(worldName).getPlayers().size() > 0) {
+				if (plugin.getServerWorlds().getWorld(worldName).getPlayers().size() > 0) {
 					error("Unable to unload world with active players.");
 					return;
 				} else {
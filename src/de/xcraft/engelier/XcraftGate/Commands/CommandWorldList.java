@@ -21,12 +21,20 @@ public class CommandWorldList extends CommandHelperWorld {
 		String worlds = "";
 		for (DataWorld thisWorld : plugin.getWorlds()) {
 			worlds += ", " + thisWorld.getName();
-			if (thisWorld.isLoaded()) {
+			if (plugin.getUnloads().isUnloading(thisWorld.getName())) {
+				worlds += "(-)";
+			} else if (thisWorld.isLoaded()) {
 				worlds += "(*)";
+			} else if (plugin.getLoads().getPosition(thisWorld.getName()) > 0) {
+				worlds += "(#" + plugin.getLoads().getPosition(thisWorld.getName()) + ")";
 			}
 		}
 		reply("Worlds: " + ChatColor.WHITE + worlds.substring(2));
-		reply("World marked with (*) are currently active on the server.");
+		reply("World marked with (*) are currently active on the server, (#n) are waiting to be loaded, (-) are being unloaded.");
+		
+		if (plugin.getLoads().size() > 0) {
+			reply("Loading worlds: " + plugin.getLoads().getLoaded() + " done, " + plugin.getLoads().size() + " to go.");
+		}
 	}
 
 }
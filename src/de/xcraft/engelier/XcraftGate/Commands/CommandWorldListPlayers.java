@@ -24,7 +24,7 @@ public class CommandWorldListPlayers extends CommandHelperWorld {
 			reply("World not found: " + worldName);
 		} else {
 			String players = "";
-			for (Player player : plugin.getServer().getWorld(worldName).getPlayers()) {
+			for (Player player : plugin.getServerWorlds().getWorld(worldName).getPlayers()) {
 				players += ", " + player.getName();
 			}
 			
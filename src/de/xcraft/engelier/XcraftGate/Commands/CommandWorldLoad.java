@@ -21,6 +21,8 @@ public class CommandWorldLoad extends CommandHelperWorld {
 			reply("Usage: /gworld load <worldname>");
 		} else if (!hasWorld(worldName)) {
 			reply("Unknown world: " + worldName);
+		} else if (plugin.getClones().isTemplate(worldName)) {
+			reply("World " + worldName + " is being copied as a template, try again once that's done.");
 		} else {
 			if (getWorld(worldName).isLoaded()) {
 				reply("World " + worldName + " already loaded.");
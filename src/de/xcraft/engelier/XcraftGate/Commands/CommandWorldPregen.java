@@ -0,0 +1,62 @@
+package de.xcraft.engelier.XcraftGate.Commands;
+
+import java.util.List;
+
+import org.bukkit.command.CommandSender;
+
+import de.xcraft.engelier.XcraftGate.LoadWorld;
+import de.xcraft.engelier.XcraftGate.XcraftGate;
+
+public class CommandWorldPregen extends CommandHelperWorld {
+
+	public CommandWorldPregen(XcraftGate plugin) {
+		super(plugin);
+	}
+
+	@Override
+	public void execute(CommandSender sender, String worldName, List<String> args) {
+		this.sender = sender;
+
+		if (worldName == null) {
+			error("No world given.");
+			reply("Usage: /gworld pregen <worldname> [<radius>|stop]");
+		} else if (!hasWorld(worldName)) {
+			reply("World not found: " + worldName);
+		} else if (args.size() > 0 && args.get(0).equalsIgnoreCase("stop")) {
+			if (plugin.getPregens().stop(worldName)) {
+				reply("Pregeneration of " + worldName + " stopped.");
+			} else {
+				reply("World " + worldName + " is not being pregenerated.");
+			}
+		} else if (args.size() == 0 && plugin.getPregens().isRunning(worldName)) {
+			reply("Pregenerating " + worldName + ": " + plugin.getPregens().getStatus(worldName));
+		} else {
+			int radius;
+
+			if (args.size() > 0) {
+				try {
+					radius = Integer.parseInt(args.get(0));
+				} catch (NumberFormatException ex) {
+					reply("Invalid number: " + args.get(0));
+					reply("Usage: /gworld pregen <worldname> [<radius>|stop]");
+					return;
+				}
+			} else {
+				radius = getWorld(worldName).getBorder();
+			}
+
+			if (radius <= 0) {
+				error("World " + worldName + " has no border, give a radius.");
+				return;
+			}
+
+			if (!getWorld(worldName).isLoaded()) {
+				plugin.getLoads().add(worldName, LoadWorld.PRIORITY_OTHER);
+			}
+
+			plugin.getPregens().start(worldName, radius);
+			reply("Pregenerating " + worldName + " out to " + radius + " blocks.");
+		}
+	}
+
+}
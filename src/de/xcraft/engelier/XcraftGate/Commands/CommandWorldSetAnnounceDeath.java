@@ -27,6 +27,7 @@ public class CommandWorldSetAnnounceDeath extends CommandHelperWorld {
 			announce = (args.size() == 0 || !args.get(0).equalsIgnoreCase("false")) ? true : false;
 
 			getWorld(worldName).setAnnouncePlayerDeath(announce);
+			plugin.getWorlds().update(getWorld(worldName));
 			reply("Death announcements on " + worldName + (announce ? " enabled." : " disabled."));
 		}
 	}
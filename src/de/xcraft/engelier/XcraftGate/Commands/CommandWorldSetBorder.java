@@ -34,9 +34,11 @@ public class CommandWorldSetBorder extends CommandHelperWorld {
 
 			if (border <= 0) {
 				getWorld(worldName).setBorder(0);
+				plugin.getWorlds().update(getWorld(worldName));
 				reply("Border of world " + worldName + " removed.");
 			} else {
 				getWorld(worldName).setBorder(border);
+				plugin.getWorlds().update(getWorld(worldName));
 				reply("Border of world " + worldName + " set to " + border + ".");
 			}
 		}
@@ -34,9 +34,11 @@ public class CommandWorldSetCreatureLimit extends CommandHelperWorld {
 
 			if (limit <= 0) {
 				getWorld(worldName).setCreatureLimit(0);
+				plugin.getWorlds().update(getWorld(worldName));
 				reply("Creature limit of world " + worldName + " removed.");
 			} else {
 				getWorld(worldName).setCreatureLimit(limit);
+				plugin.getWorlds().update(getWorld(worldName));
 				reply("Creature limit of world " + worldName + " set to " + limit + ".");
 			}
 		}
@@ -37,6 +37,7 @@ public class CommandWorldSetDifficulty extends CommandHelperWorld {
 			}
 			
 			getWorld(worldName).setDifficulty(newDif.getValue());
+			plugin.getWorlds().update(getWorld(worldName));
 			reply("Difficulty on world " + worldName + " set to " + newDif.toString());
 		}
 	}
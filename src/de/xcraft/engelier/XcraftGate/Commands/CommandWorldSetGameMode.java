@@ -37,6 +37,7 @@ public class CommandWorldSetGameMode extends CommandHelperWorld {
 			}
 			
 			getWorld(worldName).setGameMode(newGM.getValue());
+			plugin.getWorlds().update(getWorld(worldName));
 			reply("GameMode for world " + worldName + " set to " + newGM.toString());
 		}
 	}
@@ -27,6 +27,7 @@ public class CommandWorldSetSticky extends CommandHelperWorld {
 			sticky = (args.size() == 0 || !args.get(0).equalsIgnoreCase("false")) ? true : false;
 
 			getWorld(worldName).setSticky(sticky);
+			plugin.getWorlds().update(getWorld(worldName));
 			reply((sticky ? "Sticked" : "Unsticked") + " world " + worldName + ".");
 		}
 	}
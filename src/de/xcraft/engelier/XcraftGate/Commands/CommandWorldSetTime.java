@@ -30,6 +30,7 @@ public class CommandWorldSetTime extends CommandHelperWorld {
 			for (DayTime thisTime : DataWorld.DayTime.values()) {
 				if (thisTime.toString().equalsIgnoreCase(args.get(0))) {
 					getWorld(worldName).setDayTime(thisTime);
+					plugin.getWorlds().update(getWorld(worldName));
 					reply("Time of world " + worldName + " changed to " + args.get(0) + ".");
 					return;
 				}
@@ -30,6 +30,7 @@ public class CommandWorldSetWeather extends CommandHelperWorld {
 			for (Weather thisWeather : DataWorld.Weather.values()) {
 				if (thisWeather.toString().equalsIgnoreCase(args.get(0))) {
 					getWorld(worldName).setWeather(thisWeather);
+					plugin.getWorlds().update(getWorld(worldName));
 					reply("Weather of world " + worldName + " changed to " + args.get(0) + ".");
 					return;
 				}
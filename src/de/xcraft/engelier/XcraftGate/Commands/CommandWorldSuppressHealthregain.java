@@ -27,6 +27,7 @@ public class CommandWorldSuppressHealthregain extends CommandHelperWorld {
 			suppressed = (args.size() == 0 || !args.get(0).equalsIgnoreCase("false")) ? true : false;
 
 			getWorld(worldName).setSuppressHealthRegain(suppressed);
+			plugin.getWorlds().update(getWorld(worldName));
 			reply("Automatic health regain on " + worldName + (suppressed ? " suppressed." : " enabled."));
 		}
 	}
@@ -27,6 +27,7 @@ public class CommandWorldSuppressHunger extends CommandHelperWorld {
 			suppressed = (args.size() == 0 || !args.get(0).equalsIgnoreCase("false")) ? true : false;
 
 			getWorld(worldName).setSuppressHunger(suppressed);
+			plugin.getWorlds().update(getWorld(worldName));
 			reply("Food bar depletion on " + worldName + (suppressed ? " suppressed." : " enabled."));
 		}
 	}
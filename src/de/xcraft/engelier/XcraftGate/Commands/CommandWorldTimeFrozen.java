@@ -27,6 +27,7 @@ public class CommandWorldTimeFrozen extends CommandHelperWorld {
 			frozen = (args.size() == 0 || !args.get(0).equalsIgnoreCase("false")) ? true : false;
 
 			getWorld(worldName).setTimeFrozen(frozen);
+			plugin.getWorlds().update(getWorld(worldName));
 			reply("Time on " + worldName + (frozen ? " freezed." : " unfreezed."));
 		}
 	}
@@ -26,7 +26,7 @@ public class CommandWorldUnload extends CommandHelperWorld {
 			if (!getWorld(worldName).isLoaded()) {
 				reply("World " + worldName + " is not loaded.");
 			} else {
-				if (plugin.getServer().getWorld(worldName).getPlayers().size() > 0) {
+				if (plugin.getServerWorlds().getWorld(worldName).getPlayers().size() > 0) {
 					error("Unable to unload world with active players.");
 				} else {
 					getWorld(worldName).unload();
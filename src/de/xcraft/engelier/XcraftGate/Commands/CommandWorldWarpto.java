@@ -23,6 +23,8 @@ public class CommandWorldWarpto extends CommandHelperWorld {
 			reply("Usage: /gworld warpto <worldname>");
 		} else if (!hasWorld(worldName)) {
 			reply("World not found: " + worldName);
+		} else if (plugin.getClones().isTemplate(worldName)) {
+			reply("World " + worldName + " is being copied as a template, try again once that's done.");
 		} else {
 			if (!getWorld(worldName).isLoaded()) {
 				getWorld(worldName).load();
@@ -5,6 +5,7 @@ import java.util.Map;
 
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.event.player.PlayerMoveEvent;
@@ -20,14 +21,20 @@ public class DataGate {
 	private String worldName;
 	private double toll = 0.00;
 	private boolean denysilent = false;
+	private int sizeX = 0;
+	private int sizeY = 0;
+	private int sizeZ = 0;
+	private double radius = 0;
 
 	private String gateName = null;
+	private String permissionNode = null;
 	private String gateTargetName = null;
 	private DataGate gateTarget = null;
+	private long uses = 0;
 
 	public DataGate(XcraftGate instance, String name) {
 		plugin = instance;
-		gateName = name;		
+		setName(name);
 	}
 	
 	public Map<String, Object> toMap() {
@@ -40,10 +47,17 @@ public class DataGate {
 		values.put("locZ", z);
 		values.put("locP", pitch);
 		values.put("locYaw", yaw);
-		values.put("target", gateTargetName);
+		values.put("target", getTargetName());
 		values.put("toll", toll);
 		values.put("denysilent", denysilent);
 		
+		if (hasVolume()) {
+			values.put("sizeX", sizeX);
+			values.put("sizeY", sizeY);
+			values.put("sizeZ", sizeZ);
+			values.put("radius", radius);
+		}
+		
 		return values;
 	}
 
@@ -62,16 +76,18 @@ public class DataGate {
 	}
 	
 	public Location getLocation() {
-		if (plugin.getServer().getWorld(worldName) == null) return null;
+		World world = plugin.getServerWorlds().getWorld(worldName);
+		if (world == null) return null;
 		
-		Location ret = new Location(plugin.getServer().getWorld(worldName), x, y, z, yaw, pitch);
+		Location ret = new Location(world, x, y, z, yaw, pitch);
 		return Util.getSaneLocation(ret);
 	}
 	
 	public Location getPortLocation() {
-		if (plugin.getServer().getWorld(worldName) == null) return null;
+		World world = plugin.getServerWorlds().getWorld(worldName);
+		if (world == null) return null;
 		
-		Location ret = new Location(plugin.getServer().getWorld(worldName), x, y + 1.5, z, yaw, pitch);
+		Location ret = new Location(world, x, y + 1.5, z, yaw, pitch);
 		return Util.getSaneLocation(ret);
 	}
 
@@ -79,6 +95,10 @@ public class DataGate {
 		this.toll = (toll != null) ? toll : 0.00;
 	}
 	
+	public void setToll(double toll) {
+		this.toll = toll;
+	}
+	
 	public double getToll() {
 		return this.toll;
 	}
@@ -87,12 +107,89 @@ public class DataGate {
 		this.denysilent = denysilent != null ? denysilent : false;
 	}
 	
+	public void setDenySilent(boolean denysilent) {
+		this.denysilent = denysilent;
+	}
+	
 	public boolean getDenySilent() {
 		return this.denysilent;
 	}
 	
+	/*
+	 * A gate triggers on its own block, on every block within a box of
+	 * sizeX/sizeY/sizeZ blocks around it or, if radius is set, within
+	 * that distance of it.
+	 */
+	public void setVolume(int sizeX, int sizeY, int sizeZ, double radius) {
+		this.sizeX = Math.max(0, sizeX);
+		this.sizeY = Math.max(0, sizeY);
+		this.sizeZ = Math.max(0, sizeZ);
+		this.radius = Math.max(0, radius);
+	}
+	
+	public boolean hasVolume() {
+		return radius > 0 || sizeX > 0 || sizeY > 0 || sizeZ > 0;
+	}
+	
+	public int getSizeX() {
+		return radius > 0 ? (int) Math.floor(radius) : sizeX;
+	}
+	
+	public int getSizeY() {
+		return radius > 0 ? (int) Math.floor(radius) : sizeY;
+	}
+	
+	public int getSizeZ() {
+		return radius > 0 ? (int) Math.floor(radius) : sizeZ;
+	}
+	
+	public double getRadius() {
+		return radius;
+	}
+	
+	public boolean contains(int blockX, int blockY, int blockZ) {
+		int dx = blockX - (int) Math.floor(x);
+		int dy = blockY - (int) Math.floor(y);
+		int dz = blockZ - (int) Math.floor(z);
+		
+		if (radius > 0) return dx * dx + dy * dy + dz * dz <= radius * radius;
+		
+		return Math.abs(dx) <= sizeX && Math.abs(dy) <= sizeY && Math.abs(dz) <= sizeZ;
+	}
+	
+	/*
+	 * Like contains(), ignoring the height.
+	 */
+	public boolean covers(int blockX, int blockZ) {
+		int dx = blockX - (int) Math.floor(x);
+		int dz = blockZ - (int) Math.floor(z);
+		
+		if (radius > 0) return dx * dx + dz * dz <= radius * radius;
+		
+		return Math.abs(dx) <= sizeX && Math.abs(dz) <= sizeZ;
+	}
+	
+	public String getVolumeString() {
+		if (radius > 0) return "radius " + radius;
+		if (hasVolume()) return "box " + (2 * sizeX + 1) + "x" + (2 * sizeY + 1) + "x" + (2 * sizeZ + 1);
+		return "single block";
+	}
+	
 	public void setName(String newName) {
 		this.gateName = newName;
+		this.permissionNode = ("XcraftGate.use." + newName).intern();
+	}
+	
+	public long countUse() {
+		return ++uses;
+	}
+	
+	public long getUses() {
+		return uses;
+	}
+	
+	public String getPermissionNode() {
+		return permissionNode;
 	}
 	
 	public String getName() {
@@ -124,12 +221,36 @@ public class DataGate {
 	}
 	
 	public boolean hasTarget() {
-		return gateTarget != null;
+		return gateTarget != null || (gateTargetName != null && plugin.getGates().has(gateTargetName));
 	}
 	
+	/*
+	 * Targets loaded by name are looked up on first use, see
+	 * SetGate.resolveLinks(). If the target's world has not been read yet
+	 * that reads its whole gate file on the calling thread, so callers
+	 * that only need the name or the world use getTargetName() and
+	 * getTargetWorldName() instead.
+	 */
 	public DataGate getTarget() {
+		if (gateTarget == null && gateTargetName != null) {
+			gateTarget = plugin.getGates().get(gateTargetName);
+		}
+		
 		return gateTarget;
 	}
+	
+	public String getTargetName() {
+		return gateTarget != null ? gateTarget.getName() : gateTargetName;
+	}
+	
+	public String getTargetWorldName() {
+		return gateTarget != null ? gateTarget.getWorldName() : plugin.getGates().getWorldName(gateTargetName);
+	}
+	
+	public void setTargetName(String gateName) {
+		gateTarget = null;
+		gateTargetName = gateName;
+	}
 
 	public void linkTo(String gateName) {
 		linkTo(plugin.getGates().get(gateName));
@@ -152,7 +273,7 @@ public class DataGate {
 			gateTargetName = null;
 		}
 		
-		if (save) plugin.getGates().save();
+		if (save) plugin.getGates().update(this);
 	}
 		
 	public void unlink() {
@@ -169,7 +290,8 @@ public class DataGate {
 			plugin.getWorlds().get(worldName).load();
 		}		
 		
-		return true;
+		// a template being copied is refused
+		return plugin.getWorlds().get(worldName).isLoaded();
 	}
 	
 	public void portHere(Player player) {
@@ -178,7 +300,8 @@ public class DataGate {
 			return;
 		}
 
-		plugin.justTeleported.put(player.getName(), getLocation());
+		plugin.getTeleports().setPortedTo(player, this);
+		plugin.getPins().use(this);
 		player.teleport(getLocation());
 	}
 
@@ -191,20 +314,20 @@ public class DataGate {
 			return;
 		}
 
-		plugin.justTeleported.put(event.getPlayer().getName(), getLocation());
+		plugin.getTeleports().setPortedTo(event.getPlayer(), this);
 		event.setTo(getPortLocation());
 		*/
 		portHere(event.getPlayer());
 	}
 	
 	public void portToTarget(Player player) {
-		if (gateTarget != null) {
+		if (getTarget() != null) {
 			gateTarget.portHere(player);
 		}
 	}
 
 	public void portToTarget(PlayerMoveEvent event) {
-		if (gateTarget != null) {
+		if (getTarget() != null) {
 			gateTarget.portHere(event);
 		}
 	}
@@ -218,11 +341,13 @@ public class DataGate {
 			sender.sendMessage("Position: World " + getWorldName() + " is not loaded!");				
 		}
 
-		sender.sendMessage("Destination: " + (getTarget() != null ? getTarget().getName() : "none"));
+		sender.sendMessage("Destination: " + (hasTarget() ? getTargetName() : "none"));
 		if (plugin.getPluginManager().getEcoMethod() != null) {
 			sender.sendMessage("Toll: " + plugin.getPluginManager().getEcoMethod().format(toll));
 		}
+		sender.sendMessage("Trigger: " + getVolumeString());
+		sender.sendMessage("Used: " + uses + " times since startup");
 		sender.sendMessage("Deny usage silently: " + (denysilent ? "Yes" : "No"));
-		sender.sendMessage("Permission-Node: XcraftGate.use." + getName());
+		sender.sendMessage("Permission-Node: " + getPermissionNode());
 	}
 }
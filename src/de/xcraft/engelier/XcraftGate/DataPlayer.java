@@ -0,0 +1,99 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bukkit.Location;
+
+public class DataPlayer {
+	private String worldName = null;
+	private int blockX;
+	private int blockY;
+	private int blockZ;
+	
+	private DataGate portTo = null;
+	private DataGate portFrom = null;
+	
+	private Map<String, Boolean> permissions = new HashMap<String, Boolean>();
+	private long permissionsExpire = 0;
+	
+	long expires = 0;
+	int wheelSlot = -1;
+	DataPlayer wheelPrev = null;
+	DataPlayer wheelNext = null;
+
+	public boolean moveTo(Location loc) {
+		String newWorld = loc.getWorld().getName();
+		int x = loc.getBlockX();
+		int y = loc.getBlockY();
+		int z = loc.getBlockZ();
+		
+		if (x == blockX && y == blockY && z == blockZ && newWorld.equals(worldName)) {
+			return false;
+		}
+		
+		worldName = newWorld;
+		blockX = x;
+		blockY = y;
+		blockZ = z;
+		return true;
+	}
+	
+	public void resetPosition() {
+		worldName = null;
+	}
+	
+	public void setPortedTo(DataGate gate) {
+		portTo = gate;
+	}
+	
+	public void setPortedFrom(DataGate gate) {
+		portFrom = gate;
+	}
+	
+	public boolean isPortedTo() {
+		return portTo != null;
+	}
+	
+	public boolean isPortedFrom() {
+		return portFrom != null;
+	}
+	
+	public boolean isDebounced() {
+		return portTo != null || portFrom != null;
+	}
+	
+	public String getPortToWorld() {
+		return portTo != null ? portTo.getWorldName() : null;
+	}
+	
+	public boolean isOnPortBlocks(int x, int z) {
+		return (portTo != null && portTo.covers(x, z)) || (portFrom != null && portFrom.covers(x, z));
+	}
+	
+	/*
+	 * Cached permission decision, or null if unknown or expired.
+	 */
+	public Boolean getPermission(String node, long now) {
+		if (now >= permissionsExpire) {
+			permissions.clear();
+			return null;
+		}
+		
+		return permissions.get(node);
+	}
+	
+	public void setPermission(String node, boolean allowed, long now, long timeout) {
+		if (permissions.isEmpty()) permissionsExpire = now + timeout;
+		permissions.put(node, allowed);
+	}
+	
+	public void clearPermissions() {
+		permissions.clear();
+	}
+	
+	public void clearPorted() {
+		portTo = null;
+		portFrom = null;
+	}
+}
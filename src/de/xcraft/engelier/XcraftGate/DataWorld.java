@@ -6,7 +6,6 @@ import java.util.Map;
 import org.bukkit.Difficulty;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
-import org.bukkit.Server;
 import org.bukkit.World;
 import org.bukkit.World.Environment;
 import org.bukkit.WorldCreator;
@@ -18,7 +17,6 @@ import de.xcraft.engelier.XcraftGate.Generator.Generator;
 
 public class DataWorld {
 	private static XcraftGate plugin;
-	private static Server server;
 
 	private String name;
 	private Environment environment;
@@ -58,14 +56,13 @@ public class DataWorld {
 
 	public DataWorld (XcraftGate instance, String worldName, Environment env, Generator gen) {
 		DataWorld.plugin = instance;
-		DataWorld.server = plugin.getServer();
-		this.allowPvP = Util.castBoolean(plugin.serverconfig.getProperty("pvp", "false"));
-		this.gamemode = Util.castInt(plugin.serverconfig.getProperty("gamemode", "0"));
-		this.difficulty = Util.castInt(plugin.serverconfig.getProperty("difficulty", "1"));
-		this.allowAnimals = Util.castBoolean(plugin.serverconfig.getProperty("spawn-animals", "true"));
-		this.allowMonsters = Util.castBoolean(plugin.serverconfig.getProperty("spawn-monsters", "true"));
+		this.allowPvP = Util.castBoolean(plugin.getServerProperty("pvp", "false"));
+		this.gamemode = Util.castInt(plugin.getServerProperty("gamemode", "0"));
+		this.difficulty = Util.castInt(plugin.getServerProperty("difficulty", "1"));
+		this.allowAnimals = Util.castBoolean(plugin.getServerProperty("spawn-animals", "true"));
+		this.allowMonsters = Util.castBoolean(plugin.getServerProperty("spawn-monsters", "true"));
 		
-		this.world = server.getWorld(worldName);
+		this.world = worldName != null ? plugin.getServerWorlds().getWorld(worldName) : null;
 		this.name = worldName;
 		this.environment = env;
 		this.generator = (gen != null) ? gen : Generator.DEFAULT;
@@ -134,6 +131,12 @@ public class DataWorld {
 		if (world != null) {
 			return;
 		}
+
+		if (plugin.getClones().isTemplate(name)) {
+			// the server would write to the files being copied
+			plugin.log.info(plugin.getNameBrackets() + "not loading world " + name + ", it is being copied as a template");
+			return;
+		}
 		
 		ChunkGenerator thisGen = (generator != Generator.DEFAULT) ? generator.getChunkGenerator(plugin) : null;
 		
@@ -148,7 +151,7 @@ public class DataWorld {
 			creator.generator(thisGen);
 		}
 
-		this.world = creator.createWorld();
+		this.world = plugin.getServerWorlds().createWorld(creator);
 		
 		lastAction = System.currentTimeMillis();
 
@@ -156,8 +159,15 @@ public class DataWorld {
 	}
 	
 	public void unload() {
+		plugin.getPins().clear(name);
+
+		if (!plugin.getServerWorlds().unloadWorld(world, true)) {
+			plugin.log.warning(plugin.getNameBrackets() + "unable to unload world " + world.getName());
+			return;
+		}
+
 		plugin.log.info(plugin.getNameBrackets() + "unloaded world " + world.getName());
-		server.unloadWorld(world, true);
+		plugin.getGates().onWorldUnload(this);
 		this.world = null;
 	}
 	
@@ -224,6 +234,14 @@ public class DataWorld {
 		}		
 	}	
 
+	public void touch() {
+		lastAction = System.currentTimeMillis();
+	}
+	
+	public long getLastAction() {
+		return lastAction;
+	}
+	
 	public Boolean checkInactive() {
 		if (world == null || sticky) return false;
 		
@@ -442,6 +460,7 @@ public class DataWorld {
 		sender.sendMessage("Spawnlocation: " + (world == null ? "world not loaded!" : Util.getLocationString(Util.getSaneLocation(world.getSpawnLocation()))) + (keepSpawnInMemory ? " (Stays in memory!)" : ""));
 		sender.sendMessage("Seed: " + (world != null ? world.getSeed() : "world not loaded!"));
 		sender.sendMessage("Player count: "	+ (world != null ? world.getPlayers().size() : "world not loaded!"));
+		sender.sendMessage("Loaded chunks / entities: " + (world != null ? world.getLoadedChunks().length + " / " + world.getEntities().size() : "world not loaded!"));
 		sender.sendMessage("Border: " + (border > 0 ? border : "none"));
 		sender.sendMessage("PvP allowed: " + (allowPvP ? "yes" : "no"));
 		sender.sendMessage("Animals/Monsters allowed: " + (allowAnimals ? "yes" : "no") + " / " + (allowMonsters ? "yes" : "no"));
@@ -0,0 +1,122 @@
+package de.xcraft.engelier.XcraftGate;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+/*
+ * Keeps players from bouncing straight back through the gate they arrived
+ * at. The state lives in each player's DataPlayer; a timing wheel drops
+ * entries that were never cleared by walking away, so nothing piles up.
+ */
+public class DebounceTeleport implements Runnable {
+	private static final int WHEEL_SIZE = 64;
+	
+	private static XcraftGate plugin;
+	private final DataPlayer[] wheel = new DataPlayer[WHEEL_SIZE];
+	private long now = 0;
+	private int pending = 0;
+
+	public DebounceTeleport(XcraftGate instance) {
+		plugin = instance;
+	}
+	
+	public void setPortedTo(Player player, DataGate gate) {
+		DataPlayer data = plugin.getPlayers().get(player);
+		data.setPortedTo(gate);
+		schedule(data);
+	}
+	
+	public void setPortedFrom(Player player, DataGate gate) {
+		DataPlayer data = plugin.getPlayers().get(player);
+		data.setPortedFrom(gate);
+		schedule(data);
+	}
+	
+	/*
+	 * Returns true while gates must not trigger for this player. An entry
+	 * only counts once both ends of a teleport are known and is cleared as
+	 * soon as the player steps out of both gates.
+	 */
+	public boolean check(Player player, Location location) {
+		DataPlayer data = plugin.getPlayers().get(player);
+		
+		if (!data.isDebounced()) return false;
+		
+		if (!data.isPortedTo() || !data.isPortedFrom()) {
+			clear(data);
+			return false;
+		}
+		
+		if (!data.isOnPortBlocks(location.getBlockX(), location.getBlockZ())) {
+			clear(data);
+		}
+		
+		return true;
+	}
+	
+	public void onWorldChange(Player player) {
+		DataPlayer data = plugin.getPlayers().get(player);
+		
+		if (data.isDebounced() && !player.getWorld().getName().equals(data.getPortToWorld())) {
+			clear(data);
+		}
+	}
+	
+	public void clear(Player player) {
+		clear(plugin.getPlayers().get(player));
+	}
+	
+	public void clear(DataPlayer data) {
+		data.clearPorted();
+		unlink(data);
+	}
+	
+	public int size() {
+		return pending;
+	}
+	
+	private void schedule(DataPlayer data) {
+		unlink(data);
+		
+		long timeout = Math.max(1, plugin.config.getInt("gates.debounceTimeout", 30));
+		data.expires = now + timeout;
+		data.wheelSlot = (int) (data.expires % WHEEL_SIZE);
+		data.wheelNext = wheel[data.wheelSlot];
+		if (data.wheelNext != null) data.wheelNext.wheelPrev = data;
+		wheel[data.wheelSlot] = data;
+		pending++;
+	}
+	
+	private void unlink(DataPlayer data) {
+		if (data.wheelSlot < 0) return;
+		
+		if (data.wheelPrev != null) {
+			data.wheelPrev.wheelNext = data.wheelNext;
+		} else {
+			wheel[data.wheelSlot] = data.wheelNext;
+		}
+		
+		if (data.wheelNext != null) data.wheelNext.wheelPrev = data.wheelPrev;
+		
+		data.wheelPrev = null;
+		data.wheelNext = null;
+		data.wheelSlot = -1;
+		pending--;
+	}
+
+	@Override
+	public void run() {
+		now++;
+		
+		DataPlayer data = wheel[(int) (now % WHEEL_SIZE)];
+		while (data != null) {
+			DataPlayer next = data.wheelNext;
+			
+			if (data.expires <= now) {
+				clear(data);
+			}
+			
+			data = next;
+		}
+	}
+}
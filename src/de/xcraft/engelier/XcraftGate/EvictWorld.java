@@ -0,0 +1,101 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.bukkit.World;
+
+/*
+ * Unloads worlds before their inactivity timeout when the heap runs
+ * full. Every run samples heap occupancy and the loaded chunks and
+ * entities of each world; above the high-water mark the least recently
+ * used world without players that isn't sticky, pregenerating or the
+ * main world is handed to UnloadWorld, one at a time. How much heap
+ * that gave back is measured once the world is gone and is only as
+ * accurate as the garbage collector's timing allows.
+ */
+public class EvictWorld implements Runnable {
+	private static XcraftGate plugin;
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+	private final Map<String, Long> evicting = new HashMap<String, Long>();
+	private long evictions = 0;
+	private long reclaimed = 0;
+	private int occupancy = 0;
+	private String lastDecision = null;
+
+	public EvictWorld(XcraftGate instance) {
+		plugin = instance;
+	}
+
+	@Override
+	public void run() {
+		MemoryUsage heap = memory.getHeapMemoryUsage();
+		long max = heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+		occupancy = (int) (heap.getUsed() * 100 / max);
+
+		Iterator<Map.Entry<String, Long>> it = evicting.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Long> entry = it.next();
+			if (plugin.getUnloads().isUnloading(entry.getKey())) continue;
+
+			reclaimed += Math.max(0, entry.getValue() - heap.getUsed());
+			it.remove();
+		}
+
+		Map<String, int[]> footprints = new HashMap<String, int[]>();
+		DataWorld candidate = null;
+		String mainWorld = plugin.getServerProperty("level-name", "world");
+
+		for (DataWorld thisWorld : plugin.getWorlds()) {
+			World world = thisWorld.getWorld();
+			if (world == null) continue;
+
+			footprints.put(thisWorld.getName(), new int[] { world.getLoadedChunks().length, world.getEntities().size() });
+
+			if (thisWorld.isSticky() || world.getPlayers().size() > 0
+					|| thisWorld.getName().equalsIgnoreCase(mainWorld)
+					|| plugin.getUnloads().isUnloading(thisWorld.getName())
+					|| plugin.getPregens().isRunning(thisWorld.getName())) {
+				continue;
+			}
+
+			if (candidate == null || thisWorld.getLastAction() < candidate.getLastAction()) {
+				candidate = thisWorld;
+			}
+		}
+
+		// wait for the last eviction to finish before judging the heap again
+		if (!evicting.isEmpty() || candidate == null || occupancy < plugin.config.getInt("dynworld.evictHighWater", 85)) {
+			return;
+		}
+
+		int[] footprint = footprints.get(candidate.getName());
+		lastDecision = candidate.getName() + " at " + occupancy + "% heap, " + footprint[0] + " chunks, " + footprint[1] + " entities, idle "
+				+ ((System.currentTimeMillis() - candidate.getLastAction()) / 1000) + " s";
+		plugin.log.info(plugin.getNameBrackets() + "heap is running full, evicting world " + lastDecision);
+
+		evicting.put(candidate.getName(), heap.getUsed());
+		evictions++;
+		plugin.getUnloads().add(candidate, true);
+	}
+
+	public int getOccupancy() {
+		return occupancy;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public long getReclaimed() {
+		return reclaimed;
+	}
+
+	public String getLastDecision() {
+		return lastDecision;
+	}
+}
@@ -0,0 +1,44 @@
+package de.xcraft.engelier.XcraftGate;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/*
+ * Maps block coordinates to gates without building location strings.
+ * Keys are x/y/z packed into a long, stored per world in an IndexTable,
+ * so a lookup for a player position does not allocate anything.
+ */
+public class IndexGateBlock {
+	private IndexTable<DataGate> table = new IndexTable<DataGate>();
+
+	public static long pack(int x, int y, int z) {
+		return ((long) x & 0x3FFFFFFL) << 38 | ((long) z & 0x3FFFFFFL) << 12 | ((long) y & 0xFFFL);
+	}
+
+	private static long pack(DataGate gate) {
+		return pack((int) Math.floor(gate.getX()), (int) Math.floor(gate.getY()), (int) Math.floor(gate.getZ()));
+	}
+
+	public DataGate get(Location loc) {
+		World world = loc.getWorld();
+		if (world == null) return null;
+
+		return table.get(world.getName(), pack(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()));
+	}
+
+	public void put(DataGate gate) {
+		table.put(gate.getWorldName(), pack(gate), gate);
+	}
+
+	public void remove(DataGate gate) {
+		table.remove(gate.getWorldName(), pack(gate), gate);
+	}
+
+	public void clear() {
+		table.clear();
+	}
+
+	public int size() {
+		return table.size();
+	}
+}
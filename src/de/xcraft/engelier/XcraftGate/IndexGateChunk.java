@@ -0,0 +1,193 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Gates partitioned by world and bucketed by chunk coordinate. Queries only
+ * touch the buckets that can contain a match, so their cost follows the
+ * number of gates found rather than the searched volume or the gate total.
+ */
+public class IndexGateChunk {
+	private Map<String, Map<Long, List<DataGate>>> worlds = new HashMap<String, Map<Long, List<DataGate>>>();
+
+	private static long chunkKey(int chunkX, int chunkZ) {
+		return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+	}
+
+	private static int toChunk(double coord) {
+		return (int) Math.floor(coord) >> 4;
+	}
+
+	public void add(DataGate gate) {
+		Map<Long, List<DataGate>> buckets = worlds.get(gate.getWorldName());
+
+		if (buckets == null) {
+			buckets = new HashMap<Long, List<DataGate>>();
+			worlds.put(gate.getWorldName(), buckets);
+		}
+
+		long key = chunkKey(toChunk(gate.getX()), toChunk(gate.getZ()));
+		List<DataGate> bucket = buckets.get(key);
+
+		if (bucket == null) {
+			bucket = new ArrayList<DataGate>(2);
+			buckets.put(key, bucket);
+		}
+
+		bucket.add(gate);
+	}
+
+	public void remove(DataGate gate) {
+		Map<Long, List<DataGate>> buckets = worlds.get(gate.getWorldName());
+		if (buckets == null) return;
+
+		long key = chunkKey(toChunk(gate.getX()), toChunk(gate.getZ()));
+		List<DataGate> bucket = buckets.get(key);
+		if (bucket == null) return;
+
+		bucket.remove(gate);
+
+		if (bucket.isEmpty()) {
+			buckets.remove(key);
+
+			if (buckets.isEmpty()) {
+				worlds.remove(gate.getWorldName());
+			}
+		}
+	}
+
+	public void clear() {
+		worlds.clear();
+	}
+
+	public List<DataGate> getWorld(String worldName) {
+		List<DataGate> ret = new ArrayList<DataGate>();
+		Map<Long, List<DataGate>> buckets = worlds.get(worldName);
+
+		if (buckets != null) {
+			for (List<DataGate> bucket : buckets.values()) {
+				ret.addAll(bucket);
+			}
+		}
+
+		return ret;
+	}
+
+	public List<DataGate> getInRadius(String worldName, double x, double y, double z, double radius) {
+		List<Candidate> found = new ArrayList<Candidate>();
+		Map<Long, List<DataGate>> buckets = worlds.get(worldName);
+
+		if (buckets == null) return new ArrayList<DataGate>();
+
+		int minX = toChunk(x - radius);
+		int maxX = toChunk(x + radius);
+		int minZ = toChunk(z - radius);
+		int maxZ = toChunk(z + radius);
+		double radiusSq = radius * radius;
+
+		if ((long) (maxX - minX + 1) * (maxZ - minZ + 1) > buckets.size()) {
+			for (List<DataGate> bucket : buckets.values()) {
+				collect(bucket, x, y, z, radiusSq, found);
+			}
+		} else {
+			for (int cx = minX; cx <= maxX; cx++) {
+				for (int cz = minZ; cz <= maxZ; cz++) {
+					List<DataGate> bucket = buckets.get(chunkKey(cx, cz));
+					if (bucket != null) {
+						collect(bucket, x, y, z, radiusSq, found);
+					}
+				}
+			}
+		}
+
+		return sorted(found, found.size());
+	}
+
+	public List<DataGate> getNearest(String worldName, double x, double y, double z, int count) {
+		List<Candidate> found = new ArrayList<Candidate>();
+		Map<Long, List<DataGate>> buckets = worlds.get(worldName);
+
+		if (buckets == null || count <= 0) return new ArrayList<DataGate>();
+
+		int centerX = toChunk(x);
+		int centerZ = toChunk(z);
+
+		// walk rings of chunks around the center until no unvisited chunk can be closer than the k-th hit
+		for (int ring = 0; ; ring++) {
+			long side = 2L * ring + 1;
+
+			if (side * side > buckets.size()) {
+				found.clear();
+				for (List<DataGate> bucket : buckets.values()) {
+					collect(bucket, x, y, z, Double.MAX_VALUE, found);
+				}
+				break;
+			}
+
+			for (int cx = centerX - ring; cx <= centerX + ring; cx++) {
+				for (int cz = centerZ - ring; cz <= centerZ + ring; cz++) {
+					if (Math.abs(cx - centerX) != ring && Math.abs(cz - centerZ) != ring) continue;
+
+					List<DataGate> bucket = buckets.get(chunkKey(cx, cz));
+					if (bucket != null) {
+						collect(bucket, x, y, z, Double.MAX_VALUE, found);
+					}
+				}
+			}
+
+			if (found.size() >= count) {
+				Collections.sort(found);
+				double reach = ring * 16.0;
+
+				if (found.get(count - 1).distanceSq <= reach * reach) {
+					break;
+				}
+			}
+		}
+
+		return sorted(found, count);
+	}
+
+	private void collect(List<DataGate> bucket, double x, double y, double z, double radiusSq, List<Candidate> found) {
+		for (DataGate gate : bucket) {
+			double dx = gate.getX() - x;
+			double dy = gate.getY() - y;
+			double dz = gate.getZ() - z;
+			double distanceSq = dx * dx + dy * dy + dz * dz;
+
+			if (distanceSq <= radiusSq) {
+				found.add(new Candidate(gate, distanceSq));
+			}
+		}
+	}
+
+	private List<DataGate> sorted(List<Candidate> found, int limit) {
+		Collections.sort(found);
+
+		List<DataGate> ret = new ArrayList<DataGate>(Math.min(limit, found.size()));
+		for (int i = 0; i < found.size() && i < limit; i++) {
+			ret.add(found.get(i).gate);
+		}
+
+		return ret;
+	}
+
+	private static class Candidate implements Comparable<Candidate> {
+		private final DataGate gate;
+		private final double distanceSq;
+
+		public Candidate(DataGate gate, double distanceSq) {
+			this.gate = gate;
+			this.distanceSq = distanceSq;
+		}
+
+		@Override
+		public int compareTo(Candidate other) {
+			return Double.compare(distanceSq, other.distanceSq);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/*
+ * Gates with a trigger volume, entered into the bucket of every chunk
+ * their bounding box touches. A lookup only tests the gates of the chunk
+ * the position is in, so its cost depends on how many volumes overlap
+ * there, not on how many exist. Buckets live in an IndexTable, so a
+ * lookup does not box the chunk key.
+ */
+public class IndexGateVolume {
+	private IndexTable<List<DataGate>> buckets = new IndexTable<List<DataGate>>();
+	private int size = 0;
+
+	private static long chunkKey(int chunkX, int chunkZ) {
+		return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+	}
+
+	public void add(DataGate gate) {
+		int blockX = (int) Math.floor(gate.getX());
+		int blockZ = (int) Math.floor(gate.getZ());
+
+		for (int cx = (blockX - gate.getSizeX()) >> 4; cx <= (blockX + gate.getSizeX()) >> 4; cx++) {
+			for (int cz = (blockZ - gate.getSizeZ()) >> 4; cz <= (blockZ + gate.getSizeZ()) >> 4; cz++) {
+				long key = chunkKey(cx, cz);
+				List<DataGate> bucket = buckets.get(gate.getWorldName(), key);
+
+				if (bucket == null) {
+					bucket = new ArrayList<DataGate>(2);
+					buckets.put(gate.getWorldName(), key, bucket);
+				}
+
+				bucket.add(gate);
+			}
+		}
+
+		size++;
+	}
+
+	/*
+	 * Must be called before the gate's position or volume change.
+	 */
+	public void remove(DataGate gate) {
+		int blockX = (int) Math.floor(gate.getX());
+		int blockZ = (int) Math.floor(gate.getZ());
+		boolean found = false;
+
+		for (int cx = (blockX - gate.getSizeX()) >> 4; cx <= (blockX + gate.getSizeX()) >> 4; cx++) {
+			for (int cz = (blockZ - gate.getSizeZ()) >> 4; cz <= (blockZ + gate.getSizeZ()) >> 4; cz++) {
+				long key = chunkKey(cx, cz);
+				List<DataGate> bucket = buckets.get(gate.getWorldName(), key);
+
+				if (bucket != null && bucket.remove(gate)) {
+					found = true;
+					if (bucket.isEmpty()) buckets.remove(gate.getWorldName(), key, bucket);
+				}
+			}
+		}
+
+		if (found) size--;
+	}
+
+	public DataGate get(Location loc) {
+		World world = loc.getWorld();
+		if (world == null) return null;
+
+		int x = loc.getBlockX();
+		int y = loc.getBlockY();
+		int z = loc.getBlockZ();
+		List<DataGate> bucket = buckets.get(world.getName(), chunkKey(x >> 4, z >> 4));
+		if (bucket == null) return null;
+
+		// by index, an iterator would be an allocation per move
+		for (int i = 0; i < bucket.size(); i++) {
+			DataGate thisGate = bucket.get(i);
+			if (thisGate.contains(x, y, z)) return thisGate;
+		}
+
+		return null;
+	}
+
+	public void clear() {
+		buckets.clear();
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+}
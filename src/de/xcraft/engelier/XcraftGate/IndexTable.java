@@ -0,0 +1,171 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Open-addressing table from a world plus a long key to a value, with
+ * linear probing and backward shift deletion. Worlds are numbered on
+ * first use, so looking up a key allocates nothing. Used by the block
+ * and the volume index.
+ */
+public class IndexTable<V> {
+	private static final int MIN_CAPACITY = 64;
+
+	private Map<String, Integer> worldIds = new HashMap<String, Integer>();
+	private long[] keys;
+	private int[] worlds;
+	private Object[] values;
+	private int mask;
+	private int size = 0;
+
+	public IndexTable() {
+		allocate(MIN_CAPACITY);
+	}
+
+	private static int hash(int world, long key) {
+		long h = key ^ ((long) world * 0x9E3779B97F4A7C15L);
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		worlds = new int[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	/*
+	 * Returns 0 for a world that never had a key.
+	 */
+	public int getWorldId(String worldName) {
+		Integer id = worldIds.get(worldName);
+		return id == null ? 0 : id;
+	}
+
+	private int addWorldId(String worldName) {
+		Integer id = worldIds.get(worldName);
+
+		if (id == null) {
+			// 0 marks a free slot
+			id = worldIds.size() + 1;
+			worldIds.put(worldName, id);
+		}
+
+		return id;
+	}
+
+	private int find(int world, long key) {
+		int slot = hash(world, key) & mask;
+
+		while (worlds[slot] != 0) {
+			if (worlds[slot] == world && keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		return -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(int world, long key) {
+		if (world == 0) return null;
+
+		int slot = find(world, key);
+		return slot < 0 ? null : (V) values[slot];
+	}
+
+	public V get(String worldName, long key) {
+		return get(getWorldId(worldName), key);
+	}
+
+	public void put(String worldName, long key, V value) {
+		int world = addWorldId(worldName);
+
+		int slot = find(world, key);
+		if (slot >= 0) {
+			values[slot] = value;
+			return;
+		}
+
+		if ((size + 1) * 2 > keys.length) {
+			resize(keys.length * 2);
+		}
+
+		insert(world, key, value);
+		size++;
+	}
+
+	/*
+	 * Removes the key if it maps to exactly this value.
+	 */
+	public boolean remove(String worldName, long key, V value) {
+		int world = getWorldId(worldName);
+		if (world == 0) return false;
+
+		int slot = find(world, key);
+		if (slot < 0 || values[slot] != value) return false;
+
+		// backward shift deletion, keeps probe chains intact without tombstones
+		int free = slot;
+		int next = (free + 1) & mask;
+
+		while (worlds[next] != 0) {
+			int home = hash(worlds[next], keys[next]) & mask;
+
+			if (((next - home) & mask) >= ((next - free) & mask)) {
+				keys[free] = keys[next];
+				worlds[free] = worlds[next];
+				values[free] = values[next];
+				free = next;
+			}
+
+			next = (next + 1) & mask;
+		}
+
+		keys[free] = 0;
+		worlds[free] = 0;
+		values[free] = null;
+		size--;
+		return true;
+	}
+
+	private void insert(int world, long key, Object value) {
+		int slot = hash(world, key) & mask;
+
+		while (worlds[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = key;
+		worlds[slot] = world;
+		values[slot] = value;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldWorlds = worlds;
+		Object[] oldValues = values;
+
+		allocate(capacity);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldWorlds[i] != 0) {
+				insert(oldWorlds[i], oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	public void clear() {
+		allocate(MIN_CAPACITY);
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,229 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import com.nijikokun.register.payment.Method;
+
+/*
+ * Tolls are charged against a balance cached per player and booked to the
+ * economy plugin later, a few accounts per run, so a gate only waits on
+ * the economy when the cached balance is unknown, stale or too low. The
+ * economy plugins aren't thread safe, so all of this runs on the main
+ * thread. Debits that fail to book stay pending, count against the
+ * balance and are tried again on later runs, up to toll.maxRetries
+ * times; then, or if the plugin stops first, they are given up and
+ * written to tolls-failed.log.
+ */
+public class LedgerToll implements Runnable {
+	private static XcraftGate plugin;
+	private final Map<String, Account> accounts = new HashMap<String, Account>();
+	private final LinkedList<String> queue = new LinkedList<String>();
+	private Method method = null;
+	private long charged = 0;
+	private long settled = 0;
+	private long failed = 0;
+	private long dropped = 0;
+
+	public LedgerToll(XcraftGate instance) {
+		plugin = instance;
+	}
+
+	/*
+	 * Returns false if the player can't pay.
+	 */
+	public boolean charge(String playerName, double toll) {
+		Method current = plugin.getPluginManager().getEcoMethod();
+		if (current == null) return false;
+
+		long now = System.currentTimeMillis();
+		long timeout = plugin.config.getInt("toll.balanceTimeout", 30) * 1000L;
+
+		if (current != method) {
+			// balances from another economy mean nothing
+			method = current;
+			for (Account thisAccount : accounts.values()) {
+				thisAccount.fetched = 0;
+			}
+		}
+
+		Account account = get(playerName);
+		if (now - account.fetched >= timeout || account.available() < toll) {
+			try {
+				account.balance = current.getAccount(playerName).balance();
+				account.fetched = now;
+			} catch (Exception ex) {
+				plugin.log.warning(plugin.getNameBrackets() + "unable to read the balance of " + playerName + ": " + ex);
+				return false;
+			}
+
+			if (account.available() < toll) return false;
+		}
+
+		if (account.pending == 0) queue.add(playerName);
+		account.pending += toll;
+		charged++;
+		return true;
+	}
+
+	/*
+	 * Drops the cached balance of a player who left, pending debits are kept.
+	 */
+	public void forget(String playerName) {
+		Account account = accounts.get(playerName);
+		if (account == null) return;
+
+		if (account.pending == 0) {
+			accounts.remove(playerName);
+		} else {
+			account.left = true;
+		}
+	}
+
+	private Account get(String playerName) {
+		Account ret = accounts.get(playerName);
+
+		if (ret == null) {
+			ret = new Account();
+			accounts.put(playerName, ret);
+		}
+
+		ret.left = false;
+
+		return ret;
+	}
+
+	@Override
+	public void run() {
+		settle(plugin.config.getInt("toll.settleBatch", 16));
+	}
+
+	/*
+	 * Books everything pending, e.g. on shutdown.
+	 */
+	public void close() {
+		settle(queue.size());
+
+		// nobody retries after this, keep a record of what is left
+		for (String playerName : queue) {
+			Account account = accounts.get(playerName);
+			if (account == null || account.pending <= 0) continue;
+
+			dropped++;
+			deadLetter(playerName, method != null ? method.format(account.pending) : String.valueOf(account.pending), "on shutdown");
+			account.pending = 0;
+		}
+
+		queue.clear();
+	}
+
+	private void settle(int batch) {
+		Method current = plugin.getPluginManager() != null ? plugin.getPluginManager().getEcoMethod() : null;
+		if (current == null) return;
+
+		int maxRetries = plugin.config.getInt("toll.maxRetries", 5);
+
+		// retries go to the end of the queue, at most one try per account and run
+		batch = Math.min(batch, queue.size());
+
+		for (int i = 0; i < batch; i++) {
+			String playerName = queue.removeFirst();
+			Account account = accounts.get(playerName);
+			if (account == null || account.pending <= 0) continue;
+
+			double amount = account.pending;
+			boolean booked = false;
+
+			try {
+				Method.MethodAccount economy = current.getAccount(playerName);
+				booked = economy.subtract(amount);
+
+				// whatever happened, the economy knows the balance now
+				account.balance = economy.balance();
+				account.fetched = System.currentTimeMillis();
+			} catch (Exception ex) {
+				plugin.log.warning(plugin.getNameBrackets() + "unable to book toll for " + playerName + ": " + ex);
+			}
+
+			if (booked) {
+				settled++;
+				account.pending = 0;
+				account.retries = 0;
+			} else if (++account.retries <= maxRetries) {
+				// the player went through already, the debt stays until it can be booked
+				failed++;
+				queue.add(playerName);
+
+				if (account.retries == 1) {
+					plugin.log.warning(plugin.getNameBrackets() + "unable to book " + current.format(amount) + " toll for " + playerName + ", retrying");
+				}
+			} else {
+				failed++;
+				dropped++;
+				account.pending = 0;
+				account.retries = 0;
+				deadLetter(playerName, current.format(amount), "after " + maxRetries + " retries");
+			}
+
+			if (account.pending == 0 && account.left) accounts.remove(playerName);
+		}
+	}
+
+	private void deadLetter(String playerName, String amount, String when) {
+		plugin.log.severe(plugin.getNameBrackets() + "giving up booking " + amount + " toll for " + playerName + " " + when);
+
+		try {
+			FileWriter out = new FileWriter(new File(plugin.getDataFolder(), "tolls-failed.log"), true);
+			try {
+				out.write(new Date() + "\t" + playerName + "\t" + amount + "\n");
+			} finally {
+				out.close();
+			}
+		} catch (IOException ex) {
+			plugin.log.severe(plugin.getNameBrackets() + "unable to write tolls-failed.log: " + ex);
+		}
+	}
+
+	public double getPending() {
+		double ret = 0;
+
+		for (Account thisAccount : accounts.values()) {
+			ret += thisAccount.pending;
+		}
+
+		return ret;
+	}
+
+	public long getCharged() {
+		return charged;
+	}
+
+	public long getSettled() {
+		return settled;
+	}
+
+	public long getFailed() {
+		return failed;
+	}
+
+	public long getDropped() {
+		return dropped;
+	}
+
+	private static class Account {
+		private double balance = 0;
+		private double pending = 0;
+		private long fetched = 0;
+		private int retries = 0;
+		private boolean left = false;
+
+		private double available() {
+			return balance - pending;
+		}
+	}
+}
@@ -1,13 +1,12 @@
 package de.xcraft.engelier.XcraftGate;
 
 import org.bukkit.ChatColor;
-import org.bukkit.Chunk;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
-import org.bukkit.World;
 import org.bukkit.event.player.PlayerChangedWorldEvent;
 import org.bukkit.event.player.PlayerListener;
 import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerTeleportEvent;
 
 public class ListenerPlayer extends PlayerListener {
@@ -20,14 +19,15 @@ public class ListenerPlayer extends PlayerListener {
 	}
 
 	public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+		plugin.getTeleports().onWorldChange(event.getPlayer());
+		plugin.getPlayers().get(event.getPlayer()).clearPermissions();
 		event.getPlayer().setGameMode(GameMode.getByValue(plugin.getWorlds().get(event.getPlayer().getWorld()).getGameMode()));
 	}
 	
 	public void onPlayerMove(PlayerMoveEvent event) {
 		location = event.getTo();
-
-		Location portTo = null;
-		Location portFrom = null;
+		
+		if (!plugin.getPlayers().checkBlockChanged(event.getPlayer(), location)) return;
 		
 		if (plugin.getWorlds().get(location.getWorld()) == null) return;
 		
@@ -43,35 +43,26 @@ public class ListenerPlayer extends PlayerListener {
 				Location back = new Location(location.getWorld(), x, location.getY(), z, location.getYaw(), location.getPitch());
 				
 				event.setCancelled(true);
+				plugin.getPlayers().get(event.getPlayer()).resetPosition();
 				event.getPlayer().teleport(back);
 				event.getPlayer().sendMessage(ChatColor.RED	+ "You reached the border of this world.");
 				return;
 			}			
 		}
 				
-		portTo = plugin.justTeleported.get(event.getPlayer().getName());		
-		portFrom = plugin.justTeleportedFrom.get(event.getPlayer().getName());
-		
-		if (portTo != null && portFrom == null)
-			plugin.justTeleported.remove(event.getPlayer().getName());
+		if (plugin.getTeleports().check(event.getPlayer(), location)) return;
 		
-		if (portTo == null && portFrom != null)
-			plugin.justTeleportedFrom.remove(event.getPlayer().getName());
-		
-		if (portTo != null && portFrom != null) {
-			if ((Math.floor(portTo.getX()) != Math.floor(location.getX()) || Math.floor(portTo.getZ()) != Math.floor(location.getZ()))
-				&& (Math.floor(portFrom.getX()) != Math.floor(location.getX()) || Math.floor(portFrom.getZ()) != Math.floor(location.getZ()))) {
-				plugin.justTeleported.remove(event.getPlayer().getName());
-				plugin.justTeleportedFrom.remove(event.getPlayer().getName());
-			}
-		} else if ((gate = plugin.getGates().getByLocation(location)) != null) {
-			if (plugin.getPluginManager().getPermissions() == null ?
-					event.getPlayer().hasPermission("XcraftGate.use." + gate.getName()) :
-					plugin.getPluginManager().getPermissions().has(event.getPlayer(), "XcraftGate.use." + gate.getName())) {
-				plugin.justTeleportedFrom.put(event.getPlayer().getName(), gate.getLocation());
+		if ((gate = plugin.getGates().getByLocation(location)) != null) {
+			if (plugin.getPlayers().hasPermission(event.getPlayer(), gate.getPermissionNode())) {
+				if (gate.hasTarget() && !plugin.getLoads().isReady(gate.getTargetWorldName())) {
+					// step off and on again once it's loaded
+					event.getPlayer().sendMessage(ChatColor.AQUA + "The destination of this gate is warming up, please try again in a moment.");
+					return;
+				}
+				
+				plugin.getTeleports().setPortedFrom(event.getPlayer(), gate);
 				if (plugin.getPluginManager().getEcoMethod() != null && gate.getToll() > 0) {
-					if (plugin.getPluginManager().getEcoMethod().getAccount(event.getPlayer().getName()).hasEnough(gate.getToll())) {
-						plugin.getPluginManager().getEcoMethod().getAccount(event.getPlayer().getName()).subtract(gate.getToll());
+					if (plugin.getTolls().charge(event.getPlayer().getName(), gate.getToll())) {
 						event.getPlayer().sendMessage(ChatColor.AQUA + "Took " + plugin.getPluginManager().getEcoMethod().format(gate.getToll()) + " from your account for using this gate.");
 						gate.portToTarget(event);
 					} else {
@@ -90,10 +81,16 @@ public class ListenerPlayer extends PlayerListener {
 		}
 	}
 	
+	public void onPlayerQuit(PlayerQuitEvent event) {
+		plugin.getTeleports().clear(event.getPlayer());
+		plugin.getPlayers().remove(event.getPlayer());
+		plugin.getTolls().forget(event.getPlayer().getName());
+	}
+	
 	public void onPlayerTeleport(PlayerTeleportEvent event) {
+		if (event.isCancelled()) return;
+		
 		Location targetLoc = event.getTo();
-		World targetWorld = targetLoc.getWorld();
-		Chunk targetChunk = targetWorld.getChunkAt(targetLoc);
-		targetWorld.refreshChunk(targetChunk.getX(), targetChunk.getZ());
+		plugin.getRefreshes().request(targetLoc.getWorld(), targetLoc.getBlockX() >> 4, targetLoc.getBlockZ() >> 4);
 	}
 }
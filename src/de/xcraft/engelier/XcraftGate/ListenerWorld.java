@@ -16,6 +16,12 @@ public class ListenerWorld extends WorldListener {
 		plugin.getWorlds().onWorldLoad(world);
 	}
 	
+	public void onChunkUnload(ChunkUnloadEvent event) {
+		if (plugin.getPins().cancelUnload(event.getChunk())) {
+			event.setCancelled(true);
+		}
+	}
+	
 	public void onWorldUnload(WorldUnloadEvent event) {
 		World world = event.getWorld();
 		plugin.log.info(plugin.getNameBrackets() + "trying to unload world " + world.getName());
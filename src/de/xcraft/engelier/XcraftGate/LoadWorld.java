@@ -0,0 +1,191 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+/*
+ * Loads worlds one at a time, at most one every few ticks, instead of all
+ * at once. Worlds a player is waiting for at a gate come first, then
+ * sticky worlds and worlds gates at spawn lead to, then everything else.
+ * It also loads the target world of a gate while players are still
+ * walking up to it, so the first of them doesn't have to wait for it. A
+ * gate whose world is still queued reports "warming up" rather than
+ * loading it on the spot. Preloaded worlds that nobody visits are
+ * unloaded again by the usual inactivity check.
+ */
+public class LoadWorld implements Runnable {
+	public static final int PRIORITY_GATE = 0;
+	public static final int PRIORITY_STARTUP = 1;
+	public static final int PRIORITY_OTHER = 2;
+
+	private static XcraftGate plugin;
+	private final List<Set<String>> queues = new ArrayList<Set<String>>();
+	private long tick = 0;
+	private long lastLoad = Long.MIN_VALUE / 2;
+	private long loaded = 0;
+	private long preloaded = 0;
+	private long loadTime = 0;
+
+	public LoadWorld(XcraftGate instance) {
+		plugin = instance;
+
+		for (int i = PRIORITY_GATE; i <= PRIORITY_OTHER; i++) {
+			queues.add(new LinkedHashSet<String>());
+		}
+	}
+
+	/*
+	 * Queues a world, or moves it up if it's queued with a lower priority.
+	 */
+	public void add(String worldName, int priority) {
+		for (int i = 0; i < queues.size(); i++) {
+			if (queues.get(i).contains(worldName)) {
+				if (i <= priority) return;
+				queues.get(i).remove(worldName);
+			}
+		}
+
+		queues.get(priority).add(worldName);
+	}
+
+	/*
+	 * Queues every world that should be loaded on startup (all of them, or
+	 * only sticky ones with dynworld), sticky ones and those gates in the
+	 * main world lead to first.
+	 */
+	public void addAll() {
+		Set<String> linked = new LinkedHashSet<String>();
+		String mainWorld = plugin.getServerProperty("level-name", "world");
+
+		for (DataGate thisGate : plugin.getGates().getByWorld(mainWorld)) {
+			String worldName = thisGate.getTargetWorldName();
+			if (worldName != null) linked.add(worldName);
+		}
+
+		for (DataWorld thisWorld : plugin.getWorlds()) {
+			if (thisWorld.isLoaded() || (plugin.config.getBoolean("dynworld.enabled", false) && !thisWorld.isSticky())) continue;
+
+			if (thisWorld.isSticky() || linked.contains(thisWorld.getName())) {
+				add(thisWorld.getName(), PRIORITY_STARTUP);
+			} else {
+				add(thisWorld.getName(), PRIORITY_OTHER);
+			}
+		}
+	}
+
+	/*
+	 * Returns true if the given world can be entered right away, otherwise
+	 * puts it at the front of the queue.
+	 */
+	public boolean isReady(String worldName) {
+		DataWorld world = worldName != null ? plugin.getWorlds().get(worldName) : null;
+
+		// unknown worlds are reported by the teleport itself
+		if (world == null || world.isLoaded()) return true;
+
+		add(world.getName(), PRIORITY_GATE);
+		return false;
+	}
+
+	/*
+	 * Position in the queue counting from 1, or 0 if not queued.
+	 */
+	public int getPosition(String worldName) {
+		int position = 0;
+
+		for (Set<String> thisQueue : queues) {
+			for (String queued : thisQueue) {
+				position++;
+				if (queued.equals(worldName)) return position;
+			}
+		}
+
+		return 0;
+	}
+
+	@Override
+	public void run() {
+		tick++;
+
+		int radius = plugin.config.getInt("dynworld.preloadRadius", 16);
+		if (radius > 0 && tick % Math.max(1, plugin.config.getInt("dynworld.preloadInterval", 20)) == 0) {
+			for (Player thisPlayer : plugin.getServerWorlds().getOnlinePlayers()) {
+				scan(thisPlayer.getLocation(), radius);
+			}
+		}
+
+		if (tick - lastLoad < plugin.config.getInt("dynworld.loadInterval", 20)) return;
+
+		for (int i = 0; i < queues.size(); i++) {
+			Iterator<String> it = queues.get(i).iterator();
+			if (!it.hasNext()) continue;
+
+			DataWorld world = plugin.getWorlds().get(it.next());
+			it.remove();
+
+			// a template being copied is dropped, the next use queues it again
+			if (world != null && !world.isLoaded() && !plugin.getClones().isTemplate(world.getName())) {
+				long start = System.nanoTime();
+				world.load();
+				loadTime += System.nanoTime() - start;
+				lastLoad = tick;
+				loaded++;
+				if (i == PRIORITY_GATE) preloaded++;
+
+				plugin.log.info(plugin.getNameBrackets() + "loaded " + world.getName() + " in " + ((System.nanoTime() - start) / 1000000) + " ms, "
+						+ size() + " worlds left to load");
+			}
+
+			return;
+		}
+	}
+
+	private void scan(Location location, int radius) {
+		for (DataGate thisGate : plugin.getGates().getInRadius(location, radius)) {
+			// the target's world is what gets loaded here, not the target
+			String worldName = thisGate.getTargetWorldName();
+			if (worldName == null) continue;
+
+			DataWorld world = plugin.getWorlds().get(worldName);
+			if (world == null) continue;
+
+			if (world.isLoaded()) {
+				// don't let it go idle while someone is about to use it
+				world.touch();
+			} else {
+				add(world.getName(), PRIORITY_GATE);
+			}
+		}
+	}
+
+	public int size() {
+		int ret = 0;
+
+		for (Set<String> thisQueue : queues) {
+			ret += thisQueue.size();
+		}
+
+		return ret;
+	}
+
+	public long getLoaded() {
+		return loaded;
+	}
+
+	public long getPreloaded() {
+		return preloaded;
+	}
+
+	/*
+	 * Average milliseconds per world loaded so far.
+	 */
+	public long getLoadTime() {
+		return loaded > 0 ? loadTime / loaded / 1000000 : 0;
+	}
+}
@@ -0,0 +1,118 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+
+/*
+ * Keeps the chunks around busy gate destinations loaded, so a teleport
+ * to them doesn't wait for chunks to be read or generated. Each world has
+ * a budget of pinned chunks kept in least recently used order; a new pin
+ * only pushes out chunks that are used less, and a gate has to be used a
+ * few times before its chunks are pinned at all.
+ */
+public class PinDestination {
+	private static XcraftGate plugin;
+	private final Map<String, LinkedHashMap<Long, Long>> worlds = new HashMap<String, LinkedHashMap<Long, Long>>();
+	private long unloadsCancelled = 0;
+
+	public PinDestination(XcraftGate instance) {
+		plugin = instance;
+	}
+
+	private static long chunkKey(int chunkX, int chunkZ) {
+		return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+	}
+
+	/*
+	 * Counts a teleport to the given gate and pins the chunks around it
+	 * if it's used often enough.
+	 */
+	public void use(DataGate gate) {
+		long uses = gate.countUse();
+		int budget = plugin.config.getInt("gates.pinBudget", 64);
+
+		if (budget <= 0 || uses < plugin.config.getInt("gates.pinMinUses", 3)) return;
+
+		LinkedHashMap<Long, Long> pins = worlds.get(gate.getWorldName());
+		if (pins == null) {
+			pins = new LinkedHashMap<Long, Long>(16, 0.75f, true);
+			worlds.put(gate.getWorldName(), pins);
+		}
+
+		World world = plugin.getServerWorlds().getWorld(gate.getWorldName());
+		int radius = plugin.config.getInt("gates.pinRadius", 1);
+		int centerX = (int) Math.floor(gate.getX()) >> 4;
+		int centerZ = (int) Math.floor(gate.getZ()) >> 4;
+
+		for (int cx = centerX - radius; cx <= centerX + radius; cx++) {
+			for (int cz = centerZ - radius; cz <= centerZ + radius; cz++) {
+				long key = chunkKey(cx, cz);
+				Long score = pins.get(key);
+
+				if (score != null) {
+					if (score < uses) pins.put(key, uses);
+				} else if (pins.size() < budget || evict(world, pins, uses)) {
+					pins.put(key, uses);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Unpins the least recently used chunk that belongs to a gate used at
+	 * most as often. Returns false if there is none.
+	 */
+	private boolean evict(World world, LinkedHashMap<Long, Long> pins, long uses) {
+		Iterator<Map.Entry<Long, Long>> it = pins.entrySet().iterator();
+
+		while (it.hasNext()) {
+			Map.Entry<Long, Long> thisPin = it.next();
+			if (thisPin.getValue() > uses) continue;
+
+			it.remove();
+
+			if (world != null) {
+				// let the server have it back unless players are near
+				world.unloadChunkRequest((int) (thisPin.getKey() >> 32), (int) (long) thisPin.getKey(), true);
+			}
+
+			return true;
+		}
+
+		return false;
+	}
+
+	/*
+	 * Called when the server wants to unload a chunk, true keeps it.
+	 */
+	public boolean cancelUnload(Chunk chunk) {
+		Map<Long, Long> pins = worlds.get(chunk.getWorld().getName());
+		if (pins == null || !pins.containsKey(chunkKey(chunk.getX(), chunk.getZ()))) return false;
+
+		unloadsCancelled++;
+		return true;
+	}
+
+	public void clear(String worldName) {
+		worlds.remove(worldName);
+	}
+
+	public int size() {
+		int ret = 0;
+
+		for (Map<Long, Long> thisWorld : worlds.values()) {
+			ret += thisWorld.size();
+		}
+
+		return ret;
+	}
+
+	public long getUnloadsCancelled() {
+		return unloadsCancelled;
+	}
+}
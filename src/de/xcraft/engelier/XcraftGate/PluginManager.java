@@ -33,9 +33,19 @@ public class PluginManager implements Runnable {
 	public Method getEcoMethod() {
 		return ecoMethod;
 	}
-	
+
+	/*
+	 * Uses the given economy without asking Register, e.g. a stand-in on
+	 * the simulated server. A Register found later replaces it.
+	 */
+	public void setEcoMethod(Method method) {
+		ecoMethod = method;
+	}
+
 	private void checkPluginPermissions() {
 		Plugin permissionsCheck = pm.getPlugin("Permissions");
+		PermissionHandler previous = permissions;
+		
 		if (permissionsCheck != null && permissionsCheck.isEnabled()) {
 			permissions = ((Permissions) permissionsCheck).getHandler();
 			core.log.info(core.getNameBrackets() + "hooked into Permissions "
@@ -43,6 +53,8 @@ public class PluginManager implements Runnable {
 		} else {
 			permissions = null;
 		}
+		
+		if (permissions != previous) core.getPlayers().clearPermissions();
 	}
 	
 	private void checkPluginRegister() {
@@ -69,6 +81,7 @@ public class PluginManager implements Runnable {
 	public void checkDisabledPlugin(Plugin plugin) {
 		if (plugin.getDescription().getName().equals("Permissions")) {
 			permissions = null;
+			core.getPlayers().clearPermissions();
 			core.log.info(core.getNameBrackets() + "lost permissions plugin - falling back to SuperPerms");
 		}
 
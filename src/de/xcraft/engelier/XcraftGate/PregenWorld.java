@@ -0,0 +1,256 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.bukkit.World;
+import org.yaml.snakeyaml.Yaml;
+
+/*
+ * Generates the chunks of a world ahead of time, walking a square spiral
+ * out from 0/0, run once per tick for a limited number of milliseconds.
+ * Chunks loaded only for this are unloaded again once the spiral has
+ * moved a full ring past them (their neighbours have to exist for them
+ * to be populated). Progress is written to pregen.yml now and then, so a
+ * job carries on after a restart.
+ */
+public class PregenWorld implements Runnable {
+	private static XcraftGate plugin;
+	private final Map<String, Job> jobs = new LinkedHashMap<String, Job>();
+	private long tick = 0;
+	private boolean loaded = false;
+
+	public PregenWorld(XcraftGate instance) {
+		plugin = instance;
+	}
+
+	private File getFile() {
+		return new File(plugin.getDataFolder(), "pregen.yml");
+	}
+
+	/*
+	 * Starts, or restarts, generating the given radius in blocks.
+	 */
+	public void start(String worldName, int radius) {
+		jobs.put(worldName, new Job(worldName, (radius + 15) >> 4, 0));
+		save();
+	}
+
+	public boolean stop(String worldName) {
+		boolean ret = jobs.remove(worldName) != null;
+		save();
+		return ret;
+	}
+
+	public boolean isRunning(String worldName) {
+		return jobs.containsKey(worldName);
+	}
+
+	public String getStatus(String worldName) {
+		Job job = jobs.get(worldName);
+		if (job == null) return null;
+
+		long total = job.getTotal();
+		double seconds = (System.currentTimeMillis() - job.started) / 1000.0;
+		double rate = seconds > 0 ? (job.step - job.startStep) / seconds : 0;
+
+		return job.step + "/" + total + " chunks (" + (job.step * 100 / total) + "%), "
+				+ String.format("%.1f", rate) + " chunks/s, "
+				+ (rate > 0 ? "ETA " + ((long) ((total - job.step) / rate) / 60) + " min" : "ETA unknown")
+				+ (plugin.getServerWorlds().getWorld(worldName) == null ? ", waiting for the world to load" : "");
+	}
+
+	public int size() {
+		return jobs.size();
+	}
+
+	@SuppressWarnings("unchecked")
+	public void load() {
+		loaded = true;
+		if (!getFile().exists()) return;
+
+		try {
+			FileInputStream in = new FileInputStream(getFile());
+			Map<String, Object> data;
+
+			try {
+				data = (Map<String, Object>) new Yaml().load(in);
+			} finally {
+				in.close();
+			}
+
+			if (data == null) return;
+
+			for (Map.Entry<String, Object> thisJob : data.entrySet()) {
+				Map<String, Object> values = (Map<String, Object>) thisJob.getValue();
+				jobs.put(thisJob.getKey(), new Job(thisJob.getKey(), ((Number) values.get("radius")).intValue(), ((Number) values.get("step")).longValue()));
+				plugin.getLoads().add(thisJob.getKey(), LoadWorld.PRIORITY_OTHER);
+				plugin.log.info(plugin.getNameBrackets() + "resuming pregeneration of " + thisJob.getKey());
+			}
+		} catch (Exception ex) {
+			plugin.log.warning(plugin.getNameBrackets() + "error reading " + getFile() + ", pregeneration not resumed");
+			ex.printStackTrace();
+		}
+	}
+
+	/*
+	 * Writes the checkpoint on shutdown, unless it was never read.
+	 */
+	public void close() {
+		if (loaded) save();
+	}
+
+	public void save() {
+		Map<String, Object> data = new HashMap<String, Object>();
+
+		for (Job thisJob : jobs.values()) {
+			Map<String, Object> values = new HashMap<String, Object>();
+			values.put("radius", thisJob.radius);
+			values.put("step", thisJob.step);
+			data.put(thisJob.worldName, values);
+		}
+
+		try {
+			OutputStream out = new FileOutputStream(getFile());
+			try {
+				StoreFiles.dump(data, out);
+			} finally {
+				out.close();
+			}
+		} catch (IOException ex) {
+			plugin.log.warning(plugin.getNameBrackets() + "error writing " + getFile());
+			ex.printStackTrace();
+		}
+	}
+
+	@Override
+	public void run() {
+		tick++;
+
+		if (jobs.isEmpty()) return;
+
+		long start = System.nanoTime();
+		long budget = plugin.config.getInt("dynworld.pregenBudget", 10) * 1000000L;
+		// 0 would mean every tick, not a division by zero
+		int checkpoint = Math.max(1, plugin.config.getInt("dynworld.pregenCheckpoint", 600));
+
+		Job working = null;
+		World workingWorld = null;
+
+		for (Job thisJob : jobs.values()) {
+			World world = plugin.getServerWorlds().getWorld(thisJob.worldName);
+
+			if (world == null) {
+				// unloaded while waiting for its turn, LoadWorld ignores worlds already queued
+				plugin.getLoads().add(thisJob.worldName, LoadWorld.PRIORITY_OTHER);
+				continue;
+			}
+
+			// every waiting job keeps its world from going inactive
+			DataWorld dataWorld = plugin.getWorlds().get(world);
+			if (dataWorld != null) dataWorld.touch();
+
+			// the first loaded job gets the whole budget
+			if (working == null) {
+				working = thisJob;
+				workingWorld = world;
+			}
+		}
+
+		if (working != null) {
+			while (!working.isDone() && System.nanoTime() - start < budget) {
+				working.next(workingWorld);
+			}
+
+			if (working.isDone()) {
+				working.finish(workingWorld);
+				jobs.remove(working.worldName);
+				plugin.log.info(plugin.getNameBrackets() + "finished pregenerating " + working.worldName + ", " + working.getTotal() + " chunks");
+				save();
+			}
+		}
+
+		if (tick % checkpoint == 0) {
+			save();
+
+			for (String worldName : jobs.keySet()) {
+				plugin.log.info(plugin.getNameBrackets() + "pregenerating " + worldName + ": " + getStatus(worldName));
+			}
+		}
+	}
+
+	private static class Job {
+		private final String worldName;
+		private final int radius;
+		private final long startStep;
+		private final long started = System.currentTimeMillis();
+		private final LinkedList<long[]> generated = new LinkedList<long[]>();
+		private long step = 0;
+
+		// position on the spiral
+		private int x = 0, z = 0, dx = 1, dz = 0;
+		private int legLength = 1, legDone = 0, legs = 0;
+
+		public Job(String worldName, int radius, long step) {
+			this.worldName = worldName;
+			this.radius = radius;
+
+			// replaying the walk is cheap compared to generating a single chunk
+			while (this.step < step) advance();
+			this.startStep = step;
+		}
+
+		public long getTotal() {
+			return (long) (2 * radius + 1) * (2 * radius + 1);
+		}
+
+		public boolean isDone() {
+			return step >= getTotal();
+		}
+
+		public void next(World world) {
+			if (!world.isChunkLoaded(x, z)) {
+				world.loadChunk(x, z, true);
+				generated.add(new long[] { x, z });
+			}
+
+			// a full ring behind is safe to let go
+			int ring = Math.max(Math.abs(x), Math.abs(z));
+			while (generated.size() > 8 * ring + 16) {
+				long[] old = generated.removeFirst();
+				world.unloadChunkRequest((int) old[0], (int) old[1], true);
+			}
+
+			advance();
+		}
+
+		public void finish(World world) {
+			for (long[] old : generated) {
+				world.unloadChunkRequest((int) old[0], (int) old[1], true);
+			}
+			generated.clear();
+		}
+
+		private void advance() {
+			step++;
+			x += dx;
+			z += dz;
+
+			if (++legDone == legLength) {
+				legDone = 0;
+				int turn = dx;
+				dx = -dz;
+				dz = turn;
+
+				if (++legs % 2 == 0) legLength++;
+			}
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.bukkit.World;
+
+/*
+ * Resends chunks to clients after teleports, run once per tick. Requests
+ * for a chunk that is already queued or was sent within the last few
+ * ticks are dropped, and only a limited number of chunks are sent per
+ * tick; the rest waits for the next one.
+ */
+public class RefreshChunk implements Runnable {
+	private static XcraftGate plugin;
+	private final Set<Request> queue = new LinkedHashSet<Request>();
+	private final Map<Request, Long> sent = new HashMap<Request, Long>();
+	private long tick = 0;
+	private long refreshed = 0;
+	private long coalesced = 0;
+
+	public RefreshChunk(XcraftGate instance) {
+		plugin = instance;
+	}
+
+	public void request(World world, int chunkX, int chunkZ) {
+		Request request = new Request(world.getName(), chunkX, chunkZ);
+		Long sentAt = sent.get(request);
+
+		if ((sentAt != null && tick - sentAt < plugin.config.getInt("gates.refreshCooldown", 10)) || !queue.add(request)) {
+			coalesced++;
+		}
+	}
+
+	@Override
+	public void run() {
+		tick++;
+
+		int budget = plugin.config.getInt("gates.refreshPerTick", 8);
+		Iterator<Request> it = queue.iterator();
+
+		while (budget > 0 && it.hasNext()) {
+			Request request = it.next();
+			it.remove();
+
+			World world = plugin.getServerWorlds().getWorld(request.worldName);
+			if (world == null || !world.isChunkLoaded(request.x, request.z)) continue;
+
+			world.refreshChunk(request.x, request.z);
+			sent.put(request, tick);
+			refreshed++;
+			budget--;
+		}
+
+		if (tick % 100 == 0) {
+			int cooldown = plugin.config.getInt("gates.refreshCooldown", 10);
+			Iterator<Long> sentIt = sent.values().iterator();
+
+			while (sentIt.hasNext()) {
+				if (tick - sentIt.next() >= cooldown) sentIt.remove();
+			}
+		}
+	}
+
+	public int size() {
+		return queue.size();
+	}
+
+	public long getRefreshed() {
+		return refreshed;
+	}
+
+	public long getCoalesced() {
+		return coalesced;
+	}
+
+	private static class Request {
+		private final String worldName;
+		private final int x;
+		private final int z;
+
+		public Request(String worldName, int x, int z) {
+			this.worldName = worldName;
+			this.x = x;
+			this.z = z;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Request)) return false;
+
+			Request request = (Request) other;
+			return x == request.x && z == request.z && worldName.equals(request.worldName);
+		}
+
+		@Override
+		public int hashCode() {
+			return (x * 31 + z) * 31 + worldName.hashCode();
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.util.List;
+
+import org.bukkit.World;
+import org.bukkit.WorldCreator;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitScheduler;
+
+/*
+ * Everything the plugin asks the server about worlds and players, and the
+ * scheduler it runs its tasks on, goes through here, so it can run
+ * against something other than a live CraftBukkit, see
+ * XcraftGate.setServerWorlds(). ServerWorldsBukkit is the real thing.
+ * Registering listeners and permissions still goes to getServer().
+ */
+public interface ServerWorlds {
+	/*
+	 * The loaded world of that name, or null.
+	 */
+	public World getWorld(String worldName);
+
+	/*
+	 * All loaded worlds.
+	 */
+	public List<World> getWorlds();
+
+	/*
+	 * Loads, or creates and loads, the world described.
+	 */
+	public World createWorld(WorldCreator creator);
+
+	public boolean unloadWorld(World world, boolean save);
+
+	public Player[] getOnlinePlayers();
+
+	public BukkitScheduler getScheduler();
+}
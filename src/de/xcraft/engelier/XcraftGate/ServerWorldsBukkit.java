@@ -0,0 +1,47 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.util.List;
+
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.WorldCreator;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitScheduler;
+
+public class ServerWorldsBukkit implements ServerWorlds {
+	private final Server server;
+
+	public ServerWorldsBukkit(Server server) {
+		this.server = server;
+	}
+
+	@Override
+	public World getWorld(String worldName) {
+		return server.getWorld(worldName);
+	}
+
+	@Override
+	public List<World> getWorlds() {
+		return server.getWorlds();
+	}
+
+	@Override
+	public World createWorld(WorldCreator creator) {
+		return creator.createWorld();
+	}
+
+	@Override
+	public boolean unloadWorld(World world, boolean save) {
+		return server.unloadWorld(world, save);
+	}
+
+	@Override
+	public Player[] getOnlinePlayers() {
+		return server.getOnlinePlayers();
+	}
+
+	@Override
+	public BukkitScheduler getScheduler() {
+		return server.getScheduler();
+	}
+}
@@ -1,226 +1,775 @@
 package de.xcraft.engelier.XcraftGate;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.PrintStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.bukkit.Location;
 import org.bukkit.World;
-import org.bukkit.permissions.Permission;
-import org.bukkit.permissions.PermissionDefault;
-import org.bukkit.plugin.PluginManager;
-import org.yaml.snakeyaml.Yaml;
 
+/*
+ * Gates are stored per world (one file or one group of rows each, see
+ * Store) and only read when their world loads or one of them is asked
+ * for by name. The directory knows the world of every gate, so names,
+ * links and permissions work without reading the other worlds.
+ */
 public class SetGate implements Iterable<DataGate> {
 	private static XcraftGate plugin;
 	private Map<String, DataGate> gates = new HashMap<String, DataGate>();
-	private Map<String, String> gateLocations = new HashMap<String, String>();
-	
+	private Map<String, String> directory = new HashMap<String, String>();
+	private Set<String> loadedWorlds = new HashSet<String>();
+	private IndexGateBlock gateLocations = new IndexGateBlock();
+	private IndexGateVolume gateVolumes = new IndexGateVolume();
+	private IndexGateChunk gateChunks = new IndexGateChunk();
+	private SetPermission permissions;
+	private Store store = null;
+
 	public SetGate (XcraftGate plugin) {
 		SetGate.plugin = plugin;
+		permissions = new SetPermission(plugin);
+	}
+
+	private Store createStore(String format) {
+		if (format.equalsIgnoreCase("sql")) {
+			File database = new File(plugin.getDataFolder(), plugin.config.getString("storage.database", "xcraftgate.db"));
+			return new StoreSql(plugin, database, "gates", new SourceGates());
+		}
+		
+		return new FilesGates(new File(plugin.getDataFolder(), "gates"), format.equalsIgnoreCase("binary") ? ".dat" : ".yml",
+				new File(plugin.getDataFolder(), "gatedirectory.yml"), new SourceGates());
 	}
 	
-	@SuppressWarnings("unchecked")
+	/*
+	 * Returns false if the store is still empty.
+	 */
+	private boolean openStore() {
+		store = createStore(plugin.config.getString("storage.format", "yaml"));
+		
+		try {
+			return store.open();
+		} catch (IOException ex) {
+			plugin.log.severe(plugin.getNameBrackets() + ex.getMessage() + ", using yaml files for gates");
+			store = createStore("yaml");
+			
+			try {
+				return store.open();
+			} catch (IOException ex2) {
+				return false;
+			}
+		}
+	}
+
 	public void load() {
-		File configFile = plugin.getConfigFile("gates.yml");
+		boolean migrated = false;
 		
-		int counter = 0;
+		permissions.begin();
 
-		try {
-			Yaml yaml = new Yaml();
-			Map<String, Object> gatesYaml = (Map<String, Object>) yaml.load(new FileInputStream(configFile));
+		if (store == null && !openStore()) {
+			migrated = migrate();
+		}
+		
+		if (!migrated) {
+			Map<String, String> stored = store.loadDirectory();
 			
-			for (Map.Entry<String, Object> thisGate : gatesYaml.entrySet()) {
-				String gateName = thisGate.getKey();
-				Map<String, Object> gateData = (Map<String, Object>) thisGate.getValue();
-
-				DataGate newGate = new DataGate(plugin, gateName);
-				newGate.setLocation(
-						(String) gateData.get("world"),
-						(Double) gateData.get("locX"),
-						(Double) gateData.get("locY"),
-						(Double) gateData.get("locZ"),
-						((Double) gateData.get("locYaw")).floatValue(),
-						((Double) gateData.get("locP")).floatValue());
-
-				newGate.setToll((Double) gateData.get("toll"));
-				newGate.setDenySilent((Boolean) gateData.get("denysilent"));
-
-				add(newGate);
-				counter++;
+			if (stored == null) {
+				plugin.log.info(plugin.getNameBrackets() + "rebuilding gate directory");
+				loadAll();
+			} else {
+				directory.putAll(stored);
 			}
+		}
 
-			for (Map.Entry<String, Object> thisGate : gatesYaml.entrySet()) {
-				String gateName = thisGate.getKey();
-				Map<String, Object> gateData = (Map<String, Object>) thisGate.getValue();
-
-				if (gateData.get("target") != null) {
-					DataGate thisTarget = get((String) gateData.get("target"));
-					
-					if (thisTarget == null) {
-						plugin.log.warning(plugin.getNameBrackets() + "ignored invalid destination for gate " + gateName);
-					} else {
-						get(gateName).linkTo(thisTarget, false);
-					}
-				}
+		permissions.sync(directory.keySet());
+		permissions.end();
+
+		plugin.log.info(plugin.getNameBrackets() + "found " + directory.size() + " gates in " + new HashSet<String>(directory.values()).size() + " worlds");
+	}
+
+	/*
+	 * Fills an empty store from an older layout: gates.yml (or gates.dat)
+	 * from before gates were split by world, or the per-world files when
+	 * switching to sql. A single old file is kept as .bak afterwards.
+	 */
+	private boolean migrate() {
+		File folder = new File(plugin.getDataFolder(), "gates");
+		File legacy = new File(plugin.getDataFolder(), "gates.dat");
+		if (!legacy.exists()) legacy = new File(plugin.getDataFolder(), "gates.yml");
+
+		if (!(store instanceof StoreFiles) && folder.isDirectory()) {
+			plugin.log.info(plugin.getNameBrackets() + "copying gates from " + folder.getName() + "/ to " + store.getName());
+			
+			// the binary store falls back to .yml files, so it reads either
+			Store target = store;
+			store = createStore("binary");
+			
+			Map<String, String> stored = store.loadDirectory();
+			if (stored != null) directory.putAll(stored);
+			loadAll();
+			
+			store = target;
+			legacy = null;
+		} else if (legacy.exists()) {
+			plugin.log.info(plugin.getNameBrackets() + "moving " + legacy.getName() + " to " + store.getName());
+
+			Map<String, String> links = new HashMap<String, String>();
+			((FilesGates) createStore("yaml")).loadFile(legacy, new LoaderGates(null, links));
+			resolveLinks(links);
+		} else {
+			return false;
+		}
+
+		save();
+		store.flush();
+
+		if (legacy != null) {
+			legacy.renameTo(new File(legacy.getPath() + ".bak"));
+			new File(legacy.getPath() + ".journal").delete();
+		}
+		
+		return true;
+	}
+
+	/*
+	 * Reads the gates of one world, unless that happened before.
+	 */
+	public void loadWorld(String worldName) {
+		if (!loadedWorlds.add(worldName)) return;
+
+		Map<String, String> links = new HashMap<String, String>();
+		permissions.begin();
+		store.load(worldName, new LoaderGates(worldName, links));
+		resolveLinks(links);
+		permissions.end();
+	}
+
+	public void loadAll() {
+		Set<String> worldNames = new HashSet<String>(directory.values());
+		worldNames.addAll(store.list());
+
+		for (String worldName : worldNames) {
+			loadWorld(worldName);
+		}
+	}
+
+	private void applyAll(Map<String, Object> data, Map<String, String> links) {
+		for (Map.Entry<String, Object> thisGate : data.entrySet()) {
+			applyData(null, thisGate.getKey(), thisGate.getValue(), links);
+		}
+	}
+
+	/*
+	 * Creates, updates in place or (for null data) removes the named gate.
+	 */
+	@SuppressWarnings("unchecked")
+	private void applyData(String worldName, String gateName, Object data, Map<String, String> links) {
+		if (data == null) {
+			DataGate gate = gates.get(gateName);
+
+			// the gate may have moved on to another world since
+			if (gate != null && gate.getWorldName().equals(worldName)) {
+				gates.remove(gateName);
+				unindex(gate);
+				directory.remove(gateName);
+				permissions.remove(gateName);
 			}
+			links.remove(gateName);
+			return;
+		}
+
+		applyGate(parse(gateName, (Map<String, Object>) data), links);
+	}
+
+	/*
+	 * Takes a freshly read gate, or copies it into the live one of the same
+	 * name. Updating in place keeps links from other gates to it intact; its
+	 * own link is only noted in links and resolved once all gates exist.
+	 */
+	private void applyGate(DataGate parsed, Map<String, String> links) {
+		String target = parsed.getTargetName();
+		DataGate gate = gates.get(parsed.getName());
 
-		} catch (Exception ex) {
-			ex.printStackTrace();
+		if (gate == null) {
+			gate = parsed;
+		} else {
+			unindex(gate);
+			setData(gate, parsed);
 		}
 
-		plugin.log.info(plugin.getNameBrackets() + "loaded " + counter + " gates");
+		gate.unlink();
+		add(gate);
+
+		if (target != null) {
+			links.put(gate.getName(), target);
+		} else {
+			links.remove(gate.getName());
+		}
 	}
 
-	public void save() {
-		File configFile = plugin.getConfigFile("gates.yml");
+	private DataGate parse(String gateName, Map<String, Object> gateData) {
+		DataGate gate = new DataGate(plugin, gateName);
 
-		Map<String, Object> toDump = new HashMap<String, Object>();
+		gate.setLocation(
+				(String) gateData.get("world"),
+				(Double) gateData.get("locX"),
+				(Double) gateData.get("locY"),
+				(Double) gateData.get("locZ"),
+				((Double) gateData.get("locYaw")).floatValue(),
+				((Double) gateData.get("locP")).floatValue());
 
-		for (DataGate thisGate : gates.values()) {
-			toDump.put(thisGate.getName(), thisGate.toMap());
+		gate.setToll((Double) gateData.get("toll"));
+		gate.setDenySilent((Boolean) gateData.get("denysilent"));
+		gate.setVolume(
+				gateData.get("sizeX") != null ? ((Number) gateData.get("sizeX")).intValue() : 0,
+				gateData.get("sizeY") != null ? ((Number) gateData.get("sizeY")).intValue() : 0,
+				gateData.get("sizeZ") != null ? ((Number) gateData.get("sizeZ")).intValue() : 0,
+				gateData.get("radius") != null ? ((Number) gateData.get("radius")).doubleValue() : 0);
+		gate.setTargetName((String) gateData.get("target"));
+
+		return gate;
+	}
+
+	private void setData(DataGate gate, DataGate other) {
+		gate.setLocation(other.getWorldName(), other.getX(), other.getY(), other.getZ(), other.getYaw(), other.getPitch());
+		gate.setToll(other.getToll());
+		gate.setDenySilent(other.getDenySilent());
+
+		if (other.getRadius() > 0) {
+			gate.setVolume(0, 0, 0, other.getRadius());
+		} else {
+			gate.setVolume(other.getSizeX(), other.getSizeY(), other.getSizeZ(), 0);
+		}
+	}
+	
+	private boolean sameData(DataGate gate, DataGate other) {
+		return gate.getWorldName().equals(other.getWorldName())
+				&& gate.getX() == other.getX() && gate.getY() == other.getY() && gate.getZ() == other.getZ()
+				&& gate.getYaw() == other.getYaw() && gate.getPitch() == other.getPitch()
+				&& gate.getToll() == other.getToll() && gate.getDenySilent() == other.getDenySilent()
+				&& gate.getSizeX() == other.getSizeX() && gate.getSizeY() == other.getSizeY() && gate.getSizeZ() == other.getSizeZ()
+				&& gate.getRadius() == other.getRadius();
+	}
+	
+	private void index(DataGate gate) {
+		gateChunks.add(gate);
+		if (plugin.getServerWorlds().getWorld(gate.getWorldName()) != null) indexLocation(gate);
+	}
+	
+	/*
+	 * Position lookups only cover gates of loaded worlds.
+	 */
+	private void indexLocation(DataGate gate) {
+		if (gate.hasVolume()) {
+			gateVolumes.add(gate);
+		} else {
+			gateLocations.put(gate);
 		}
+	}
+	
+	private void unindex(DataGate gate) {
+		gateLocations.remove(gate);
+		gateVolumes.remove(gate);
+		gateChunks.remove(gate);
+	}
 
-		Yaml yaml = new Yaml();
-		String dump = yaml.dump(toDump);
-		
-		try {
-			FileOutputStream fh = new FileOutputStream(configFile);
-			new PrintStream(fh).println(dump);
-			fh.flush();
-			fh.close();
-		} catch (Exception ex) {
-			ex.printStackTrace();
+	/*
+	 * Targets are only linked by name here, the gate object is looked up
+	 * when the link is first used, so the target's world isn't read yet.
+	 */
+	private void resolveLinks(Map<String, String> links) {
+		for (Map.Entry<String, String> thisLink : links.entrySet()) {
+			DataGate thisGate = gates.get(thisLink.getKey());
+
+			if (thisGate == null) continue;
+
+			if (!has(thisLink.getValue())) {
+				plugin.log.warning(plugin.getNameBrackets() + "ignored invalid destination for gate " + thisLink.getKey());
+			} else {
+				thisGate.setTargetName(thisLink.getValue());
+			}
 		}
 	}
 
-	public void reload() {
+	public void exportYaml(File file) {
+		loadAll();
+
+		final File target = file;
+		final Object snapshot = snapshot(null);
+
+		plugin.getServerWorlds().getScheduler().scheduleAsyncDelayedTask(plugin, new Runnable() {
+			public void run() {
+				try {
+					OutputStream out = new FileOutputStream(target);
+					try {
+						StoreFiles.dump(snapshot, out);
+					} finally {
+						out.close();
+					}
+					plugin.log.info(plugin.getNameBrackets() + "exported gates to " + target);
+				} catch (IOException ex) {
+					plugin.log.severe(plugin.getNameBrackets() + "error exporting gates to " + target);
+					ex.printStackTrace();
+				}
+			}
+		});
+	}
+
+	public void importYaml(File file) throws IOException {
+		final Map<String, Object> data = new HashMap<String, Object>();
+		Map<String, String> links = new HashMap<String, String>();
+
+		// read everything first, a broken file must not leave us without gates
+		StoreYamlReader.read(file, new LoadHandler(file, links) {
+			@Override
+			public void gate(String name, Map<String, Object> gateData) {
+				data.put(name, gateData);
+			}
+		});
+
+		// every world file is rewritten, so all of them have to be known
+		loadAll();
+
+		permissions.begin();
 		gates.clear();
+		directory.clear();
 		gateLocations.clear();
-		load();
-		
-		for (DataGate thisGate : gates.values()) {
-			if (plugin.getServer().getWorld(thisGate.getWorldName()) != null) {
-				gateLocations.put(Util.getLocationString(thisGate.getLocation()), thisGate.getName());
-			}
+		gateVolumes.clear();
+		gateChunks.clear();
+		applyAll(data, links);
+		resolveLinks(links);
+		permissions.sync(directory.keySet());
+		permissions.end();
+		save();
+	}
+
+	public void save() {
+		if (store == null) return;
+
+		for (String worldName : loadedWorlds) {
+			store.markDirty(worldName);
 		}
 	}
+
+	public void flush() {
+		if (store != null) store.flush();
+	}
 	
+	public void close() {
+		if (store != null) store.close();
+	}
+
+	public Store getStore() {
+		return store;
+	}
+
+	/*
+	 * Reads the stored gates of all worlds read so far into a staging area
+	 * and only touches live gates that were added, changed or removed.
+	 * Unchanged gates keep their objects, links and index entries, and all
+	 * changes are applied within this call on the main thread, so there is
+	 * no moment in which a gate that exists on both sides is missing.
+	 * Returns the number of gates that changed.
+	 */
+	public int reload() {
+		flush();
+
+		final Map<String, DataGate> staged = new HashMap<String, DataGate>();
+		final Map<String, String> stagedWorlds = new HashMap<String, String>();
+		final Set<String> rejected = new HashSet<String>();
+		Map<String, String> stagedDirectory = store.loadDirectory();
+		Set<String> worldNames = new HashSet<String>(loadedWorlds);
+
+		if (stagedDirectory == null) {
+			worldNames.addAll(store.list());
+		}
+
+		for (final String worldName : worldNames) {
+			store.load(worldName, new Store.ObjectLoader() {
+				@Override
+				public void record(String name, Map<String, Object> data) {
+					if (data != null) {
+						try {
+							object(name, parse(name, data));
+						} catch (RuntimeException ex) {
+							error(name, worldName, ex.toString());
+						}
+					} else if (worldName.equals(stagedWorlds.get(name))) {
+						staged.remove(name);
+						stagedWorlds.remove(name);
+					}
+				}
+
+				@Override
+				public void object(String name, Object record) {
+					staged.put(name, (DataGate) record);
+					stagedWorlds.put(name, worldName);
+					rejected.remove(name);
+				}
+
+				@Override
+				public void error(String name, String where, String reason) {
+					if (name != null) rejected.add(name);
+					plugin.log.warning(plugin.getNameBrackets() + "skipped " + (name != null ? "gate " + name : "entry")
+							+ (where != null ? " in " + where : "") + ": " + reason);
+				}
+			});
+		}
+
+		int added = 0, changed = 0, removed = 0;
+
+		permissions.begin();
+
+		for (DataGate thisGate : new ArrayList<DataGate>(gates.values())) {
+			// a gate that failed to parse keeps its live state
+			if (!staged.containsKey(thisGate.getName()) && !rejected.contains(thisGate.getName())) {
+				gates.remove(thisGate.getName());
+				unindex(thisGate);
+				removed++;
+			}
+		}
+
+		for (DataGate parsed : staged.values()) {
+			String target = parsed.getTargetName();
+			DataGate live = gates.get(parsed.getName());
+
+			if (live == null) {
+				live = parsed;
+				gates.put(live.getName(), live);
+				index(live);
+				added++;
+			} else if (!sameData(live, parsed)) {
+				unindex(live);
+				setData(live, parsed);
+				index(live);
+				changed++;
+			}
+
+			String liveTarget = live.getTargetName();
+			if (target == null ? liveTarget != null : !target.equals(liveTarget)) {
+				live.setTargetName(target);
+				if (live != parsed) changed++;
+			}
+		}
+
+		// the directory file was just written from the live state, so it
+		// only counts for worlds that weren't read again
+		directory.clear();
+		if (stagedDirectory != null) {
+			for (Map.Entry<String, String> thisEntry : stagedDirectory.entrySet()) {
+				if (!worldNames.contains(thisEntry.getValue())) directory.put(thisEntry.getKey(), thisEntry.getValue());
+			}
+		}
+		directory.putAll(stagedWorlds);
+
+		for (String gateName : rejected) {
+			DataGate live = gates.get(gateName);
+			if (live != null) directory.put(gateName, live.getWorldName());
+		}
+
+		loadedWorlds.addAll(worldNames);
+
+		permissions.sync(directory.keySet());
+		permissions.end();
+
+		plugin.log.info(plugin.getNameBrackets() + "reloaded gates: " + added + " added, " + changed + " changed, " + removed + " removed");
+		return added + changed + removed;
+	}
+
 	public void add(DataGate gate) {
 		add(gate, false);
 	}
-	
+
 	public void add(DataGate gate, boolean save) {
+		// never write a world file before the gates already in it are known
+		loadWorld(gate.getWorldName());
+
 		gates.put(gate.getName(), gate);
-		if (gate.getLocation() != null) {
-			gateLocations.put(Util.getLocationString(gate.getLocation()), gate.getName());
-		}
-		
-		resetSuperPermission(gate.getName());
-		if (save) save();
+		index(gate);
+		directory.put(gate.getName(), gate.getWorldName());
+
+		permissions.add(gate.getName());
+		if (save) update(gate);
 	}
 
 	public void remove(String gateName) {
 		remove(get(gateName));
 	}
-	
+
 	public void remove(DataGate gate) {
 		gates.remove(gate.getName());
-		
-		if (plugin.getWorlds().get(gate.getWorldName()).isLoaded()) {
-			gateLocations.remove(Util.getLocationString(gate.getLocation()));
+		unindex(gate);
+
+		if (gate.getWorldName().equals(directory.get(gate.getName()))) {
+			directory.remove(gate.getName());
+			permissions.remove(gate.getName());
 		}
-		
-		save();
+
+		store.remove(gate.getWorldName(), gate.getName());
 	}
-	
+
+	/*
+	 * Moves a gate in place. Its name stays, so the permissions are left
+	 * alone.
+	 */
+	public void move(DataGate gate, Location loc) {
+		String oldWorld = gate.getWorldName();
+		unindex(gate);
+		gate.setLocation(loc);
+
+		if (!oldWorld.equals(gate.getWorldName())) {
+			store.remove(oldWorld, gate.getName());
+			loadWorld(gate.getWorldName());
+			directory.put(gate.getName(), gate.getWorldName());
+		}
+
+		index(gate);
+		update(gate);
+	}
+
+	public void setVolume(DataGate gate, int sizeX, int sizeY, int sizeZ, double radius) {
+		unindex(gate);
+		gate.setVolume(sizeX, sizeY, sizeZ, radius);
+		index(gate);
+		update(gate);
+	}
+
+	private Map<String, Object> snapshot(String worldName) {
+		Map<String, Object> toDump = new HashMap<String, Object>();
+
+		for (DataGate thisGate : (worldName != null ? gateChunks.getWorld(worldName) : gates.values())) {
+			toDump.put(thisGate.getName(), thisGate.toMap());
+		}
+
+		return toDump;
+	}
+
+	public void update(DataGate gate) {
+		if (store != null) store.put(gate.getWorldName(), gate.getName(), gate.toMap());
+	}
+
 	public boolean has(String name) {
-		return gates.containsKey(name);
+		return directory.containsKey(name);
 	}
-	
+
+	/*
+	 * The world a gate is in, from the directory, without loading it.
+	 */
+	public String getWorldName(String gateName) {
+		return directory.get(gateName);
+	}
+
 	public DataGate get(String gateName) {
-		return gates.get(gateName);
+		DataGate ret = gates.get(gateName);
+
+		if (ret == null && directory.containsKey(gateName)) {
+			loadWorld(directory.get(gateName));
+			ret = gates.get(gateName);
+		}
+
+		return ret;
 	}
-	
+
+	/*
+	 * Single block gates first, those are a plain lookup.
+	 */
 	public DataGate getByLocation(Location loc) {
-		String gateName = gateLocations.get(Util.getLocationString(loc));
-		return get(gateName);
-	}
-	
-	public void resetSuperPermission(String gatePerm) {
-		PluginManager pm = plugin.getServer().getPluginManager();
-		gatePerm = "XcraftGate.use." + gatePerm;
-		
-		if (pm.getPermission(gatePerm) == null) {
-			pm.addPermission(new Permission(gatePerm, PermissionDefault.TRUE));
-		}
-		
-		Permission superPerm = pm.getPermission("XcraftGate.use.*");
-		if (superPerm != null) {
-			if (superPerm.getChildren().containsKey(gatePerm)) return;
-			pm.removePermission("xcraftgate.use.*");	
-		}
+		DataGate ret = gateLocations.get(loc);
 
-		String descr = "Permission to use all gates";
-		
-		Map<String, Boolean> children = new HashMap<String, Boolean>();
-		
-		for (String name : gates.keySet()) {
-			children.put("XcraftGate.use." + name, true);
+		if (ret == null && gateVolumes.size() > 0) {
+			ret = gateVolumes.get(loc);
 		}
-		
-		superPerm = new Permission("XcraftGate.use.*", descr, (superPerm != null ? superPerm.getDefault() : PermissionDefault.TRUE), children);
-		pm.addPermission(superPerm);
+
+		return ret;
 	}
-	
+
+	public List<DataGate> getInRadius(Location loc, double radius) {
+		return gateChunks.getInRadius(loc.getWorld().getName(), loc.getX(), loc.getY(), loc.getZ(), radius);
+	}
+
+	public List<DataGate> getNearest(Location loc, int count) {
+		return gateChunks.getNearest(loc.getWorld().getName(), loc.getX(), loc.getY(), loc.getZ(), count);
+	}
+
+	public List<DataGate> getByWorld(String worldName) {
+		loadWorld(worldName);
+		return gateChunks.getWorld(worldName);
+	}
+
 	public void onWorldLoad(World world) {
 		onWorldLoad(plugin.getWorlds().get(world));
 	}
-	
+
 	public void onWorldLoad(DataWorld world) {
 		int gateCounter = 0;
-		
-		for (DataGate thisGate : gates.values()) {
-			if (thisGate.getWorldName().equalsIgnoreCase(world.getName())) {
-				gateLocations.put(Util.getLocationString(thisGate.getLocation()), thisGate.getName());
-				gateCounter++;
-			}
+
+		loadWorld(world.getName());
+
+		for (DataGate thisGate : gateChunks.getWorld(world.getName())) {
+			// read while the world was not loaded, or just now
+			gateLocations.remove(thisGate);
+			gateVolumes.remove(thisGate);
+			indexLocation(thisGate);
+			gateCounter++;
 		}
-		
+
 		plugin.log.info(plugin.getNameBrackets() + "loaded " + gateCounter + " gates for world '" + world.getName() + "'");
 	}
-	
+
 	public void onWorldUnload(World world) {
-		plugin.getWorlds().get(world);
+		onWorldUnload(plugin.getWorlds().get(world));
 	}
-	
+
+	/*
+	 * Drops the gates of the world from memory, they are read again when
+	 * the world loads or one of them is asked for.
+	 */
 	public void onWorldUnload(DataWorld world) {
+		if (!loadedWorlds.remove(world.getName())) return;
+
+		// pending writes of the world take their snapshot now, while its gates are still here
+		if (store != null) store.run();
+
+		Set<String> dropped = new HashSet<String>();
+
+		for (DataGate thisGate : gateChunks.getWorld(world.getName())) {
+			gates.remove(thisGate.getName());
+			unindex(thisGate);
+			dropped.add(thisGate.getName());
+		}
+
+		// links to the dropped objects go back to being looked up by name
 		for (DataGate thisGate : gates.values()) {
-			if (thisGate.getWorldName().equalsIgnoreCase(world.getName())) {
-				gateLocations.remove(Util.getLocationString(thisGate.getLocation()));
+			if (dropped.contains(thisGate.getTargetName())) {
+				thisGate.setTargetName(thisGate.getTargetName());
 			}
-		}		
+		}
 	}
-	
+
 	public int size() {
+		return directory.size();
+	}
+
+	public int sizeLoaded() {
 		return gates.size();
 	}
-	
+
 	public Object[] toArray() {
 		return gates.values().toArray();
 	}
-	
+
 	public Object[] namesArray() {
-		return gates.keySet().toArray();
+		return directory.keySet().toArray();
 	}
-	
+
+	/*
+	 * Only walks gates that have been read so far, see loadAll().
+	 */
 	@Override
 	public Iterator<DataGate> iterator() {
 		return gates.values().iterator();
 	}
 
+	private class LoadHandler implements StoreYamlReader.Handler {
+		private final File file;
+		private final Map<String, String> links;
+
+		public LoadHandler(File file, Map<String, String> links) {
+			this.file = file;
+			this.links = links;
+		}
+
+		@Override
+		public void gate(String name, Map<String, Object> data) {
+			applyData(null, name, data, links);
+		}
+
+		@Override
+		public void error(String name, int line, String reason) {
+			plugin.log.warning(plugin.getNameBrackets() + "skipped " + (name != null ? "gate " + name : "entry")
+					+ " in " + file.getName() + " at line " + line + ": " + reason);
+		}
+	}
+	
+	private class LoaderGates implements Store.ObjectLoader {
+		private final String worldName;
+		private final Map<String, String> links;
+		
+		public LoaderGates(String worldName, Map<String, String> links) {
+			this.worldName = worldName;
+			this.links = links;
+		}
+
+		@Override
+		public void record(String name, Map<String, Object> data) {
+			try {
+				applyData(worldName, name, data, links);
+			} catch (RuntimeException ex) {
+				error(name, worldName, ex.toString());
+			}
+		}
+
+		@Override
+		public void object(String name, Object record) {
+			applyGate((DataGate) record, links);
+		}
+
+		@Override
+		public void error(String name, String where, String reason) {
+			plugin.log.warning(plugin.getNameBrackets() + "skipped " + (name != null ? "gate " + name : "entry")
+					+ (where != null ? " in " + where : "") + ": " + reason);
+		}
+	}
+	
+	private class SourceGates implements Store.Source {
+		@Override
+		public Map<String, Object> snapshot(String shard) {
+			return plugin.getGates().snapshot(shard);
+		}
+
+		@Override
+		public Map<String, String> directory() {
+			return new HashMap<String, String>(plugin.getGates().directory);
+		}
+	}
+
+	/*
+	 * Streams the YAML files instead of reading them as a whole.
+	 */
+	private static class FilesGates extends StoreFiles {
+		public FilesGates(File folder, String extension, File directoryFile, Store.Source source) {
+			super(plugin, folder, extension, directoryFile, source);
+		}
+
+		@Override
+		protected void read(final File file, final Store.Loader loader) {
+			if (!file.getName().endsWith(".yml")) {
+				super.read(file, loader);
+				return;
+			}
+			
+			try {
+				StoreYamlReader.read(file, new StoreYamlReader.Handler() {
+					@Override
+					public void gate(String name, Map<String, Object> data) {
+						loader.record(name, data);
+					}
+
+					@Override
+					public void error(String name, int line, String reason) {
+						loader.error(name, file.getName() + " at line " + line, reason);
+					}
+				});
+			} catch (IOException ex) {
+				loader.error(null, file.getName(), ex.toString());
+			}
+		}
+	}
+
 }
@@ -0,0 +1,123 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionDefault;
+import org.bukkit.plugin.PluginManager;
+
+/*
+ * The XcraftGate.use.<gate> nodes and the XcraftGate.use.* wildcard over
+ * them. Single gates are added to or removed from the wildcard's children
+ * in place; between begin() and end() changes are only collected, so a
+ * load of many gates recalculates the wildcard once instead of per gate.
+ */
+public class SetPermission {
+	private static final String PREFIX = "XcraftGate.use.";
+	private static final String WILDCARD = PREFIX + "*";
+
+	private static XcraftGate plugin;
+	private Set<String> registered = new HashSet<String>();
+	private Set<String> added = new HashSet<String>();
+	private Set<String> removed = new HashSet<String>();
+	private int batches = 0;
+
+	public SetPermission(XcraftGate plugin) {
+		SetPermission.plugin = plugin;
+	}
+
+	public void begin() {
+		batches++;
+	}
+
+	public void end() {
+		if (batches > 0 && --batches == 0) apply();
+	}
+
+	public void add(String gateName) {
+		if (!registered.add(gateName)) return;
+
+		removed.remove(gateName);
+		added.add(gateName);
+		if (batches == 0) apply();
+	}
+
+	public void remove(String gateName) {
+		if (!registered.remove(gateName)) return;
+
+		// not registered with the server yet, nothing to take back
+		if (!added.remove(gateName)) removed.add(gateName);
+		if (batches == 0) apply();
+	}
+
+	/*
+	 * Makes the registered nodes match the given gate names.
+	 */
+	public void sync(Collection<String> gateNames) {
+		begin();
+
+		for (String gateName : new HashSet<String>(registered)) {
+			if (!gateNames.contains(gateName)) remove(gateName);
+		}
+
+		for (String gateName : gateNames) {
+			add(gateName);
+		}
+
+		end();
+	}
+
+	public int size() {
+		return registered.size();
+	}
+
+	private void apply() {
+		if (added.isEmpty() && removed.isEmpty()) return;
+
+		PluginManager pm = plugin.getServer().getPluginManager();
+
+		for (String gateName : removed) {
+			pm.removePermission(PREFIX + gateName);
+		}
+
+		for (String gateName : added) {
+			if (pm.getPermission(PREFIX + gateName) == null) {
+				pm.addPermission(new Permission(PREFIX + gateName, PermissionDefault.TRUE));
+			}
+		}
+
+		Permission superPerm = pm.getPermission(WILDCARD);
+
+		if (superPerm == null) {
+			Map<String, Boolean> children = new HashMap<String, Boolean>();
+
+			for (String gateName : registered) {
+				children.put(PREFIX + gateName, true);
+			}
+
+			pm.addPermission(new Permission(WILDCARD, "Permission to use all gates", PermissionDefault.TRUE, children));
+		} else {
+			Map<String, Boolean> children = superPerm.getChildren();
+
+			for (String gateName : removed) {
+				children.remove(PREFIX + gateName);
+			}
+
+			for (String gateName : added) {
+				children.put(PREFIX + gateName, true);
+			}
+
+			superPerm.recalculatePermissibles();
+		}
+
+		added.clear();
+		removed.clear();
+		
+		// cached decisions may refer to nodes that did not exist yet
+		plugin.getPlayers().clearPermissions();
+	}
+}
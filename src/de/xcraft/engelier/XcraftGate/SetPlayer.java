@@ -0,0 +1,108 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import com.nijiko.permissions.PermissionHandler;
+
+public class SetPlayer {
+	private static XcraftGate plugin;
+	private Map<UUID, DataPlayer> players = new HashMap<UUID, DataPlayer>();
+	
+	private long moveEvents = 0;
+	private long moveEventsSkipped = 0;
+	private long permissionHits = 0;
+	private long permissionMisses = 0;
+
+	public SetPlayer (XcraftGate plugin) {
+		SetPlayer.plugin = plugin;
+	}
+	
+	public DataPlayer get(Player player) {
+		DataPlayer ret = players.get(player.getUniqueId());
+		
+		if (ret == null) {
+			ret = new DataPlayer();
+			players.put(player.getUniqueId(), ret);
+		}
+		
+		return ret;
+	}
+	
+	public void remove(Player player) {
+		players.remove(player.getUniqueId());
+	}
+	
+	public boolean checkBlockChanged(Player player, Location to) {
+		moveEvents++;
+		
+		if (get(player).moveTo(to)) {
+			return true;
+		}
+		
+		moveEventsSkipped++;
+		return false;
+	}
+	
+	/*
+	 * Asks Permissions (or SuperPerms) once per node and player, then
+	 * answers from the player's cache until it times out or is cleared.
+	 */
+	public boolean hasPermission(Player player, String node) {
+		DataPlayer data = get(player);
+		long now = System.currentTimeMillis();
+		Boolean ret = data.getPermission(node, now);
+		
+		if (ret != null) {
+			permissionHits++;
+			return ret;
+		}
+		
+		permissionMisses++;
+		
+		PermissionHandler handler = plugin.getPluginManager().getPermissions();
+		boolean allowed = handler != null ? handler.has(player, node) : player.hasPermission(node);
+		
+		long timeout = plugin.config.getInt("permissions.cacheTimeout", 60) * 1000L;
+		if (timeout > 0) data.setPermission(node, allowed, now, timeout);
+		
+		return allowed;
+	}
+	
+	public void clearPermissions() {
+		for (DataPlayer thisPlayer : players.values()) {
+			thisPlayer.clearPermissions();
+		}
+	}
+	
+	public long getPermissionHits() {
+		return permissionHits;
+	}
+	
+	public long getPermissionMisses() {
+		return permissionMisses;
+	}
+	
+	public void resetStats() {
+		moveEvents = 0;
+		moveEventsSkipped = 0;
+		permissionHits = 0;
+		permissionMisses = 0;
+	}
+	
+	public long getMoveEvents() {
+		return moveEvents;
+	}
+	
+	public long getMoveEventsSkipped() {
+		return moveEventsSkipped;
+	}
+	
+	public int size() {
+		return players.size();
+	}
+}
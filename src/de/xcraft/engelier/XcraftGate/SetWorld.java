@@ -1,16 +1,13 @@
 package de.xcraft.engelier.XcraftGate;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
 import org.bukkit.World;
 import org.bukkit.World.Environment;
-import org.yaml.snakeyaml.Yaml;
 
 import de.xcraft.engelier.XcraftGate.DataWorld.Weather;
 import de.xcraft.engelier.XcraftGate.Generator.Generator;
@@ -18,104 +15,159 @@ import de.xcraft.engelier.XcraftGate.Generator.Generator;
 public class SetWorld implements Iterable<DataWorld> {
 	private static XcraftGate plugin;
 	private Map<String, DataWorld> worlds = new HashMap<String, DataWorld>();
+	private Store store = null;
 	
 	public SetWorld (XcraftGate plugin) {
 		SetWorld.plugin = plugin;
 	}
 
-	@SuppressWarnings("unchecked")
-	public void load() {
-		File configFile = plugin.getConfigFile("worlds.yml");
-		int counter = 0;
+	private Store createStore(String format) {
+		if (format.equalsIgnoreCase("sql")) {
+			File database = new File(plugin.getDataFolder(), plugin.config.getString("storage.database", "xcraftgate.db"));
+			return new StoreSql(plugin, database, "worlds", new SourceWorlds());
+		}
+		
+		return new StoreFiles(plugin, new File(plugin.getDataFolder(), "worlds"), ".yml", null, new SourceWorlds());
+	}
 	
+	/*
+	 * Returns false if the store is still empty.
+	 */
+	private boolean openStore() {
+		// world settings are small, binary only applies to gates
+		store = createStore(plugin.config.getString("storage.format", "yaml"));
+		
 		try {
-			Yaml yaml = new Yaml();
-			Map<String, Object> worldsYaml = (Map<String, Object>) yaml.load(new FileInputStream(configFile));
+			return store.open();
+		} catch (IOException ex) {
+			plugin.log.severe(plugin.getNameBrackets() + ex.getMessage() + ", using yaml files for worlds");
+			store = createStore("yaml");
 			
-			DataWorld newWorld;
-			
-			for (Map.Entry<String, Object> thisWorld : worldsYaml.entrySet()) {
-				String worldName = thisWorld.getKey();
-				Map<String, Object> worldData = (Map<String, Object>) thisWorld.getValue();
-
-				Environment env = null;
-				Generator gen = null;
-				
-				String checkEnv = (String) worldData.get("type");
-				
-				for(Environment thisEnv: World.Environment.values()) {
-					if (thisEnv.toString().equalsIgnoreCase(checkEnv)) {
-						env = thisEnv;
-					}
-				}
-				
-				if (env == null) env = World.Environment.NORMAL;
-
-				String checkGen = (String) worldData.get("generator");
-				
-				for (Generator thisGen : Generator.values()) {
-					if (thisGen.toString().equalsIgnoreCase(checkGen)) {
-						gen = thisGen;
-					}
-				}
-				
-				newWorld = new DataWorld(plugin, worldName, env, gen);
-				
-				newWorld.setBorder(Util.castInt(worldData.get("border")));
-				newWorld.setAllowPvP(Util.castBoolean(worldData.get("allowPvP")));
-				newWorld.setAllowAnimals(Util.castBoolean(worldData.get("allowAnimals")));
-				newWorld.setAllowMonsters(Util.castBoolean(worldData.get("allowMonsters")));
-				newWorld.setCreatureLimit(Util.castInt(worldData.get("creatureLimit")));
-				newWorld.setAllowWeatherChange(Util.castBoolean(worldData.get("allowWeatherChange")));
-				newWorld.setTimeFrozen(Util.castBoolean(worldData.get("timeFrozen")));
-				newWorld.setDayTime(Util.castInt(worldData.get("setTime")));
-				newWorld.setSuppressHealthRegain(Util.castBoolean(worldData.get("suppressHealthRegain")));
-				newWorld.setSuppressHunger(Util.castBoolean(worldData.get("suppressHunger")));
-				newWorld.setSticky(Util.castBoolean(worldData.get("sticky")));
-				newWorld.setAnnouncePlayerDeath(Util.castBoolean(worldData.get("announcePlayerDeath")));
-				newWorld.setDifficulty(Util.castInt(worldData.get("difficulty")));
-				newWorld.setGameMode(Util.castInt(worldData.get("gamemode")));
-
-				worlds.put(worldName, newWorld);
+			try {
+				return store.open();
+			} catch (IOException ex2) {
+				return false;
+			}
+		}
+	}
 
-				String weather = (String) worldData.get("setWeather");
-				for(Weather thisWeather: DataWorld.Weather.values()) {
-					if (thisWeather.toString().equalsIgnoreCase(weather)) {
-						newWorld.setWeather(thisWeather);
-					}
-				}
-				
-				counter++;
+	public void load() {
+		if (store == null && !openStore()) {
+			migrate();
+		} else {
+			for (String worldName : store.list()) {
+				store.load(worldName, new LoaderWorlds());
 			}
-		} catch (Exception ex) {
-			ex.printStackTrace();
-		}		
+		}
 		
-		plugin.log.info(plugin.getNameBrackets() + "loaded " + counter + " world configurations");
+		plugin.log.info(plugin.getNameBrackets() + "loaded " + worlds.size() + " world configurations");
 	}
-
-	public void save() {
-		File configFile = plugin.getConfigFile("worlds.yml");
+	
+	/*
+	 * Fills an empty store from worlds.yml of older versions (kept as .bak
+	 * afterwards) or from the per-world files when switching to sql.
+	 */
+	private void migrate() {
+		File folder = new File(plugin.getDataFolder(), "worlds");
+		File legacy = new File(plugin.getDataFolder(), "worlds.yml");
 		
-		Map<String, Object> toDump = new HashMap<String, Object>();
+		if (!(store instanceof StoreFiles) && folder.isDirectory()) {
+			plugin.log.info(plugin.getNameBrackets() + "copying worlds from " + folder.getName() + "/ to " + store.getName());
+			
+			Store source = createStore("yaml");
+			for (String worldName : source.list()) {
+				source.load(worldName, new LoaderWorlds());
+			}
+		} else if (legacy.exists()) {
+			plugin.log.info(plugin.getNameBrackets() + "moving " + legacy.getName() + " to " + store.getName());
+			((StoreFiles) createStore("yaml")).loadFile(legacy, new LoaderWorlds());
+		} else {
+			return;
+		}
+		
+		save();
+		store.flush();
+		
+		if (legacy.exists()) {
+			legacy.renameTo(new File(legacy.getPath() + ".bak"));
+			new File(legacy.getPath() + ".journal").delete();
+		}
+	}
+	
+	private void applyData(String worldName, Map<String, Object> worldData) {
+		if (worldData == null) {
+			worlds.remove(worldName);
+			return;
+		}
+		
+		Environment env = null;
+		Generator gen = null;
+		
+		String checkEnv = (String) worldData.get("type");
+		
+		for(Environment thisEnv: World.Environment.values()) {
+			if (thisEnv.toString().equalsIgnoreCase(checkEnv)) {
+				env = thisEnv;
+			}
+		}
+		
+		if (env == null) env = World.Environment.NORMAL;
 
-		for (DataWorld thisWorld : worlds.values()) {
-			toDump.put(thisWorld.getName(), thisWorld.toMap());
+		String checkGen = (String) worldData.get("generator");
+		
+		for (Generator thisGen : Generator.values()) {
+			if (thisGen.toString().equalsIgnoreCase(checkGen)) {
+				gen = thisGen;
+			}
 		}
+		
+		DataWorld newWorld = new DataWorld(plugin, worldName, env, gen);
+		
+		newWorld.setBorder(Util.castInt(worldData.get("border")));
+		newWorld.setAllowPvP(Util.castBoolean(worldData.get("allowPvP")));
+		newWorld.setAllowAnimals(Util.castBoolean(worldData.get("allowAnimals")));
+		newWorld.setAllowMonsters(Util.castBoolean(worldData.get("allowMonsters")));
+		newWorld.setCreatureLimit(Util.castInt(worldData.get("creatureLimit")));
+		newWorld.setAllowWeatherChange(Util.castBoolean(worldData.get("allowWeatherChange")));
+		newWorld.setTimeFrozen(Util.castBoolean(worldData.get("timeFrozen")));
+		newWorld.setDayTime(Util.castInt(worldData.get("setTime")));
+		newWorld.setSuppressHealthRegain(Util.castBoolean(worldData.get("suppressHealthRegain")));
+		newWorld.setSuppressHunger(Util.castBoolean(worldData.get("suppressHunger")));
+		newWorld.setSticky(Util.castBoolean(worldData.get("sticky")));
+		newWorld.setAnnouncePlayerDeath(Util.castBoolean(worldData.get("announcePlayerDeath")));
+		newWorld.setDifficulty(Util.castInt(worldData.get("difficulty")));
+		newWorld.setGameMode(Util.castInt(worldData.get("gamemode")));
 
-		Yaml yaml = new Yaml();
-		String dump = yaml.dump(toDump);
+		worlds.put(worldName, newWorld);
 
-		try {
-			FileOutputStream fh = new FileOutputStream(configFile);
-			new PrintStream(fh).println(dump);
-			fh.flush();
-			fh.close();
-		} catch (Exception ex) {
-			ex.printStackTrace();
+		String weather = (String) worldData.get("setWeather");
+		for(Weather thisWeather: DataWorld.Weather.values()) {
+			if (thisWeather.toString().equalsIgnoreCase(weather)) {
+				newWorld.setWeather(thisWeather);
+			}
+		}
+	}
+
+	public void save() {
+		if (store == null) return;
+		
+		for (String worldName : worlds.keySet()) {
+			store.markDirty(worldName);
 		}
 	}
 	
+	public void flush() {
+		if (store != null) store.flush();
+	}
+	
+	public void close() {
+		if (store != null) store.close();
+	}
+	
+	public Store getStore() {
+		return store;
+	}
+	
 	public void onWorldLoad(World world) {
 		if (worlds.get(world.getName()) != null) {
 			plugin.log.info(plugin.getNameBrackets() + "World '" + world.getName() + "' detected. Applying config.");
@@ -125,7 +177,6 @@ public class SetWorld implements Iterable<DataWorld> {
 			plugin.log.info(plugin.getNameBrackets() + "World '" + world.getName() + "' detected. Adding to config.");
 			DataWorld newWorld = new DataWorld(plugin, world.getName(), world.getEnvironment());
 			add(newWorld);
-			save();
 		}
 		
 		plugin.getGates().onWorldLoad(get(world));
@@ -133,12 +184,25 @@ public class SetWorld implements Iterable<DataWorld> {
 
 	public void add(DataWorld world) {
 		worlds.put(world.getName(), world);
-		save();
+		update(world);
+	}
+	
+	/*
+	 * Adds a world with the settings of another one, e.g. its template.
+	 */
+	public DataWorld copy(String worldName, DataWorld template) {
+		applyData(worldName, template.toMap());
+		update(get(worldName));
+		return get(worldName);
+	}
+	
+	public void update(DataWorld world) {
+		if (store != null) store.put(world.getName(), world.getName(), world.toMap());
 	}
 	
 	public void remove(String worldName) {
 		worlds.remove(worldName);
-		save();
+		if (store != null) store.remove(worldName, worldName);
 	}
 	
 	public DataWorld get(World world) {
@@ -153,5 +217,41 @@ public class SetWorld implements Iterable<DataWorld> {
 	public Iterator<DataWorld> iterator() {
 		return worlds.values().iterator();
 	}
+	
+	private class LoaderWorlds implements Store.Loader {
+		@Override
+		public void record(String name, Map<String, Object> data) {
+			try {
+				applyData(name, data);
+			} catch (RuntimeException ex) {
+				error(name, null, ex.toString());
+			}
+		}
+
+		@Override
+		public void error(String name, String where, String reason) {
+			plugin.log.warning(plugin.getNameBrackets() + "skipped " + (name != null ? "world " + name : "entry")
+					+ (where != null ? " in " + where : "") + ": " + reason);
+		}
+	}
+	
+	private class SourceWorlds implements Store.Source {
+		@Override
+		public Map<String, Object> snapshot(String shard) {
+			Map<String, Object> toDump = new HashMap<String, Object>();
+			DataWorld thisWorld = worlds.get(shard);
+
+			if (thisWorld != null) {
+				toDump.put(thisWorld.getName(), thisWorld.toMap());
+			}
+			
+			return toDump;
+		}
+
+		@Override
+		public Map<String, String> directory() {
+			return null;
+		}
+	}
 
 }
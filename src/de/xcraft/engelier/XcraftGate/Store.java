@@ -0,0 +1,78 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Persistence behind SetGate and SetWorld. Records are the toMap() maps
+ * of gates or worlds, stored by name and grouped into shards (the world
+ * they belong to). run() is called periodically on the main thread and
+ * is where a store may hand pending writes to a background task.
+ */
+public interface Store extends Runnable {
+
+	public interface Source {
+		/*
+		 * All records of one shard, called on the main thread.
+		 */
+		public Map<String, Object> snapshot(String shard);
+
+		/*
+		 * Record name -> shard for every record, or null if not tracked.
+		 */
+		public Map<String, String> directory();
+	}
+
+	public interface Loader {
+		/*
+		 * data is null for records removed by a journal.
+		 */
+		public void record(String name, Map<String, Object> data);
+
+		public void error(String name, String where, String reason);
+	}
+
+	/*
+	 * A loader that also takes records already decoded into their objects
+	 * (gates from a binary snapshot), which then skip the map form.
+	 */
+	public interface ObjectLoader extends Loader {
+		public void object(String name, Object record);
+	}
+
+	public String getName();
+
+	/*
+	 * Returns false if the store holds nothing yet, e.g. on first start.
+	 */
+	public boolean open() throws IOException;
+
+	/*
+	 * Record name -> shard, or null if it must be rebuilt by loading every shard.
+	 */
+	public Map<String, String> loadDirectory();
+
+	public Set<String> list();
+
+	public void load(String shard, Loader loader);
+
+	public void put(String shard, String name, Map<String, Object> data);
+
+	public void remove(String shard, String name);
+
+	/*
+	 * Rewrites a whole shard from the source.
+	 */
+	public void markDirty(String shard);
+
+	public void flush();
+
+	public void close();
+
+	public long getWrites();
+
+	public long getRecords();
+
+	public long getJournalSize();
+}
@@ -0,0 +1,183 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Compact gate snapshot. Layout:
+ *
+ *   int magic, int version, int strings, int records
+ *   strings x (short length, UTF-8 bytes)
+ *   records x (int name, int world, double x, y, z, float yaw, pitch,
+ *              double toll, byte flags, int target,
+ *              short sizeX, sizeY, sizeZ, double radius)
+ *
+ * Names and worlds are indices into the string table, the target is the
+ * index of another record or -1. Targets in another file (a gate in a
+ * different world) are stored as a string index and flagged as such.
+ * Records have a fixed width, so the file is read straight out of a
+ * memory mapping into DataGate objects, without a parser or maps.
+ * Version 1 files have no trigger volume (the last four fields) and
+ * version 2 files a float radius; both are still read.
+ */
+public class StoreBinary {
+	private static final int MAGIC = 0x58474154; // "XGAT"
+	private static final int VERSION = 3;
+	private static final int RECORD_SIZE_V1 = 4 + 4 + 3 * 8 + 2 * 4 + 8 + 1 + 4;
+	private static final int RECORD_SIZE_V2 = RECORD_SIZE_V1 + 3 * 2 + 4;
+	private static final int RECORD_SIZE = RECORD_SIZE_V1 + 3 * 2 + 8;
+	private static final byte FLAG_DENYSILENT = 1;
+	private static final byte FLAG_FOREIGN_TARGET = 2;
+
+	public static void write(Map<String, Object> gates, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		List<String> strings = new ArrayList<String>();
+		Map<String, Integer> stringIds = new HashMap<String, Integer>();
+		Map<String, Integer> recordIds = new HashMap<String, Integer>();
+		List<Map<String, Object>> records = new ArrayList<Map<String, Object>>();
+
+		for (Object value : gates.values()) {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> gate = (Map<String, Object>) value;
+			recordIds.put((String) gate.get("name"), records.size());
+			records.add(gate);
+			intern((String) gate.get("name"), strings, stringIds);
+			intern((String) gate.get("world"), strings, stringIds);
+		}
+
+		for (Map<String, Object> gate : records) {
+			if (gate.get("target") != null && !recordIds.containsKey(gate.get("target"))) {
+				intern((String) gate.get("target"), strings, stringIds);
+			}
+		}
+
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(strings.size());
+		data.writeInt(records.size());
+
+		for (String string : strings) {
+			byte[] bytes = string.getBytes("UTF-8");
+			data.writeShort(bytes.length);
+			data.write(bytes);
+		}
+
+		for (Map<String, Object> gate : records) {
+			Integer target = recordIds.get(gate.get("target"));
+			byte flags = Boolean.TRUE.equals(gate.get("denysilent")) ? FLAG_DENYSILENT : 0;
+
+			if (target == null && gate.get("target") != null) {
+				target = stringIds.get(gate.get("target"));
+				flags |= FLAG_FOREIGN_TARGET;
+			}
+
+			data.writeInt(stringIds.get(gate.get("name")));
+			data.writeInt(stringIds.get(gate.get("world")));
+			data.writeDouble(((Number) gate.get("locX")).doubleValue());
+			data.writeDouble(((Number) gate.get("locY")).doubleValue());
+			data.writeDouble(((Number) gate.get("locZ")).doubleValue());
+			data.writeFloat(((Number) gate.get("locYaw")).floatValue());
+			data.writeFloat(((Number) gate.get("locP")).floatValue());
+			data.writeDouble(((Number) gate.get("toll")).doubleValue());
+			data.writeByte(flags);
+			data.writeInt(target != null ? target : -1);
+			data.writeShort(gate.get("sizeX") != null ? ((Number) gate.get("sizeX")).intValue() : 0);
+			data.writeShort(gate.get("sizeY") != null ? ((Number) gate.get("sizeY")).intValue() : 0);
+			data.writeShort(gate.get("sizeZ") != null ? ((Number) gate.get("sizeZ")).intValue() : 0);
+			data.writeDouble(gate.get("radius") != null ? ((Number) gate.get("radius")).doubleValue() : 0);
+		}
+
+		data.flush();
+	}
+
+	/*
+	 * Hands every record to the loader as a DataGate, whose target is only
+	 * set by name, or as a map if the loader doesn't take objects.
+	 */
+	public static void read(XcraftGate plugin, File file, Store.Loader loader) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+
+		try {
+			FileChannel channel = in.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+				throw new IOException(file + " is not a gate snapshot");
+			}
+
+			int version = buffer.getInt();
+			if (version < 1 || version > VERSION) {
+				throw new IOException(file + " has unsupported version " + version);
+			}
+
+			int recordSize = version == 1 ? RECORD_SIZE_V1 : (version == 2 ? RECORD_SIZE_V2 : RECORD_SIZE);
+			Store.ObjectLoader objects = loader instanceof Store.ObjectLoader ? (Store.ObjectLoader) loader : null;
+
+			String[] strings = new String[buffer.getInt()];
+			int count = buffer.getInt();
+
+			for (int i = 0; i < strings.length; i++) {
+				byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+				buffer.get(bytes);
+				strings[i] = new String(bytes, "UTF-8");
+			}
+
+			if (buffer.remaining() < (long) count * recordSize) {
+				throw new IOException(file + " is truncated");
+			}
+
+			int base = buffer.position();
+
+			for (int i = 0; i < count; i++) {
+				buffer.position(base + i * recordSize);
+
+				DataGate gate = new DataGate(plugin, strings[buffer.getInt()]);
+				String world = strings[buffer.getInt()];
+				double x = buffer.getDouble(), y = buffer.getDouble(), z = buffer.getDouble();
+				float yaw = buffer.getFloat(), pitch = buffer.getFloat();
+				gate.setLocation(world, x, y, z, yaw, pitch);
+				gate.setToll(buffer.getDouble());
+				byte flags = buffer.get();
+				gate.setDenySilent((flags & FLAG_DENYSILENT) != 0);
+
+				int target = buffer.getInt();
+				if ((flags & FLAG_FOREIGN_TARGET) != 0) {
+					gate.setTargetName(strings[target]);
+				} else if (target >= 0 && target < count) {
+					// the target's name is the first field of its record
+					gate.setTargetName(strings[buffer.getInt(base + target * recordSize)]);
+				}
+
+				if (version > 1) {
+					short sizeX = buffer.getShort(), sizeY = buffer.getShort(), sizeZ = buffer.getShort();
+					double radius = version == 2 ? buffer.getFloat() : buffer.getDouble();
+					gate.setVolume(sizeX, sizeY, sizeZ, radius);
+				}
+
+				if (objects != null) {
+					objects.object(gate.getName(), gate);
+				} else {
+					loader.record(gate.getName(), gate.toMap());
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void intern(String string, List<String> strings, Map<String, Integer> stringIds) {
+		if (!stringIds.containsKey(string)) {
+			stringIds.put(string, strings.size());
+			strings.add(string);
+		}
+	}
+}
@@ -0,0 +1,369 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.yaml.snakeyaml.Yaml;
+
+/*
+ * One YAML (.yml) or binary (.dat) file per shard in a folder, each with
+ * its own StoreWriter, so a change only rewrites or journals the file it
+ * belongs to. An optional directory file keeps record name -> shard.
+ */
+public class StoreFiles implements Store {
+	private static final String[] EXTENSIONS = { ".yml", ".dat" };
+	private static XcraftGate plugin;
+
+	private final File folder;
+	private final String extension;
+	private final Source source;
+	private final Map<String, StoreWriter> writers = new HashMap<String, StoreWriter>();
+	private final Map<String, String> known = new HashMap<String, String>();
+	private final StoreWriter directoryWriter;
+
+	public StoreFiles(XcraftGate instance, File folder, String extension, File directoryFile, Source source) {
+		plugin = instance;
+		this.folder = folder;
+		this.extension = extension;
+		this.source = source;
+		this.directoryWriter = directoryFile != null ? new WriterDirectory(directoryFile) : null;
+	}
+
+	@Override
+	public String getName() {
+		return (extension.equals(".dat") ? "binary" : "yaml") + " files in " + folder.getName() + "/";
+	}
+
+	@Override
+	public boolean open() {
+		return folder.isDirectory();
+	}
+
+	public File getFile(String shard) {
+		return new File(folder, shard + extension);
+	}
+
+	private StoreWriter get(String shard) {
+		StoreWriter writer = writers.get(shard);
+
+		if (writer == null) {
+			writer = new WriterShard(getFile(shard), shard);
+			writers.put(shard, writer);
+		}
+
+		return writer;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Map<String, String> loadDirectory() {
+		if (directoryWriter == null || !directoryWriter.getFile().exists()) return null;
+
+		try {
+			FileInputStream in = new FileInputStream(directoryWriter.getFile());
+
+			try {
+				Map<String, String> ret = (Map<String, String>) new Yaml().load(in);
+				if (ret == null) ret = new HashMap<String, String>();
+
+				known.putAll(ret);
+				return ret;
+			} finally {
+				in.close();
+			}
+		} catch (Exception ex) {
+			plugin.log.warning(plugin.getNameBrackets() + "error reading " + directoryWriter.getFile());
+			ex.printStackTrace();
+			return null;
+		}
+	}
+
+	/*
+	 * Names of all shards on disk, including those that only have a journal yet.
+	 */
+	@Override
+	public Set<String> list() {
+		Set<String> ret = new HashSet<String>();
+		String[] files = folder.list();
+
+		if (files == null) return ret;
+
+		for (String fileName : files) {
+			if (fileName.endsWith(".journal")) {
+				fileName = fileName.substring(0, fileName.length() - 8);
+			}
+
+			for (String ext : EXTENSIONS) {
+				if (fileName.endsWith(ext) && fileName.length() > ext.length()) {
+					ret.add(fileName.substring(0, fileName.length() - ext.length()));
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	@Override
+	public void load(String shard, Loader loader) {
+		Loader tracking = loader instanceof ObjectLoader ? new TrackingObjects(shard, (ObjectLoader) loader) : new Tracking(shard, loader);
+
+		// created first, it finishes a write a crash interrupted
+		StoreWriter writer = get(shard);
+		File file = writer.getFile();
+		File yaml = new File(folder, shard + ".yml");
+
+		if (!file.exists() && yaml.exists()) {
+			// switched to binary, the next write converts it
+			read(yaml, tracking);
+			writer.markDirty();
+		} else if (file.exists()) {
+			read(file, tracking);
+		}
+
+		replay(writer, tracking);
+	}
+
+	/*
+	 * Reads a single file and its journal, e.g. from an older layout.
+	 */
+	public void loadFile(File file, Loader loader) {
+		StoreWriter writer = new WriterShard(file, null);
+
+		if (file.exists()) {
+			read(file, loader);
+		}
+
+		replay(writer, loader);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void replay(StoreWriter writer, Loader loader) {
+		Map<String, Object> journal = new HashMap<String, Object>();
+		int replayed = writer.replay(journal);
+
+		for (Map.Entry<String, Object> thisRecord : journal.entrySet()) {
+			loader.record(thisRecord.getKey(), (Map<String, Object>) thisRecord.getValue());
+		}
+
+		if (replayed > 0) {
+			plugin.log.info(plugin.getNameBrackets() + "replayed " + replayed + " journal records for " + writer.getFile().getName());
+		}
+	}
+
+	/*
+	 * Whole-file read, overridden where a file can be streamed.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void read(File file, Loader loader) {
+		try {
+			if (file.getName().endsWith(".dat")) {
+				StoreBinary.read(plugin, file, loader);
+				return;
+			}
+
+			Map<String, Object> records;
+			FileInputStream in = new FileInputStream(file);
+
+			try {
+				records = (Map<String, Object>) new Yaml().load(in);
+			} finally {
+				in.close();
+			}
+
+			if (records == null) return;
+
+			for (Map.Entry<String, Object> thisRecord : records.entrySet()) {
+				if (thisRecord.getValue() instanceof Map) {
+					loader.record(thisRecord.getKey(), (Map<String, Object>) thisRecord.getValue());
+				} else {
+					loader.error(thisRecord.getKey(), file.getName(), "no settings");
+				}
+			}
+		} catch (Exception ex) {
+			loader.error(null, file.getName(), ex.toString());
+		}
+	}
+
+	@Override
+	public void put(String shard, String recordName, Map<String, Object> data) {
+		get(shard).put(recordName, data);
+
+		if (!shard.equals(known.put(recordName, shard))) {
+			markDirectoryDirty();
+		}
+	}
+
+	@Override
+	public void remove(String shard, String recordName) {
+		get(shard).remove(recordName);
+
+		if (shard.equals(known.get(recordName))) {
+			known.remove(recordName);
+			markDirectoryDirty();
+		}
+	}
+
+	@Override
+	public void markDirty(String shard) {
+		get(shard).markDirty();
+
+		if (directoryWriter != null) {
+			known.clear();
+			known.putAll(source.directory());
+			directoryWriter.markDirty();
+		}
+	}
+
+	private void markDirectoryDirty() {
+		if (directoryWriter != null) directoryWriter.markDirty();
+	}
+
+	@Override
+	public void run() {
+		for (StoreWriter writer : writers.values()) {
+			writer.run();
+		}
+
+		if (directoryWriter != null) directoryWriter.run();
+	}
+
+	@Override
+	public void flush() {
+		for (StoreWriter writer : writers.values()) {
+			writer.flush();
+		}
+
+		if (directoryWriter != null) directoryWriter.flush();
+	}
+
+	@Override
+	public void close() {
+		flush();
+	}
+
+	@Override
+	public long getWrites() {
+		long ret = 0;
+		for (StoreWriter writer : writers.values()) {
+			ret += writer.getWrites();
+		}
+		return ret;
+	}
+
+	@Override
+	public long getRecords() {
+		long ret = 0;
+		for (StoreWriter writer : writers.values()) {
+			ret += writer.getRecords();
+		}
+		return ret;
+	}
+
+	@Override
+	public long getJournalSize() {
+		long ret = 0;
+		for (StoreWriter writer : writers.values()) {
+			ret += writer.getJournalSize();
+		}
+		return ret;
+	}
+
+	public static void dump(Object snapshot, OutputStream out) throws IOException {
+		Writer fh = new OutputStreamWriter(out, "UTF-8");
+		new Yaml().dump(snapshot, fh);
+		fh.flush();
+	}
+
+	/*
+	 * Keeps the directory right after a crash or when it had to be rebuilt.
+	 */
+	private class Tracking implements Loader {
+		protected final String shard;
+		protected final Loader loader;
+
+		public Tracking(String shard, Loader loader) {
+			this.shard = shard;
+			this.loader = loader;
+		}
+
+		protected void track(String recordName, boolean exists) {
+			if (exists) {
+				if (!shard.equals(known.put(recordName, shard))) markDirectoryDirty();
+			} else if (shard.equals(known.get(recordName))) {
+				known.remove(recordName);
+				markDirectoryDirty();
+			}
+		}
+
+		@Override
+		public void record(String recordName, Map<String, Object> data) {
+			track(recordName, data != null);
+			loader.record(recordName, data);
+		}
+
+		@Override
+		public void error(String recordName, String where, String reason) {
+			loader.error(recordName, where, reason);
+		}
+	}
+
+	private class TrackingObjects extends Tracking implements ObjectLoader {
+		public TrackingObjects(String shard, ObjectLoader loader) {
+			super(shard, loader);
+		}
+
+		@Override
+		public void object(String recordName, Object record) {
+			track(recordName, true);
+			((ObjectLoader) loader).object(recordName, record);
+		}
+	}
+
+	private class WriterShard extends StoreWriter {
+		private final String shard;
+
+		public WriterShard(File file, String shard) {
+			super(plugin, file, plugin.config.getBoolean("storage.journal", false));
+			this.shard = shard;
+		}
+
+		@Override
+		protected Object snapshot() {
+			return source.snapshot(shard);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		protected void write(Object snapshot, OutputStream out) throws IOException {
+			if (getFile().getName().endsWith(".dat")) {
+				StoreBinary.write((Map<String, Object>) snapshot, out);
+			} else {
+				dump(snapshot, out);
+			}
+		}
+	}
+
+	private class WriterDirectory extends StoreWriter {
+		public WriterDirectory(File file) {
+			super(plugin, file);
+		}
+
+		@Override
+		protected Object snapshot() {
+			return new HashMap<String, String>(source.directory());
+		}
+
+		@Override
+		protected void write(Object snapshot, OutputStream out) throws IOException {
+			dump(snapshot, out);
+		}
+	}
+}
@@ -0,0 +1,357 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+
+/*
+ * One table per registry in a single SQLite file (the driver ships with
+ * CraftBukkit). Every record is one row keyed by name with an index on
+ * its shard; edits are queued as single-row upserts or deletes and
+ * committed in one transaction per batch by a background task. A batch
+ * that fails is rolled back and its operations are tried again first,
+ * in the same order, on the next write.
+ */
+public class StoreSql implements Store {
+	private static XcraftGate plugin;
+
+	// gates and worlds share the database file, one writer at a time
+	private static final Object lock = new Object();
+
+	private final File file;
+	private final String table;
+	private final Source source;
+	private final ConcurrentLinkedQueue<Op> queue = new ConcurrentLinkedQueue<Op>();
+	// guarded by lock
+	private final List<Op> failed = new ArrayList<Op>();
+	private volatile boolean retrying = false;
+	private final Set<String> dirty = Collections.synchronizedSet(new HashSet<String>());
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	private Connection conn = null;
+	private volatile long writes = 0;
+	private volatile long records = 0;
+
+	public StoreSql(XcraftGate instance, File file, String table, Source source) {
+		plugin = instance;
+		this.file = file;
+		this.table = table;
+		this.source = source;
+	}
+
+	@Override
+	public String getName() {
+		return "sqlite table " + table + " in " + file.getName();
+	}
+
+	@Override
+	public boolean open() throws IOException {
+		synchronized (lock) {
+			try {
+				Class.forName("org.sqlite.JDBC");
+				conn = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+
+				Statement st = conn.createStatement();
+				try {
+					st.executeUpdate("CREATE TABLE IF NOT EXISTS " + table + " (name VARCHAR(255) PRIMARY KEY, shard VARCHAR(255) NOT NULL, data TEXT NOT NULL)");
+					st.executeUpdate("CREATE INDEX IF NOT EXISTS " + table + "_shard ON " + table + " (shard)");
+
+					ResultSet rs = st.executeQuery("SELECT 1 FROM " + table + " LIMIT 1");
+					return rs.next();
+				} finally {
+					st.close();
+				}
+			} catch (Exception ex) {
+				conn = null;
+				throw new IOException("unable to open " + file + ": " + ex);
+			}
+		}
+	}
+
+	@Override
+	public Map<String, String> loadDirectory() {
+		Map<String, String> ret = new HashMap<String, String>();
+
+		synchronized (lock) {
+			try {
+				Statement st = conn.createStatement();
+				try {
+					ResultSet rs = st.executeQuery("SELECT name, shard FROM " + table);
+					while (rs.next()) {
+						ret.put(rs.getString(1), rs.getString(2));
+					}
+				} finally {
+					st.close();
+				}
+			} catch (SQLException ex) {
+				plugin.log.severe(plugin.getNameBrackets() + "error reading " + table);
+				ex.printStackTrace();
+				return null;
+			}
+		}
+
+		return ret;
+	}
+
+	@Override
+	public Set<String> list() {
+		Set<String> ret = new HashSet<String>();
+
+		synchronized (lock) {
+			try {
+				Statement st = conn.createStatement();
+				try {
+					ResultSet rs = st.executeQuery("SELECT DISTINCT shard FROM " + table);
+					while (rs.next()) {
+						ret.add(rs.getString(1));
+					}
+				} finally {
+					st.close();
+				}
+			} catch (SQLException ex) {
+				plugin.log.severe(plugin.getNameBrackets() + "error reading " + table);
+				ex.printStackTrace();
+			}
+		}
+
+		return ret;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void load(String shard, Loader loader) {
+		Yaml yaml = new Yaml();
+
+		synchronized (lock) {
+			try {
+				PreparedStatement st = conn.prepareStatement("SELECT name, data FROM " + table + " WHERE shard = ?");
+				try {
+					st.setString(1, shard);
+					ResultSet rs = st.executeQuery();
+
+					while (rs.next()) {
+						Object data = null;
+						try {
+							data = yaml.load(rs.getString(2));
+						} catch (Exception ex) {
+							// reported below
+						}
+
+						if (data instanceof Map) {
+							loader.record(rs.getString(1), (Map<String, Object>) data);
+						} else {
+							loader.error(rs.getString(1), table, "unreadable data");
+						}
+					}
+				} finally {
+					st.close();
+				}
+			} catch (SQLException ex) {
+				loader.error(null, table, ex.toString());
+			}
+		}
+	}
+
+	@Override
+	public void put(String shard, String name, Map<String, Object> data) {
+		queue.add(new Op(shard, name, data, false));
+	}
+
+	@Override
+	public void remove(String shard, String name) {
+		queue.add(new Op(shard, name, null, false));
+	}
+
+	@Override
+	public void markDirty(String shard) {
+		dirty.add(shard);
+	}
+
+	@Override
+	public void run() {
+		snapshotDirty();
+
+		if ((!queue.isEmpty() || retrying) && scheduled.compareAndSet(false, true)) {
+			plugin.getServerWorlds().getScheduler().scheduleAsyncDelayedTask(plugin, new RunWrite());
+		}
+	}
+
+	private void snapshotDirty() {
+		List<String> shards;
+
+		synchronized (dirty) {
+			shards = new ArrayList<String>(dirty);
+			dirty.clear();
+		}
+
+		for (String shard : shards) {
+			queue.add(new Op(shard, null, source.snapshot(shard), true));
+		}
+	}
+
+	@Override
+	public void flush() {
+		snapshotDirty();
+		drain();
+	}
+
+	@Override
+	public void close() {
+		flush();
+
+		synchronized (lock) {
+			try {
+				if (conn != null) conn.close();
+			} catch (SQLException ex) {
+				ex.printStackTrace();
+			}
+			conn = null;
+		}
+	}
+
+	private void drain() {
+		DumperOptions options = new DumperOptions();
+		options.setDefaultFlowStyle(DumperOptions.FlowStyle.FLOW);
+		options.setWidth(Integer.MAX_VALUE);
+		Yaml yaml = new Yaml(options);
+		List<Op> batch = new ArrayList<Op>();
+		int rows = 0;
+
+		// polling under the lock keeps batches from overtaking each other
+		synchronized (lock) {
+			batch.addAll(failed);
+			failed.clear();
+			retrying = false;
+
+			Op op;
+			while ((op = queue.poll()) != null) {
+				batch.add(op);
+			}
+
+			if (batch.isEmpty()) return;
+
+			if (conn == null) {
+				failed.addAll(batch);
+				retrying = true;
+				return;
+			}
+
+			try {
+				conn.setAutoCommit(false);
+
+				PreparedStatement upsert = conn.prepareStatement("INSERT OR REPLACE INTO " + table + " (name, shard, data) VALUES (?, ?, ?)");
+				PreparedStatement delete = conn.prepareStatement("DELETE FROM " + table + " WHERE name = ? AND shard = ?");
+				PreparedStatement clear = conn.prepareStatement("DELETE FROM " + table + " WHERE shard = ?");
+
+				try {
+					for (Op thisOp : batch) {
+						if (thisOp.snapshot) {
+							clear.setString(1, thisOp.shard);
+							clear.executeUpdate();
+
+							for (Map.Entry<String, Object> thisRecord : thisOp.data.entrySet()) {
+								upsert(upsert, thisOp.shard, thisRecord.getKey(), yaml.dump(thisRecord.getValue()).trim());
+								rows++;
+							}
+						} else if (thisOp.data == null) {
+							delete.setString(1, thisOp.name);
+							delete.setString(2, thisOp.shard);
+							delete.executeUpdate();
+							rows++;
+						} else {
+							upsert(upsert, thisOp.shard, thisOp.name, yaml.dump(thisOp.data).trim());
+							rows++;
+						}
+					}
+
+					conn.commit();
+					writes++;
+					records += rows;
+				} finally {
+					upsert.close();
+					delete.close();
+					clear.close();
+				}
+			} catch (SQLException ex) {
+				plugin.log.severe(plugin.getNameBrackets() + "error writing to " + table + ", retrying " + batch.size() + " changes");
+				ex.printStackTrace();
+
+				try {
+					conn.rollback();
+				} catch (SQLException rollbackEx) {
+					rollbackEx.printStackTrace();
+				}
+
+				// the same operations again, a shard rewritten from memory now could miss an unloaded world's gates
+				failed.addAll(batch);
+				retrying = true;
+			} finally {
+				try {
+					conn.setAutoCommit(true);
+				} catch (SQLException ex) {
+					ex.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private void upsert(PreparedStatement st, String shard, String name, String data) throws SQLException {
+		st.setString(1, name);
+		st.setString(2, shard);
+		st.setString(3, data);
+		st.executeUpdate();
+	}
+
+	@Override
+	public long getWrites() {
+		return writes;
+	}
+
+	@Override
+	public long getRecords() {
+		return records;
+	}
+
+	@Override
+	public long getJournalSize() {
+		return 0;
+	}
+
+	private static class Op {
+		private final String shard;
+		private final String name;
+		private final Map<String, Object> data;
+		private final boolean snapshot;
+
+		public Op(String shard, String name, Map<String, Object> data, boolean snapshot) {
+			this.shard = shard;
+			this.name = name;
+			this.data = data;
+			this.snapshot = snapshot;
+		}
+	}
+
+	private class RunWrite implements Runnable {
+		@Override
+		public void run() {
+			scheduled.set(false);
+			drain();
+		}
+	}
+}
@@ -0,0 +1,390 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+
+/*
+ * Write-behind persistence for one config file. Mutations only mark the
+ * store dirty; the sync task takes a snapshot at most once per run and a
+ * background task writes the latest snapshot to a temp file, then renames
+ * it over the real one. Snapshots queued while a write is running are
+ * coalesced into the newest one.
+ *
+ * In journal mode single-entry changes are appended to <file>.journal
+ * instead, one YAML line per record, and fsynced once per batch. Once the
+ * journal grows past its limit a snapshot is written and the journal
+ * starts over. The journal only ever holds records older than the
+ * snapshot being written, and replaying one of them over that snapshot
+ * would undo a newer change. So once the snapshot is synced the journal
+ * is set aside as <file>.journal.old, the snapshot renamed into place and
+ * only then the old journal deleted. A crash in between is finished on
+ * the next start: a leftover <file>.tmp next to the old journal is the
+ * complete snapshot and is installed, the old journal is never replayed.
+ */
+public abstract class StoreWriter implements Runnable {
+	private static XcraftGate plugin;
+
+	private final File file;
+	private final File journalFile;
+	private final File rotatedFile;
+	private final long journalLimit;
+	private final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<Object>();
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	private volatile boolean dirty = false;
+	private volatile boolean compacting = false;
+	private volatile long journalSize = 0;
+	private volatile long writes = 0;
+	private volatile long records = 0;
+	private OutputStream journal = null;
+	private FileOutputStream journalHandle = null;
+
+	public StoreWriter(XcraftGate instance, File file) {
+		this(instance, file, false);
+	}
+
+	public StoreWriter(XcraftGate instance, File file, boolean journaled) {
+		plugin = instance;
+		this.file = file;
+		this.journalFile = journaled ? new File(file.getPath() + ".journal") : null;
+		this.rotatedFile = new File(file.getPath() + ".journal.old");
+		this.journalLimit = plugin.config.getInt("storage.journalCompactSize", 1048576);
+
+		// checked even with the journal turned off, it may have been on before the crash
+		if (rotatedFile.exists()) {
+			recover();
+		}
+
+		if (journalFile != null && journalFile.exists()) {
+			journalSize = journalFile.length();
+		}
+	}
+
+	/*
+	 * Called on the main thread, must copy everything write() needs.
+	 */
+	protected abstract Object snapshot();
+
+	/*
+	 * Called off the main thread with a snapshot taken earlier.
+	 */
+	protected abstract void write(Object snapshot, OutputStream out) throws IOException;
+
+	public void markDirty() {
+		dirty = true;
+	}
+
+	public void put(String key, Map<String, Object> data) {
+		if (journalFile == null) {
+			dirty = true;
+		} else {
+			queue.add(new Record(key, data));
+		}
+	}
+
+	public void remove(String key) {
+		put(key, null);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public boolean isDirty() {
+		return dirty || !queue.isEmpty();
+	}
+
+	public boolean isJournaled() {
+		return journalFile != null;
+	}
+
+	public long getWrites() {
+		return writes;
+	}
+
+	public long getRecords() {
+		return records;
+	}
+
+	public long getJournalSize() {
+		return journalSize;
+	}
+
+	@Override
+	public void run() {
+		if (journalFile != null && !compacting && journalSize > journalLimit) {
+			compacting = true;
+			dirty = true;
+		}
+
+		if (dirty) {
+			dirty = false;
+			queue.add(new Snapshot(snapshot()));
+		}
+
+		if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+			plugin.getServerWorlds().getScheduler().scheduleAsyncDelayedTask(plugin, new RunWrite());
+		}
+	}
+
+	public void flush() {
+		if (dirty) {
+			dirty = false;
+			queue.add(new Snapshot(snapshot()));
+		}
+
+		drain();
+		closeJournal();
+	}
+
+	@SuppressWarnings("unchecked")
+	public int replay(Map<String, Object> target) {
+		if (journalFile == null || !journalFile.exists()) return 0;
+
+		int counter = 0;
+		int line = 0;
+
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), "UTF-8"));
+			Yaml yaml = new Yaml();
+
+			try {
+				String entry;
+				while ((entry = in.readLine()) != null) {
+					line++;
+					if (entry.length() == 0) continue;
+
+					Map<String, Object> record;
+					try {
+						record = (Map<String, Object>) yaml.load(entry);
+					} catch (Exception ex) {
+						plugin.log.warning(plugin.getNameBrackets() + "ignoring damaged record in " + journalFile + " at line " + line);
+						break;
+					}
+
+					if ("put".equals(record.get("op"))) {
+						target.put((String) record.get("name"), record.get("data"));
+					} else {
+						// keep removals visible to callers replaying on top of loaded data
+						target.put((String) record.get("name"), null);
+					}
+
+					counter++;
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException ex) {
+			plugin.log.severe(plugin.getNameBrackets() + "error reading " + journalFile);
+			ex.printStackTrace();
+		}
+
+		return counter;
+	}
+
+	private synchronized void drain() {
+		List<Object> batch = new ArrayList<Object>();
+		Object op;
+
+		while ((op = queue.poll()) != null) {
+			batch.add(op);
+		}
+
+		if (batch.isEmpty()) return;
+
+		int start = 0;
+
+		// everything queued before the newest snapshot is contained in it
+		for (int i = batch.size() - 1; i >= 0; i--) {
+			if (batch.get(i) instanceof Snapshot) {
+				if (writeFile(((Snapshot) batch.get(i)).data)) {
+					journalSize = 0;
+				}
+				compacting = false;
+				start = i + 1;
+				break;
+			}
+		}
+
+		if (start < batch.size()) {
+			appendJournal(batch.subList(start, batch.size()));
+		}
+	}
+
+	private boolean writeFile(Object snapshot) {
+		File temp = new File(file.getPath() + ".tmp");
+		boolean rotated = false;
+
+		try {
+			if (file.getParentFile() != null) file.getParentFile().mkdirs();
+
+			FileOutputStream fh = new FileOutputStream(temp);
+			OutputStream out = new BufferedOutputStream(fh);
+
+			try {
+				write(snapshot, out);
+				out.flush();
+				fh.getFD().sync();
+			} finally {
+				out.close();
+			}
+
+			// from here on a crash leaves the complete snapshot to recover()
+			rotated = rotateJournal();
+			install(temp);
+
+			if (rotated) {
+				rotatedFile.delete();
+			}
+
+			writes++;
+			return true;
+		} catch (Exception ex) {
+			if (rotated && !journalFile.exists()) {
+				// the old snapshot is still in place, keep its journal
+				rotatedFile.renameTo(journalFile);
+			}
+
+			plugin.log.severe(plugin.getNameBrackets() + "error saving " + file);
+			ex.printStackTrace();
+			return false;
+		}
+	}
+
+	private void appendJournal(List<Object> batch) {
+		DumperOptions options = new DumperOptions();
+		options.setDefaultFlowStyle(DumperOptions.FlowStyle.FLOW);
+		options.setWidth(Integer.MAX_VALUE);
+		Yaml yaml = new Yaml(options);
+
+		try {
+			if (journal == null) {
+				if (journalFile.getParentFile() != null) journalFile.getParentFile().mkdirs();
+				journalHandle = new FileOutputStream(journalFile, true);
+				journal = new BufferedOutputStream(journalHandle);
+			}
+
+			for (Object op : batch) {
+				Record record = (Record) op;
+				Map<String, Object> entry = new HashMap<String, Object>();
+				entry.put("op", record.data != null ? "put" : "remove");
+				entry.put("name", record.key);
+				if (record.data != null) entry.put("data", record.data);
+
+				byte[] line = (yaml.dump(entry).trim() + "\n").getBytes("UTF-8");
+				journal.write(line);
+				journalSize += line.length;
+				records++;
+			}
+
+			journal.flush();
+			journalHandle.getFD().sync();
+		} catch (IOException ex) {
+			plugin.log.severe(plugin.getNameBrackets() + "error appending to " + journalFile);
+			ex.printStackTrace();
+		}
+	}
+
+	private void install(File temp) throws IOException {
+		if (!temp.renameTo(file)) {
+			// rename can't replace an existing file on every platform
+			file.delete();
+			if (!temp.renameTo(file)) {
+				throw new IOException("unable to rename " + temp + " to " + file);
+			}
+		}
+	}
+
+	private boolean rotateJournal() throws IOException {
+		if (journalFile == null || !journalFile.exists()) return false;
+
+		closeJournal();
+		rotatedFile.delete();
+
+		if (!journalFile.renameTo(rotatedFile)) {
+			throw new IOException("unable to rename " + journalFile + " to " + rotatedFile);
+		}
+
+		return true;
+	}
+
+	/*
+	 * The last write stopped between rotateJournal() and deleting the
+	 * rotated journal. Without a temp file the snapshot was installed and
+	 * the rotated records are all in it.
+	 */
+	private void recover() {
+		File temp = new File(file.getPath() + ".tmp");
+
+		if (temp.exists()) {
+			try {
+				install(temp);
+				plugin.log.info(plugin.getNameBrackets() + "finished an interrupted write of " + file.getName());
+			} catch (IOException ex) {
+				plugin.log.severe(plugin.getNameBrackets() + "error recovering " + file);
+				ex.printStackTrace();
+
+				// the old snapshot is still in place, keep its journal
+				if (journalFile != null && !journalFile.exists()) {
+					rotatedFile.renameTo(journalFile);
+				}
+				return;
+			}
+		}
+
+		rotatedFile.delete();
+	}
+
+	private synchronized void closeJournal() {
+		if (journal == null) return;
+
+		try {
+			journal.close();
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		}
+
+		journal = null;
+		journalHandle = null;
+	}
+
+	private static class Snapshot {
+		private final Object data;
+
+		public Snapshot(Object data) {
+			this.data = data;
+		}
+	}
+
+	private static class Record {
+		private final String key;
+		private final Map<String, Object> data;
+
+		public Record(String key, Map<String, Object> data) {
+			this.key = key;
+			this.data = data;
+		}
+	}
+
+	private class RunWrite implements Runnable {
+		@Override
+		public void run() {
+			scheduled.set(false);
+			drain();
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+
+/*
+ * Reads gates.yml from the parser's event stream instead of building the
+ * whole document first, so only the gate being read is held in memory.
+ * Every gate is checked and converted on its own and handed over as soon
+ * as its mapping ends; a broken gate is reported and skipped, the rest of
+ * the file is still read.
+ */
+public class StoreYamlReader {
+	private static final String[] REQUIRED = { "world", "locX", "locY", "locZ" };
+
+	public interface Handler {
+		public void gate(String name, Map<String, Object> data);
+
+		public void error(String name, int line, String reason);
+	}
+
+	public static void read(File file, Handler handler) throws IOException {
+		Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+
+		try {
+			read(in, handler);
+		} finally {
+			in.close();
+		}
+	}
+
+	public static void read(Reader in, Handler handler) {
+		Iterator<Event> events = new Yaml().parse(in).iterator();
+		String name = null;
+		int line = 0;
+
+		try {
+			Event event = next(events);
+
+			// skip stream and document start, an empty file has no root node at all
+			while (event != null && !(event instanceof MappingStartEvent)) {
+				if (event instanceof ScalarEvent || event instanceof SequenceStartEvent) {
+					handler.error(null, line(event), "top level is not a mapping of gates");
+					return;
+				}
+				event = next(events);
+			}
+
+			if (event == null) return;
+
+			while ((event = next(events)) != null && !(event instanceof MappingEndEvent)) {
+				line = line(event);
+
+				if (!(event instanceof ScalarEvent)) {
+					skip(event, events);
+					skip(next(events), events);
+					handler.error(null, line, "gate name is not a plain value");
+					continue;
+				}
+
+				name = ((ScalarEvent) event).getValue();
+				event = next(events);
+
+				if (!(event instanceof MappingStartEvent)) {
+					skip(event, events);
+					handler.error(name, line, "gate has no settings");
+					continue;
+				}
+
+				Map<String, Object> data = new HashMap<String, Object>();
+				String reason = readGate(events, data);
+
+				if (reason == null) {
+					handler.gate(name, data);
+				} else {
+					handler.error(name, line, reason);
+				}
+			}
+		} catch (YAMLException ex) {
+			// a syntax error leaves the parser without a way to resume
+			handler.error(name, line, "unreadable from here on: " + ex.getMessage());
+		}
+	}
+
+	private static String readGate(Iterator<Event> events, Map<String, Object> data) {
+		String reason = null;
+		Event event;
+
+		while ((event = next(events)) != null && !(event instanceof MappingEndEvent)) {
+			Event value = next(events);
+
+			if (!(event instanceof ScalarEvent) || !(value instanceof ScalarEvent)) {
+				skip(event, events);
+				skip(value, events);
+				if (reason == null) reason = "nested value";
+				continue;
+			}
+
+			String key = ((ScalarEvent) event).getValue();
+			String error = convert(key, ((ScalarEvent) value).getValue(), data);
+
+			if (reason == null) reason = error;
+		}
+
+		if (reason != null) return reason;
+
+		for (String key : REQUIRED) {
+			if (data.get(key) == null) return "missing " + key;
+		}
+
+		if (data.get("locYaw") == null) data.put("locYaw", 0.0);
+		if (data.get("locP") == null) data.put("locP", 0.0);
+
+		return null;
+	}
+
+	private static String convert(String key, String value, Map<String, Object> data) {
+		if (value == null || value.equals("~") || value.equalsIgnoreCase("null") || value.length() == 0) {
+			data.put(key, null);
+		} else if (key.equals("world") || key.equals("target") || key.equals("name")) {
+			data.put(key, value);
+		} else if (key.equals("denysilent")) {
+			data.put(key, Util.castBoolean(value));
+		} else {
+			try {
+				data.put(key, Double.parseDouble(value));
+			} catch (NumberFormatException ex) {
+				return key + " is not a number";
+			}
+		}
+
+		return null;
+	}
+
+	/*
+	 * Consumes the rest of a collection whose start event was already read.
+	 */
+	private static void skip(Event event, Iterator<Event> events) {
+		int depth = 0;
+
+		while (event != null) {
+			if (event instanceof MappingStartEvent || event instanceof SequenceStartEvent) {
+				depth++;
+			} else if (event instanceof MappingEndEvent || event instanceof SequenceEndEvent) {
+				depth--;
+			}
+
+			if (depth <= 0) return;
+			event = next(events);
+		}
+	}
+
+	private static Event next(Iterator<Event> events) {
+		return events.hasNext() ? events.next() : null;
+	}
+
+	private static int line(Event event) {
+		return event.getStartMark() != null ? event.getStartMark().getLine() + 1 : 0;
+	}
+}
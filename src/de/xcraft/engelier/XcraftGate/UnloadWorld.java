@@ -0,0 +1,129 @@
+package de.xcraft.engelier.XcraftGate;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+
+/*
+ * Unloads inactive worlds a little at a time, run once per tick. The
+ * first queued world gets its chunks saved and unloaded until the tick's
+ * time budget is used up; once only a few chunks are left the world
+ * itself is unloaded, at most one world per interval. Chunks the server
+ * keeps, such as the spawn area with keepSpawnInMemory, never go, so a
+ * world is also done once STALLED_PASSES full passes in a row unloaded
+ * nothing. A world that
+ * became active again in the meantime is taken off the queue; one that
+ * is evicted for memory only if a player entered it.
+ */
+public class UnloadWorld implements Runnable {
+	public static final int STALLED_PASSES = 3;
+
+	private static XcraftGate plugin;
+	private final Map<String, Drain> queue = new LinkedHashMap<String, Drain>();
+	private long tick = 0;
+	private long lastFinished = Long.MIN_VALUE / 2;
+
+	public UnloadWorld(XcraftGate instance) {
+		plugin = instance;
+	}
+
+	public void add(DataWorld world) {
+		add(world, false);
+	}
+
+	public void add(DataWorld world, boolean evict) {
+		if (!world.isLoaded() || queue.containsKey(world.getName())) return;
+
+		// pinned chunks would refuse to unload
+		plugin.getPins().clear(world.getName());
+		queue.put(world.getName(), new Drain(evict));
+	}
+
+	public boolean isUnloading(String worldName) {
+		return queue.containsKey(worldName);
+	}
+
+	public int size() {
+		return queue.size();
+	}
+
+	@Override
+	public void run() {
+		tick++;
+
+		Iterator<Map.Entry<String, Drain>> it = queue.entrySet().iterator();
+		if (!it.hasNext()) return;
+
+		Map.Entry<String, Drain> entry = it.next();
+		Drain drain = entry.getValue();
+		DataWorld dataWorld = plugin.getWorlds().get(entry.getKey());
+		World world = dataWorld != null ? dataWorld.getWorld() : null;
+
+		if (world == null) {
+			it.remove();
+			return;
+		}
+
+		if (drain.evict ? world.getPlayers().size() > 0 : !dataWorld.checkInactive()) {
+			plugin.log.info(plugin.getNameBrackets() + "world " + entry.getKey() + " is in use again, not unloading");
+			it.remove();
+			return;
+		}
+
+		long start = System.nanoTime();
+		long budget = plugin.config.getInt("dynworld.unloadBudget", 5) * 1000000L;
+		Chunk[] chunks = world.getLoadedChunks();
+		int left = chunks.length;
+		int tried = 0;
+
+		for (Chunk thisChunk : chunks) {
+			if (System.nanoTime() - start >= budget) break;
+
+			tried++;
+			if (thisChunk.unload(true, true)) {
+				drain.chunks++;
+				left--;
+			}
+		}
+
+		drain.nanos += System.nanoTime() - start;
+
+		if (tried == chunks.length && left == chunks.length) {
+			drain.stalled++;
+		} else {
+			drain.stalled = 0;
+		}
+
+		if (left > plugin.config.getInt("dynworld.unloadFinalChunks", 16) && drain.stalled < STALLED_PASSES
+				&& drain.ticks++ < plugin.config.getInt("dynworld.unloadMaxTicks", 600)) {
+			return;
+		}
+
+		if (tick - lastFinished < plugin.config.getInt("dynworld.unloadInterval", 20)) return;
+
+		start = System.nanoTime();
+		dataWorld.unload();
+		drain.nanos += System.nanoTime() - start;
+		lastFinished = tick;
+		it.remove();
+
+		plugin.log.info(plugin.getNameBrackets() + "finished unloading " + entry.getKey() + " after " + (System.currentTimeMillis() - drain.started) + " ms, "
+				+ drain.chunks + " chunks saved over " + drain.ticks + " ticks, " + (drain.nanos / 1000000) + " ms of tick time");
+	}
+
+	private static class Drain {
+		private final boolean evict;
+		private final long started = System.currentTimeMillis();
+		private long nanos = 0;
+		private int chunks = 0;
+		private int ticks = 0;
+		private int stalled = 0;
+
+		public Drain(boolean evict) {
+			this.evict = evict;
+		}
+	}
+}
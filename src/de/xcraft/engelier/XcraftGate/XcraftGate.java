@@ -4,12 +4,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Properties;
 import java.util.logging.Logger;
 
-import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -36,14 +33,22 @@ public class XcraftGate extends JavaPlugin {
 
 	private SetWorld worlds = new SetWorld(this);
 	private SetGate gates = new SetGate(this);
-	
-	public Map<String, Location> justTeleported = new HashMap<String, Location>();
-	public Map<String, Location> justTeleportedFrom = new HashMap<String, Location>();
+	private SetPlayer players = new SetPlayer(this);
+	private DebounceTeleport teleports = new DebounceTeleport(this);
+	private LedgerToll tolls = new LedgerToll(this);
+	private CloneWorld clones = new CloneWorld(this);
+	private EvictWorld evictions = new EvictWorld(this);
+	private LoadWorld loads = new LoadWorld(this);
+	private PinDestination pins = new PinDestination(this);
+	private PregenWorld pregens = new PregenWorld(this);
+	private RefreshChunk refreshes = new RefreshChunk(this);
+	private UnloadWorld unloads = new UnloadWorld(this);
 
 	public YamlConfiguration config = null;
 
 	public final Logger log = Logger.getLogger("Minecraft");
-	public final Properties serverconfig = new Properties(); 
+	private final Properties serverconfig = new Properties();
+	private ServerWorlds serverWorlds = null;
 
 	class RunCreatureLimit implements Runnable {
 		public void run() {
@@ -66,31 +71,25 @@ public class XcraftGate extends JavaPlugin {
 	class RunCheckWorldInactive implements Runnable {
 		@Override
 		public void run() {
-			for (World thisWorld : getServer().getWorlds()) {
-				if (worlds.get(thisWorld).checkInactive() && !thisWorld.getName().equalsIgnoreCase(serverconfig.getProperty("level-name"))) {
-					log.info(getNameBrackets() + "World '" + thisWorld.getName() + "' inactive. Unloading.");
+			for (World thisWorld : getServerWorlds().getWorlds()) {
+				if (worlds.get(thisWorld).checkInactive() && !thisWorld.getName().equalsIgnoreCase(getServerProperty("level-name", "world"))
+						&& !pregens.isRunning(thisWorld.getName())) {
+					if (!unloads.isUnloading(thisWorld.getName())) {
+						log.info(getNameBrackets() + "World '" + thisWorld.getName() + "' inactive. Unloading.");
+					}
 					
-					worlds.get(thisWorld).unload();
+					unloads.add(worlds.get(thisWorld));
 				}
 			}						
 		}		
 	}
 	
-	class RunLoadAllWorlds implements Runnable {
-		@Override
-		public void run() {
-			for (DataWorld thisWorld : worlds) {
-				if (!thisWorld.isLoaded() && (config.getBoolean("dynworld.enabled", false) == false || thisWorld.isSticky())) {
-					thisWorld.load();
-				}
-			}
-		}		
-	}
-	
 	public void onDisable() {
-		getServer().getScheduler().cancelTasks(this);
-		gates.save();
-		worlds.save();
+		getServerWorlds().getScheduler().cancelTasks(this);
+		tolls.close();
+		pregens.close();
+		gates.close();
+		worlds.close();
 	}
 
 	public void onEnable() {
@@ -112,22 +111,14 @@ public class XcraftGate extends JavaPlugin {
 		pm.registerEvent(Event.Type.PLAYER_MOVE, playerListener, Event.Priority.Normal);
 		pm.registerEvent(Event.Type.PLAYER_CHANGED_WORLD, playerListener, Event.Priority.Normal);
 		pm.registerEvent(Event.Type.PLAYER_TELEPORT, playerListener, Event.Priority.Normal);
+		pm.registerEvent(Event.Type.PLAYER_QUIT, playerListener, Event.Priority.Monitor);
 		pm.registerEvent(Event.Type.PLUGIN_DISABLE, pluginListener,	Event.Priority.Monitor);
 		pm.registerEvent(Event.Type.WEATHER_CHANGE, weatherListener, Event.Priority.Normal);
 		pm.registerEvent(Event.Type.WORLD_LOAD, worldListener, Event.Priority.Highest);
 		pm.registerEvent(Event.Type.WORLD_UNLOAD, worldListener, Event.Priority.Highest);
+		pm.registerEvent(Event.Type.CHUNK_UNLOAD, worldListener, Event.Priority.Normal);
 
-		File serverconfigFile = new File("server.properties");
-		if (!serverconfigFile.exists()) {
-			log.severe(getNameBrackets() + "unable to load server.properties.");
-		} else {
-			try {
-				serverconfig.load(new FileInputStream(serverconfigFile));
-			} catch (Exception ex) {
-				log.severe(getNameBrackets() + "error loading " + serverconfigFile);
-				ex.printStackTrace();
-			}
-		}
+		loadServerConfig(new File("server.properties"));
 
 		config = getConfig(getConfigFile("config.yml"));
 		try {
@@ -138,19 +129,33 @@ public class XcraftGate extends JavaPlugin {
 		worlds.load();
 		gates.load();
 
-		for(World thisWorld : getServer().getWorlds()) {
+		for(World thisWorld : getServerWorlds().getWorlds()) {
 			worlds.onWorldLoad(thisWorld);
 		}
 		
-		getServer().getScheduler().scheduleSyncRepeatingTask(this, new RunCreatureLimit(), 600, 600);
-		getServer().getScheduler().scheduleSyncRepeatingTask(this, new RunTimeFrozen(), 200, 200);
+		getServerWorlds().getScheduler().scheduleSyncRepeatingTask(this, new RunCreatureLimit(), 600, 600);
+		getServerWorlds().getScheduler().scheduleSyncRepeatingTask(this, new RunTimeFrozen(), 200, 200);
+		getServerWorlds().getScheduler().scheduleSyncRepeatingTask(this, teleports, 20, 20);
+		getServerWorlds().getScheduler().scheduleSyncRepeatingTask(this, refreshes, 1, 1);
+		
+		int settleDelay = config.getInt("toll.settleDelay", 20);
+		getServerWorlds().getScheduler().scheduleSyncRepeatingTask(this, tolls, settleDelay, settleDelay);
+		
+		int saveDelay = config.getInt("storage.saveDelay", 20);
+		getServerWorlds().getScheduler().scheduleSyncRepeatingTask(this, gates.getStore(), saveDelay, saveDelay);
+		getServerWorlds().getScheduler().scheduleSyncRepeatingTask(this, worlds.getStore(), saveDelay, saveDelay);
 		
 		if (config.getBoolean("dynworld.enabled", false)) {
-			getServer().getScheduler().scheduleSyncRepeatingTask(this, new RunCheckWorldInactive(), config.getInt("dynworld.checkInterval", 60) * 20, config.getInt("dynworld.checkInterval", 60) * 20);
+			getServerWorlds().getScheduler().scheduleSyncRepeatingTask(this, unloads, 1, 1);
+			getServerWorlds().getScheduler().scheduleSyncRepeatingTask(this, evictions, config.getInt("dynworld.evictInterval", 100), config.getInt("dynworld.evictInterval", 100));
+			getServerWorlds().getScheduler().scheduleSyncRepeatingTask(this, new RunCheckWorldInactive(), config.getInt("dynworld.checkInterval", 60) * 20, config.getInt("dynworld.checkInterval", 60) * 20);
 		}
 		
-		getServer().getScheduler().scheduleSyncDelayedTask(this, new RunLoadAllWorlds());
-		getServer().getScheduler().scheduleSyncDelayedTask(this, pm);
+		loads.addAll();
+		getServerWorlds().getScheduler().scheduleSyncRepeatingTask(this, loads, 1, 1);
+		pregens.load();
+		getServerWorlds().getScheduler().scheduleSyncRepeatingTask(this, pregens, 1, 1);
+		getServerWorlds().getScheduler().scheduleSyncDelayedTask(this, pm);
 		
 		try {
 			getCommand("gate").setExecutor(new CommandHandlerGate(this));
@@ -201,6 +206,38 @@ public class XcraftGate extends JavaPlugin {
 		config.getBoolean("dynworld.enabled", false);
 		config.getInt("dynworld.checkInterval", 60);
 		config.getInt("dynworld.maxInactiveTime", 300);
+		config.getInt("dynworld.preloadRadius", 16);
+		config.getInt("dynworld.preloadInterval", 20);
+		config.getInt("dynworld.loadInterval", 20);
+		config.getInt("dynworld.unloadBudget", 5);
+		config.getInt("dynworld.unloadFinalChunks", 16);
+		config.getInt("dynworld.unloadMaxTicks", 600);
+		config.getInt("dynworld.unloadInterval", 20);
+		config.getInt("dynworld.evictHighWater", 85);
+		config.getInt("dynworld.evictInterval", 100);
+		config.getInt("dynworld.pregenBudget", 10);
+		config.getInt("dynworld.pregenCheckpoint", 600);
+		
+		config.getInt("gates.debounceTimeout", 30);
+		config.getInt("gates.maxVolumeSize", 16);
+		config.getInt("gates.pinBudget", 64);
+		config.getInt("gates.pinRadius", 1);
+		config.getInt("gates.pinMinUses", 3);
+		config.getInt("gates.refreshPerTick", 8);
+		config.getInt("gates.refreshCooldown", 10);
+		
+		config.getInt("permissions.cacheTimeout", 60);
+		
+		config.getInt("toll.settleDelay", 20);
+		config.getInt("toll.balanceTimeout", 30);
+		config.getInt("toll.settleBatch", 16);
+		config.getInt("toll.maxRetries", 5);
+		
+		config.getInt("storage.saveDelay", 20);
+		config.getBoolean("storage.journal", false);
+		config.getInt("storage.journalCompactSize", 1048576);
+		config.getString("storage.format", "yaml");
+		config.getString("storage.database", "xcraftgate.db");
 		
 		config.getInt("biomes.desert.chanceCactus", 1);
 		config.getInt("biomes.desert.chanceDeadShrub", 2);
@@ -263,6 +300,42 @@ public class XcraftGate extends JavaPlugin {
 		}
 	}
 	
+	public void loadServerConfig(File serverconfigFile) {
+		if (!serverconfigFile.exists()) {
+			log.severe(getNameBrackets() + "unable to load " + serverconfigFile.getName() + ".");
+			return;
+		}
+		
+		try {
+			FileInputStream in = new FileInputStream(serverconfigFile);
+			try {
+				serverconfig.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (Exception ex) {
+			log.severe(getNameBrackets() + "error loading " + serverconfigFile);
+			ex.printStackTrace();
+		}
+	}
+	
+	public String getServerProperty(String key, String def) {
+		return serverconfig.getProperty(key, def);
+	}
+	
+	public ServerWorlds getServerWorlds() {
+		if (serverWorlds == null) serverWorlds = new ServerWorldsBukkit(getServer());
+		return serverWorlds;
+	}
+	
+	/*
+	 * Replaces the server's worlds, players and scheduler, e.g. with the
+	 * simulated server in bench/. Must be called before onEnable().
+	 */
+	public void setServerWorlds(ServerWorlds serverWorlds) {
+		this.serverWorlds = serverWorlds;
+	}
+	
 	public String getNameBrackets() {
 		return "[" + this.getDescription().getFullName() + "] ";
 	}
@@ -275,6 +348,46 @@ public class XcraftGate extends JavaPlugin {
 		return gates;
 	}
 	
+	public SetPlayer getPlayers() {
+		return players;
+	}
+	
+	public DebounceTeleport getTeleports() {
+		return teleports;
+	}
+	
+	public CloneWorld getClones() {
+		return clones;
+	}
+	
+	public EvictWorld getEvictions() {
+		return evictions;
+	}
+	
+	public LedgerToll getTolls() {
+		return tolls;
+	}
+	
+	public LoadWorld getLoads() {
+		return loads;
+	}
+	
+	public PinDestination getPins() {
+		return pins;
+	}
+	
+	public PregenWorld getPregens() {
+		return pregens;
+	}
+	
+	public RefreshChunk getRefreshes() {
+		return refreshes;
+	}
+	
+	public UnloadWorld getUnloads() {
+		return unloads;
+	}
+	
 	public PluginManager getPluginManager() {
 		return pm;
 	}